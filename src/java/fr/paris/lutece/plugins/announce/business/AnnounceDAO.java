@@ -33,13 +33,22 @@
  */
 package fr.paris.lutece.plugins.announce.business;
 
+import fr.paris.lutece.plugins.genericattributes.business.Entry;
+import fr.paris.lutece.plugins.genericattributes.business.EntryType;
+import fr.paris.lutece.plugins.genericattributes.business.Field;
+import fr.paris.lutece.plugins.genericattributes.business.Response;
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.business.physicalfile.PhysicalFile;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.util.sql.DAOUtil;
 
 import java.sql.Timestamp;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
 
@@ -56,6 +65,12 @@ public final class AnnounceDAO implements IAnnounceDAO
     private static final String SQL_QUERY_SELECT_ID = "SELECT a.id_announce FROM announce_announce a, announce_category b WHERE a.id_category = b.id_category";
     private static final String SQL_QUERY_SELECTALL_ID_PUBLISHED = SQL_QUERY_SELECT_ID
             + " AND a.published = 1 AND a.suspended = 0 AND a.suspended_by_user = 0 ";
+    private static final String SQL_QUERY_COUNT_PUBLISHED = "SELECT COUNT( id_announce ) FROM announce_announce WHERE published = 1 AND suspended = 0 AND suspended_by_user = 0 ";
+    private static final String SQL_QUERY_COUNT_PUBLISHED_IN_SECTOR = "SELECT COUNT( a.id_announce ) FROM announce_announce a, announce_category b WHERE a.id_category = b.id_category AND b.id_sector = ? AND a.published = 1 AND a.suspended = 0 AND a.suspended_by_user = 0 ";
+    private static final String SQL_QUERY_SELECT_ID_PUBLISHED_AFTER = SQL_QUERY_SELECTALL_ID_PUBLISHED
+            + " AND a.id_announce > ? ORDER BY a.id_announce ASC LIMIT ? ";
+    private static final String SQL_QUERY_SELECT_ID_PUBLISHED_IN_SECTOR_AFTER = SQL_QUERY_SELECTALL_ID_PUBLISHED
+            + " AND b.id_sector = ? AND a.id_announce > ? ORDER BY a.id_announce ASC LIMIT ? ";
     private static final String SQL_QUERY_SELECTALL = SQL_QUERY_SELECT_ID;
     private static final String SQL_QUERY_SELECTALL_PUBLISHED_FOR_CATEGORY = "SELECT a.id_announce FROM announce_announce a WHERE a.id_category = ? AND a.published = 1 AND a.suspended = 0 AND a.suspended_by_user = 0 ";
     private static final String SQL_QUERY_SELECT_ID_BY_DATE_CREATION = "SELECT id_announce FROM announce_announce WHERE date_creation < ?";
@@ -92,6 +107,14 @@ public final class AnnounceDAO implements IAnnounceDAO
     private static final String SQL_QUERY_SELECT_ANNOUNCE_BY_RESPONSE = "SELECT id_announce FROM announce_announce_response WHERE id_response = ?";
     private static final String SQL_QUERY_SELECT_ANNOUNCE_BY_IMAGE_RESPONSE = SQL_QUERY_SELECT_ANNOUNCE_BY_RESPONSE + SQL_FRAGMENT_AND_IS_IMAGE;
     private static final String SQL_QUERY_DELETE_ANNOUNCE_RESPONSE = "DELETE FROM announce_announce_response WHERE id_announce = ?";
+    private static final String SQL_QUERY_SELECT_RESPONSES_BY_LIST_ID_ANNOUNCE = "SELECT ar.id_announce, ar.is_image, resp.id_response, resp.response_value, resp.iteration_number, resp.status, "
+            + " ent.id_entry, ent.title, ent.code, type.id_type, type.class_name, fld.id_field, fld.title, fld.value, "
+            + " f.id_file, f.title, f.id_physical_file, f.file_size, f.mime_type "
+            + " FROM announce_announce_response ar INNER JOIN genatt_response resp ON ar.id_response = resp.id_response "
+            + " INNER JOIN genatt_entry ent ON resp.id_entry = ent.id_entry INNER JOIN genatt_entry_type type ON ent.id_type = type.id_type "
+            + " LEFT JOIN genatt_field fld ON resp.id_field = fld.id_field LEFT JOIN core_file f ON resp.id_file = f.id_file "
+            + " WHERE ar.id_announce IN (";
+    private static final String SQL_ORDER_BY_ANNOUNCE_RESPONSE = " ORDER BY ar.id_announce, resp.id_response";
 
     // Constants
     private static final String CONSTANT_COMA = ",";
@@ -249,6 +272,88 @@ public final class AnnounceDAO implements IAnnounceDAO
         return listIdAnnounce;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int countPublished( Plugin plugin )
+    {
+        int nCount = 0;
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT_PUBLISHED, plugin ) )
+        {
+            daoUtil.executeQuery( );
+
+            if ( daoUtil.next( ) )
+            {
+                nCount = daoUtil.getInt( 1 );
+            }
+        }
+        return nCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int countPublishedInSector( int nIdSector, Plugin plugin )
+    {
+        int nCount = 0;
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT_PUBLISHED_IN_SECTOR, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdSector );
+            daoUtil.executeQuery( );
+
+            if ( daoUtil.next( ) )
+            {
+                nCount = daoUtil.getInt( 1 );
+            }
+        }
+        return nCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Integer> selectPublishedIdAfter( int nIdAnnounce, int nLimit, Plugin plugin )
+    {
+        List<Integer> listIdAnnounce = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_ID_PUBLISHED_AFTER, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdAnnounce );
+            daoUtil.setInt( 2, nLimit );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listIdAnnounce.add( daoUtil.getInt( 1 ) );
+            }
+        }
+        return listIdAnnounce;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Integer> selectPublishedIdInSectorAfter( int nIdSector, int nIdAnnounce, int nLimit, Plugin plugin )
+    {
+        List<Integer> listIdAnnounce = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_ID_PUBLISHED_IN_SECTOR_AFTER, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdSector );
+            daoUtil.setInt( 2, nIdAnnounce );
+            daoUtil.setInt( 3, nLimit );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listIdAnnounce.add( daoUtil.getInt( 1 ) );
+            }
+        }
+        return listIdAnnounce;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -494,6 +599,104 @@ public final class AnnounceDAO implements IAnnounceDAO
         return listIdResponse;
     }
 
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public Map<Integer, List<Response>> findListResponseByAnnounce( Collection<Integer> listIdAnnounces, Plugin plugin )
+    {
+        Map<Integer, List<Response>> mapResponses = new HashMap<>( );
+
+        if ( CollectionUtils.isEmpty( listIdAnnounces ) )
+        {
+            return mapResponses;
+        }
+
+        StringBuilder sbSql = new StringBuilder( SQL_QUERY_SELECT_RESPONSES_BY_LIST_ID_ANNOUNCE );
+        boolean bIsFirst = true;
+
+        for ( Integer nId : listIdAnnounces )
+        {
+            if ( !bIsFirst )
+            {
+                sbSql.append( CONSTANT_COMA );
+            }
+            else
+            {
+                bIsFirst = false;
+            }
+
+            sbSql.append( nId );
+        }
+
+        sbSql.append( CONSTANT_CLOSE_PARENTHESIS );
+        sbSql.append( SQL_ORDER_BY_ANNOUNCE_RESPONSE );
+
+        try ( DAOUtil daoUtil = new DAOUtil( sbSql.toString( ), plugin ) )
+        {
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                int nIndex = 1;
+                int nIdAnnounce = daoUtil.getInt( nIndex++ );
+
+                AnnounceResponse response = new AnnounceResponse( );
+                response.setImage( daoUtil.getBoolean( nIndex++ ) );
+                response.setIdResponse( daoUtil.getInt( nIndex++ ) );
+                response.setResponseValue( daoUtil.getString( nIndex++ ) );
+                response.setIterationNumber( daoUtil.getInt( nIndex++ ) );
+                response.setStatus( daoUtil.getInt( nIndex++ ) );
+
+                Entry entry = new Entry( );
+                entry.setIdEntry( daoUtil.getInt( nIndex++ ) );
+                entry.setTitle( daoUtil.getString( nIndex++ ) );
+                entry.setCode( daoUtil.getString( nIndex++ ) );
+
+                EntryType entryType = new EntryType( );
+                entryType.setIdType( daoUtil.getInt( nIndex++ ) );
+                entryType.setBeanName( daoUtil.getString( nIndex++ ) );
+                entry.setEntryType( entryType );
+                response.setEntry( entry );
+
+                // Responses without field or without file get null columns from the outer joins
+                int nIdField = daoUtil.getInt( nIndex++ );
+                String strFieldTitle = daoUtil.getString( nIndex++ );
+                String strFieldValue = daoUtil.getString( nIndex++ );
+
+                if ( nIdField > 0 )
+                {
+                    Field field = new Field( );
+                    field.setIdField( nIdField );
+                    field.setTitle( strFieldTitle );
+                    field.setValue( strFieldValue );
+                    field.setParentEntry( entry );
+                    response.setField( field );
+                }
+
+                int nIdFile = daoUtil.getInt( nIndex++ );
+
+                if ( nIdFile > 0 )
+                {
+                    File file = new File( );
+                    file.setIdFile( nIdFile );
+                    file.setTitle( daoUtil.getString( nIndex++ ) );
+
+                    PhysicalFile physicalFile = new PhysicalFile( );
+                    physicalFile.setIdPhysicalFile( daoUtil.getInt( nIndex++ ) );
+                    file.setPhysicalFile( physicalFile );
+                    file.setSize( daoUtil.getInt( nIndex++ ) );
+                    file.setMimeType( daoUtil.getString( nIndex ) );
+                    response.setFile( file );
+                }
+
+                mapResponses.computeIfAbsent( nIdAnnounce, id -> new ArrayList<>( ) ).add( response );
+            }
+        }
+
+        return mapResponses;
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -38,7 +38,6 @@ import fr.paris.lutece.plugins.announce.service.AnnouncePlugin;
 import fr.paris.lutece.plugins.announce.service.announcesearch.AnnounceSearchService;
 import fr.paris.lutece.plugins.genericattributes.business.Response;
 import fr.paris.lutece.plugins.genericattributes.business.ResponseHome;
-import fr.paris.lutece.portal.business.file.FileHome;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.plugin.PluginService;
 import fr.paris.lutece.portal.service.resource.ExtendableResourceRemovalListenerService;
@@ -49,7 +48,10 @@ import fr.paris.lutece.portal.service.workflow.WorkflowService;
 import java.sql.Timestamp;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class provides instances management methods (create, find, ...) for Announce objects
@@ -218,6 +220,59 @@ public final class AnnounceHome
         return _dao.selectAllPublishedId( announceSort, _plugin );
     }
 
+    /**
+     * Count the published announces
+     * 
+     * @return the number of published announces
+     */
+    public static int countPublished( )
+    {
+        return _dao.countPublished( _plugin );
+    }
+
+    /**
+     * Count the published announces of a sector
+     * 
+     * @param nIdSector
+     *            The id of the sector
+     * @return the number of published announces of the sector
+     */
+    public static int countPublishedInSector( int nIdSector )
+    {
+        return _dao.countPublishedInSector( nIdSector, _plugin );
+    }
+
+    /**
+     * Load the id of the published announces following a given announce. Ids are ordered, so that every published announce can be read chunk by chunk
+     * 
+     * @param nIdAnnounce
+     *            The id of the announce to start after, or 0 to start from the first announce
+     * @param nLimit
+     *            The maximum number of ids to load
+     * @return the list of id of the published announces following the given announce
+     */
+    public static List<Integer> findPublishedIdAfter( int nIdAnnounce, int nLimit )
+    {
+        return _dao.selectPublishedIdAfter( nIdAnnounce, nLimit, _plugin );
+    }
+
+    /**
+     * Load the id of the published announces of a sector following a given announce. Ids are ordered, so that every published announce of the sector can
+     * be read chunk by chunk
+     * 
+     * @param nIdSector
+     *            The id of the sector
+     * @param nIdAnnounce
+     *            The id of the announce to start after, or 0 to start from the first announce
+     * @param nLimit
+     *            The maximum number of ids to load
+     * @return the list of id of the published announces of the sector following the given announce
+     */
+    public static List<Integer> findPublishedIdInSectorAfter( int nIdSector, int nIdAnnounce, int nLimit )
+    {
+        return _dao.selectPublishedIdInSectorAfter( nIdSector, nIdAnnounce, nLimit, _plugin );
+    }
+
     /**
      * Load the data of all the announce objects and returns them in form of a list
      * 
@@ -433,35 +488,32 @@ public final class AnnounceHome
     }
 
     /**
-     * Get the list of responses associated with an announce
+     * Get the list of responses associated with an announce, with their entry, field and file metadata. Note that physical files are never loaded by this
+     * method.
      * 
      * @param nIdAnnounce
      *            the id of the announce
-     * @param bLoadFiles
-     *            True to load files, false to ignore them. Note that physical files are never loaded by this method.
      * @return the list of responses, or an empty list if no response was found
      */
-    public static List<Response> findListResponse( int nIdAnnounce, boolean bLoadFiles )
+    public static List<Response> findListResponse( int nIdAnnounce )
     {
-        List<Integer> listIdResponse = findListIdResponse( nIdAnnounce );
-        List<Response> listResponse = new ArrayList<>( listIdResponse.size( ) );
-
-        for ( Integer nIdResponse : listIdResponse )
-        {
-            Response response = ResponseHome.findByPrimaryKey( nIdResponse );
-            
-            if ( response != null )
-            {
-                if ( bLoadFiles && ( response.getFile( ) != null ) )
-                {
-                    response.setFile( FileHome.findByPrimaryKey( response.getFile( ).getIdFile( ) ) );
-                }
+        List<Response> listResponse = findListResponseByAnnounce( Collections.singletonList( nIdAnnounce ) ).get( nIdAnnounce );
 
-                listResponse.add( response );
-            }
-        }
+        return ( listResponse != null ) ? listResponse : new ArrayList<>( );
+    }
 
-        return listResponse;
+    /**
+     * Get the responses associated with a list of announces, with their entry, field and file metadata. Responses of every announce are loaded at once
+     * instead of one by one. Note that physical files are never loaded by this method.
+     * 
+     * @param listIdAnnounces
+     *            the list of id of announces
+     * @return the lists of responses of the announces, by id of announce. Announces without response are not in the map. The responses are
+     *         {@link AnnounceResponse} instances telling whether they are images of the announce
+     */
+    public static Map<Integer, List<Response>> findListResponseByAnnounce( Collection<Integer> listIdAnnounces )
+    {
+        return _dao.findListResponseByAnnounce( listIdAnnounces, _plugin );
     }
 
     /**
@@ -48,6 +48,14 @@ public class AnnounceSearchFilter
     private Date _dateMax;
     private int _nPriceMin;
     private int _nPriceMax;
+    private double _dLatitude;
+    private double _dLongitude;
+    private double _dRadius;
+    private boolean _bBoundingBox;
+    private double _dMinLatitude;
+    private double _dMaxLatitude;
+    private double _dMinLongitude;
+    private double _dMaxLongitude;
 
     /**
      * Get the id of the filter
@@ -216,4 +224,132 @@ public class AnnounceSearchFilter
     {
         this._nPriceMax = nPriceMax;
     }
+
+    /**
+     * Get the latitude of the centre of the search by distance
+     * 
+     * @return The latitude of the centre, in degrees
+     */
+    public double getLatitude( )
+    {
+        return _dLatitude;
+    }
+
+    /**
+     * Get the longitude of the centre of the search by distance
+     * 
+     * @return The longitude of the centre, in degrees
+     */
+    public double getLongitude( )
+    {
+        return _dLongitude;
+    }
+
+    /**
+     * Get the radius of the search by distance
+     * 
+     * @return The radius, in meters, or 0 if announces are not searched by distance
+     */
+    public double getRadius( )
+    {
+        return _dRadius;
+    }
+
+    /**
+     * Search the announces located within a distance of a centre
+     * 
+     * @param dLatitude
+     *            The latitude of the centre, in degrees
+     * @param dLongitude
+     *            The longitude of the centre, in degrees
+     * @param dRadius
+     *            The radius, in meters, or 0 to not search announces by distance
+     */
+    public void setGeoDistance( double dLatitude, double dLongitude, double dRadius )
+    {
+        this._dLatitude = dLatitude;
+        this._dLongitude = dLongitude;
+        this._dRadius = dRadius;
+    }
+
+    /**
+     * Check if announces are searched by distance
+     * 
+     * @return True if announces are searched by distance, false otherwise
+     */
+    public boolean hasGeoDistance( )
+    {
+        return _dRadius > 0;
+    }
+
+    /**
+     * Search the announces located in a bounding box. The minimum longitude may be greater than the maximum longitude for boxes crossing the dateline
+     * 
+     * @param dMinLatitude
+     *            The minimum latitude, in degrees
+     * @param dMaxLatitude
+     *            The maximum latitude, in degrees
+     * @param dMinLongitude
+     *            The minimum longitude, in degrees
+     * @param dMaxLongitude
+     *            The maximum longitude, in degrees
+     */
+    public void setBoundingBox( double dMinLatitude, double dMaxLatitude, double dMinLongitude, double dMaxLongitude )
+    {
+        this._bBoundingBox = true;
+        this._dMinLatitude = dMinLatitude;
+        this._dMaxLatitude = dMaxLatitude;
+        this._dMinLongitude = dMinLongitude;
+        this._dMaxLongitude = dMaxLongitude;
+    }
+
+    /**
+     * Check if announces are searched in a bounding box
+     * 
+     * @return True if announces are searched in a bounding box, false otherwise
+     */
+    public boolean hasBoundingBox( )
+    {
+        return _bBoundingBox;
+    }
+
+    /**
+     * Get the minimum latitude of the bounding box
+     * 
+     * @return The minimum latitude, in degrees
+     */
+    public double getMinLatitude( )
+    {
+        return _dMinLatitude;
+    }
+
+    /**
+     * Get the maximum latitude of the bounding box
+     * 
+     * @return The maximum latitude, in degrees
+     */
+    public double getMaxLatitude( )
+    {
+        return _dMaxLatitude;
+    }
+
+    /**
+     * Get the minimum longitude of the bounding box
+     * 
+     * @return The minimum longitude, in degrees
+     */
+    public double getMinLongitude( )
+    {
+        return _dMinLongitude;
+    }
+
+    /**
+     * Get the maximum longitude of the bounding box
+     * 
+     * @return The maximum longitude, in degrees
+     */
+    public double getMaxLongitude( )
+    {
+        return _dMaxLongitude;
+    }
 }
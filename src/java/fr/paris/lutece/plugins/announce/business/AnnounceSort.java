@@ -70,6 +70,16 @@ public class AnnounceSort
      */
     public static final String SORT_DESCRIPTION = "description_announce";
 
+    /**
+     * Sort by distance to the centre of a search by distance. This sort is only available to searches in the index
+     */
+    public static final String SORT_DISTANCE = "distance";
+
+    /**
+     * Sort of the announces the closest to the centre of a search by distance first
+     */
+    public static final AnnounceSort DISTANCE_SORT = new AnnounceSort( SORT_DISTANCE, true );
+
     /**
      * Default sort to use
      */
@@ -301,7 +301,6 @@ public final class CategoryDAO implements ICategoryDAO
                 category.setId( daoUtil.getInt( 1 ) );
                 category.setIdSector( daoUtil.getInt( 2 ) );
                 category.setLabel( daoUtil.getString( 3 ) );
-                category.setNumberAnnounces( countPublishedAnnouncesForCategory( category, plugin ) );
 
                 listCategories.add( category );
             }
@@ -37,6 +37,7 @@ import java.util.List;
 
 import fr.paris.lutece.plugins.announce.service.AnnounceCacheService;
 import fr.paris.lutece.plugins.announce.service.AnnouncePlugin;
+import fr.paris.lutece.plugins.announce.service.announcesearch.AnnounceSearchCacheService;
 import fr.paris.lutece.plugins.genericattributes.business.Entry;
 import fr.paris.lutece.plugins.genericattributes.business.EntryFilter;
 import fr.paris.lutece.plugins.genericattributes.business.EntryHome;
@@ -82,6 +83,8 @@ public final class CategoryHome
     {
         _dao.store( category, _plugin );
         AnnounceCacheService.getService( ).putInCache( AnnounceCacheService.getCategoryCacheKey( category.getId( ) ), category );
+        // Cached search results hold the previous version of the category
+        AnnounceSearchCacheService.getService( ).resetCache( );
 
         return category;
     }
@@ -119,6 +122,7 @@ public final class CategoryHome
         AnnounceSearchFilterHome.deleteByIdCategory( category.getId( ) );
         _dao.delete( category, _plugin );
         AnnounceCacheService.getService( ).removeKey( AnnounceCacheService.getCategoryCacheKey( category.getId( ) ) );
+        AnnounceSearchCacheService.getService( ).resetCache( );
     }
 
     // /////////////////////////////////////////////////////////////////////////
@@ -160,7 +164,7 @@ public final class CategoryHome
     }
 
     /**
-     * selects the categories list for a given sector
+     * selects the categories list for a given sector. The number of announces of the categories is not loaded
      * 
      * @param sector
      *            the sector
@@ -33,11 +33,14 @@
  */
 package fr.paris.lutece.plugins.announce.business;
 
+import fr.paris.lutece.plugins.genericattributes.business.Response;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 
 import java.sql.Timestamp;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * IAnnounceDAO Interface
@@ -110,6 +113,54 @@ public interface IAnnounceDAO
      */
     List<Integer> selectAllPublishedId( AnnounceSort announceSort, Plugin plugin );
 
+    /**
+     * counts the published announces
+     * 
+     * @param plugin
+     *            the plugin
+     * @return the number of published announces
+     */
+    int countPublished( Plugin plugin );
+
+    /**
+     * counts the published announces of a sector
+     * 
+     * @param nIdSector
+     *            the id of the sector
+     * @param plugin
+     *            the plugin
+     * @return the number of published announces of the sector
+     */
+    int countPublishedInSector( int nIdSector, Plugin plugin );
+
+    /**
+     * selects the id of the published announces following a given announce, ordered by id
+     * 
+     * @param nIdAnnounce
+     *            the id of the announce to start after, or 0 to start from the first announce
+     * @param nLimit
+     *            the maximum number of ids to return
+     * @param plugin
+     *            the plugin
+     * @return id of the published announces following the given announce
+     */
+    List<Integer> selectPublishedIdAfter( int nIdAnnounce, int nLimit, Plugin plugin );
+
+    /**
+     * selects the id of the published announces of a sector following a given announce, ordered by id
+     * 
+     * @param nIdSector
+     *            the id of the sector
+     * @param nIdAnnounce
+     *            the id of the announce to start after, or 0 to start from the first announce
+     * @param nLimit
+     *            the maximum number of ids to return
+     * @param plugin
+     *            the plugin
+     * @return id of the published announces of the sector following the given announce
+     */
+    List<Integer> selectPublishedIdInSectorAfter( int nIdSector, int nIdAnnounce, int nLimit, Plugin plugin );
+
     /**
      * selects all the published announces
      * 
@@ -232,6 +283,18 @@ public interface IAnnounceDAO
      */
     List<Integer> findListIdResponse( int nIdAnnounce, Plugin plugin );
 
+    /**
+     * Get the responses associated with a list of announces, with their entry, field and file metadata. Physical files are not loaded
+     * 
+     * @param listIdAnnounces
+     *            the list of id of announces
+     * @param plugin
+     *            the plugin
+     * @return the lists of responses of the announces, by id of announce. Announces without response are not in the map. The responses are
+     *         {@link AnnounceResponse} instances telling whether they are images of the announce
+     */
+    Map<Integer, List<Response>> findListResponseByAnnounce( Collection<Integer> listIdAnnounces, Plugin plugin );
+
     /**
      * Get the list of id of image responses associated with an announce
      * 
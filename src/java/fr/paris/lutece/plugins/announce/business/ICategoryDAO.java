@@ -97,7 +97,7 @@ public interface ICategoryDAO
     void store( Category category, Plugin plugin );
 
     /**
-     * Selects the list of categories associated to the specified sector
+     * Selects the list of categories associated to the specified sector. The number of announces of the categories is not loaded
      * 
      * @param sector
      *            The concerned sector
@@ -84,6 +84,25 @@ public interface IIndexerActionDAO
      */
     void delete( int nId, Plugin plugin );
 
+    /**
+     * Claim the actions created so far. Actions created later get a greater id than the returned high-water mark
+     * 
+     * @param plugin
+     *            the plugin
+     * @return The greatest id of the existing actions, or 0 if there is no action
+     */
+    int selectMaxIdAction( Plugin plugin );
+
+    /**
+     * Delete the actions claimed with a high-water mark in one statement
+     * 
+     * @param nMaxIdAction
+     *            The greatest id of the actions to delete
+     * @param plugin
+     *            the plugin
+     */
+    void deleteUpTo( int nMaxIdAction, Plugin plugin );
+
     /**
      * Load the data of all indexerAction and returns them in a list
      * 
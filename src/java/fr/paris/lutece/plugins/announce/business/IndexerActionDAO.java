@@ -50,9 +50,12 @@ public final class IndexerActionDAO implements IIndexerActionDAO
     private static final String SQL_QUERY_FIND_BY_PRIMARY_KEY = "SELECT id_action,id_announce,id_task" + " FROM announce_indexer_action WHERE id_action = ?";
     private static final String SQL_QUERY_INSERT = "INSERT INTO announce_indexer_action( id_action,id_announce,id_task)" + " VALUES(?,?,?)";
     private static final String SQL_QUERY_DELETE = "DELETE FROM announce_indexer_action WHERE id_action = ? ";
+    private static final String SQL_QUERY_DELETE_UP_TO = "DELETE FROM announce_indexer_action WHERE id_action <= ? ";
     private static final String SQL_QUERY_SELECT = "SELECT id_action,id_announce,id_task" + " FROM announce_indexer_action  ";
     private static final String SQL_FILTER_ID_TASK = " id_task = ? ";
     private static final String SQL_FILTER_ID_ANNOUNCE = " id_announce = ? ";
+    private static final String SQL_FILTER_MAX_ID_ACTION = " id_action <= ? ";
+    private static final String SQL_ORDER_BY_ID_ACTION = " ORDER BY id_action ";
 
     /**
      * {@inheritDoc}
@@ -129,6 +132,29 @@ public final class IndexerActionDAO implements IIndexerActionDAO
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int selectMaxIdAction( Plugin plugin )
+    {
+        // The next primary key is computed from the greatest id, so it is always above the high-water mark
+        return newPrimaryKey( plugin ) - 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteUpTo( int nMaxIdAction, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_UP_TO, plugin ) )
+        {
+            daoUtil.setInt( 1, nMaxIdAction );
+            daoUtil.executeUpdate( );
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -149,7 +175,12 @@ public final class IndexerActionDAO implements IIndexerActionDAO
             listStrFilter.add( SQL_FILTER_ID_ANNOUNCE );
         }
 
-        String strSQL = AnnounceUtils.buildRequetteWithFilter( SQL_QUERY_SELECT, listStrFilter, null );
+        if ( filter.containsMaxIdAction( ) )
+        {
+            listStrFilter.add( SQL_FILTER_MAX_ID_ACTION );
+        }
+
+        String strSQL = AnnounceUtils.buildRequetteWithFilter( SQL_QUERY_SELECT, listStrFilter, SQL_ORDER_BY_ID_ACTION );
 
         try ( DAOUtil daoUtil = new DAOUtil( strSQL, plugin ) )
         {
@@ -165,6 +196,12 @@ public final class IndexerActionDAO implements IIndexerActionDAO
             if ( filter.containsIdAnnounce( ) )
             {
                 daoUtil.setInt( nIndex, filter.getIdAnnounce( ) );
+                nIndex++;
+            }
+
+            if ( filter.containsMaxIdAction( ) )
+            {
+                daoUtil.setInt( nIndex, filter.getMaxIdAction( ) );
             }
 
             daoUtil.executeQuery( );
@@ -46,6 +46,7 @@ public class IndexerActionFilter
     public static final int ALL_INT = -1;
     private int _nIdTask = ALL_INT;
     private int _nIdAnnounce = ALL_INT;
+    private int _nMaxIdAction = ALL_INT;
 
     /**
      * gets the id of task
@@ -108,4 +109,35 @@ public class IndexerActionFilter
     {
         return ( _nIdAnnounce != ALL_INT );
     }
+
+    /**
+     * Get the greatest id of the actions to select
+     * 
+     * @return The greatest id of the actions to select
+     */
+    public int getMaxIdAction( )
+    {
+        return _nMaxIdAction;
+    }
+
+    /**
+     * Set the greatest id of the actions to select
+     * 
+     * @param nMaxIdAction
+     *            The greatest id of the actions to select
+     */
+    public void setMaxIdAction( int nMaxIdAction )
+    {
+        _nMaxIdAction = nMaxIdAction;
+    }
+
+    /**
+     * Check if this filter contains a greatest id of actions
+     * 
+     * @return True if this filter contains a greatest id of actions, false otherwise
+     */
+    public boolean containsMaxIdAction( )
+    {
+        return ( _nMaxIdAction != ALL_INT );
+    }
 }
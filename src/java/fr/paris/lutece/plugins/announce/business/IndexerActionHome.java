@@ -62,54 +62,10 @@ public final class IndexerActionHome
      * @param indexerAction
      *            The instance of the indexer action which contains the informations to store
      */
-    public static synchronized void create( IndexerAction indexerAction )
+    public static void create( IndexerAction indexerAction )
     {
-        int nOppositeTask = 0;
-
-        if ( indexerAction.getIdTask( ) == IndexerAction.TASK_CREATE )
-        {
-            nOppositeTask = IndexerAction.TASK_DELETE;
-        }
-        else
-            if ( indexerAction.getIdTask( ) == IndexerAction.TASK_DELETE )
-            {
-                nOppositeTask = IndexerAction.TASK_CREATE;
-            }
-
-        boolean bAlreadyFound = false;
-
-        if ( nOppositeTask > 0 )
-        {
-            IndexerActionFilter filter = new IndexerActionFilter( );
-            filter.setIdTask( nOppositeTask );
-
-            List<IndexerAction> listIndexerActions = getList( filter );
-
-            for ( IndexerAction action : listIndexerActions )
-            {
-                if ( action.getIdTask( ) == nOppositeTask )
-                {
-                    remove( action.getIdAction( ) );
-                }
-                else
-                    if ( action.getIdTask( ) == indexerAction.getIdTask( ) )
-                    {
-                        if ( bAlreadyFound )
-                        {
-                            remove( action.getIdAction( ) );
-                        }
-                        else
-                        {
-                            bAlreadyFound = true;
-                        }
-                    }
-            }
-        }
-
-        if ( !bAlreadyFound )
-        {
-            _dao.insert( indexerAction, _plugin );
-        }
+        // Actions of a same announce are coalesced when the index is updated
+        _dao.insert( indexerAction, _plugin );
     }
 
     /**
@@ -123,6 +79,27 @@ public final class IndexerActionHome
         _dao.delete( nId, _plugin );
     }
 
+    /**
+     * Claim the actions created so far. Actions created later get a greater id than the returned high-water mark, so they are not claimed
+     * 
+     * @return The high-water mark of the claimed actions, or 0 if there is no action
+     */
+    public static int claim( )
+    {
+        return _dao.selectMaxIdAction( _plugin );
+    }
+
+    /**
+     * Remove the actions claimed with a high-water mark in one statement
+     * 
+     * @param nMaxIdAction
+     *            The high-water mark returned by {@link #claim()}
+     */
+    public static void removeClaimed( int nMaxIdAction )
+    {
+        _dao.deleteUpTo( nMaxIdAction, _plugin );
+    }
+
     // /////////////////////////////////////////////////////////////////////////
     // Finders
 
@@ -33,7 +33,9 @@
  */
 package fr.paris.lutece.plugins.announce.service;
 
+import fr.paris.lutece.plugins.announce.service.announcesearch.AnnounceSearchShutdownService;
 import fr.paris.lutece.portal.service.image.ImageResourceManager;
+import fr.paris.lutece.portal.service.init.ShutdownServiceManager;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.plugin.PluginDefaultImplementation;
 import fr.paris.lutece.portal.service.plugin.PluginService;
@@ -55,6 +57,7 @@ public class AnnouncePlugin extends PluginDefaultImplementation
     public void init( )
     {
         ImageResourceManager.registerProvider( new AnnounceResponseImageResourceProvider( ) );
+        ShutdownServiceManager.registerShutdownService( new AnnounceSearchShutdownService( ) );
     }
 
     /**
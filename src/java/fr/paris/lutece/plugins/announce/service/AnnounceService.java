@@ -74,10 +74,13 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -99,6 +102,7 @@ public class AnnounceService implements Serializable
     private static final String VIEW_GET_FORM = "viewForm";
     private static final String PARAMETER_ID_CATEGORY = "id_form";
     private static final String PREFIX_ATTRIBUTE = "attribute";
+    private static final String ENTRY_TYPE_GEOLOCATION = "announce.entryTypeGeolocation";
 
     // marks
     private static final String MARK_LOCALE = "locale";
@@ -149,7 +153,7 @@ public class AnnounceService implements Serializable
         {
             if ( ( announce.getListResponse( ) == null ) && ( announce.getId( ) > 0 ) )
             {
-                announce.setListResponse( AnnounceHome.findListResponse( announce.getId( ), true ) );
+                announce.setListResponse( AnnounceHome.findListResponse( announce.getId( ) ) );
             }
 
             announceDTO = new AnnounceDTO( announce );
@@ -160,7 +164,14 @@ public class AnnounceService implements Serializable
                 {
                     if ( ( response.getFile( ) != null ) && ( response.getFile( ).getIdFile( ) > 0 ) )
                     {
-                        File file = FileHome.findByPrimaryKey( response.getFile( ).getIdFile( ) );
+                        File file = response.getFile( );
+
+                        // Responses loaded with the announce already hold the metadata of their file
+                        if ( file.getPhysicalFile( ) == null )
+                        {
+                            file = FileHome.findByPrimaryKey( file.getIdFile( ) );
+                        }
+
                         PhysicalFile physicalFile = PhysicalFileHome.findByPrimaryKey( file.getPhysicalFile( ).getIdPhysicalFile( ) );
                         FileItem fileItem = new GenAttFileItem( physicalFile.getValue( ), file.getTitle( ) );
                         AnnounceAsynchronousUploadHandler.getHandler( ).addFileItemToUploadedFilesList( fileItem,
@@ -504,6 +515,43 @@ public class AnnounceService implements Serializable
         announce.setListResponse( listResponse );
     }
 
+    /**
+     * Get the geolocation entries answered by a list of responses, with their fields and map provider. Each entry is loaded once, whatever the number of
+     * its responses, and the fields of its responses are replaced by the fields of the loaded entry
+     * 
+     * @param listResponses
+     *            The responses of an announce
+     * @return The geolocation entries answered by the responses
+     */
+    public List<Entry> getGeolocationEntries( Collection<Response> listResponses )
+    {
+        Map<Integer, Entry> mapEntries = new LinkedHashMap<>( );
+
+        for ( Response response : listResponses )
+        {
+            if ( ( response.getEntry( ) != null ) && ( response.getEntry( ).getEntryType( ) != null )
+                    && ENTRY_TYPE_GEOLOCATION.equals( response.getEntry( ).getEntryType( ).getBeanName( ) ) )
+            {
+                Entry entry = mapEntries.computeIfAbsent( response.getEntry( ).getIdEntry( ), EntryHome::findByPrimaryKey );
+
+                if ( ( entry != null ) && ( response.getField( ) != null ) && ( entry.getFields( ) != null ) )
+                {
+                    for ( Field field : entry.getFields( ) )
+                    {
+                        if ( field.getIdField( ) == response.getField( ).getIdField( ) )
+                        {
+                            response.setField( field );
+                        }
+                    }
+                }
+            }
+        }
+
+        mapEntries.values( ).removeIf( Objects::isNull );
+
+        return new ArrayList<>( mapEntries.values( ) );
+    }
+
     /**
      * Get the date format to use
      * 
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Group of geolocated announces displayed as a single marker on a map
+ */
+public class AnnounceCluster
+{
+    private final int _nMaxSamples;
+    private final TreeSet<Integer> _setSampleIdAnnounces = new TreeSet<>( );
+    private int _nCount;
+    private double _dSumLatitudes;
+    private double _dSumLongitudes;
+
+    /**
+     * Creates a new empty cluster
+     * 
+     * @param nMaxSamples
+     *            The maximum number of announces whose ids are kept as samples of the cluster
+     */
+    AnnounceCluster( int nMaxSamples )
+    {
+        _nMaxSamples = nMaxSamples;
+    }
+
+    /**
+     * Get the number of announces of the cluster
+     * 
+     * @return The number of announces
+     */
+    public int getCount( )
+    {
+        return _nCount;
+    }
+
+    /**
+     * Get the latitude of the centroid of the announces of the cluster
+     * 
+     * @return The latitude, in degrees
+     */
+    public double getLatitude( )
+    {
+        return ( _nCount > 0 ) ? ( _dSumLatitudes / _nCount ) : 0d;
+    }
+
+    /**
+     * Get the longitude of the centroid of the announces of the cluster
+     * 
+     * @return The longitude, in degrees
+     */
+    public double getLongitude( )
+    {
+        return ( _nCount > 0 ) ? ( _dSumLongitudes / _nCount ) : 0d;
+    }
+
+    /**
+     * Get the ids of sample announces of the cluster
+     * 
+     * @return The ids of the most recent announces of the cluster, the most recent first
+     */
+    public List<Integer> getIdAnnounces( )
+    {
+        List<Integer> listIdAnnounces = new ArrayList<>( _setSampleIdAnnounces );
+        Collections.reverse( listIdAnnounces );
+
+        return listIdAnnounces;
+    }
+
+    /**
+     * Add an announce to the cluster
+     * 
+     * @param dLatitude
+     *            The latitude of the announce
+     * @param dLongitude
+     *            The longitude of the announce
+     * @param nIdAnnounce
+     *            The id of the announce
+     */
+    void add( double dLatitude, double dLongitude, int nIdAnnounce )
+    {
+        _nCount++;
+        _dSumLatitudes += dLatitude;
+        _dSumLongitudes += dLongitude;
+        addSample( nIdAnnounce );
+    }
+
+    /**
+     * Add the announces of another cluster to this cluster
+     * 
+     * @param cluster
+     *            The other cluster
+     */
+    void addAll( AnnounceCluster cluster )
+    {
+        _nCount += cluster._nCount;
+        _dSumLatitudes += cluster._dSumLatitudes;
+        _dSumLongitudes += cluster._dSumLongitudes;
+
+        for ( Integer nIdAnnounce : cluster._setSampleIdAnnounces )
+        {
+            addSample( nIdAnnounce );
+        }
+    }
+
+    /**
+     * Add an announce to the samples of the cluster. Ids of announces grow with their creation, so only the greatest ids are kept
+     * 
+     * @param nIdAnnounce
+     *            The id of the announce
+     */
+    private void addSample( int nIdAnnounce )
+    {
+        _setSampleIdAnnounces.add( nIdAnnounce );
+
+        if ( _setSampleIdAnnounces.size( ) > _nMaxSamples )
+        {
+            _setSampleIdAnnounces.pollFirst( );
+        }
+    }
+}
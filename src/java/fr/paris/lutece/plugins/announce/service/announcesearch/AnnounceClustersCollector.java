@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.geo.GeoEncodingUtils;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+
+/**
+ * Collector grouping the matching announces of a map tile into clusters. The tile is split into a grid of cells, and the announces located in a cell, read
+ * from the doc values of the index, make a cluster.
+ */
+public class AnnounceClustersCollector extends SimpleCollector
+{
+    private static final int LONGITUDE_BITS = 32;
+    private static final long LONGITUDE_MASK = 0xFFFFFFFFL;
+
+    private final AnnounceMapTile _tile;
+    private final int _nGridSize;
+    private final int _nMaxSamples;
+    private final Map<Integer, AnnounceCluster> _mapClusters = new TreeMap<>( );
+    private SortedNumericDocValues _locationValues;
+    private NumericDocValues _idValues;
+
+    /**
+     * Creates a new collector
+     * 
+     * @param tile
+     *            The tile
+     * @param nGridSize
+     *            The number of cells per side of the tile
+     * @param nMaxSamples
+     *            The maximum number of announce ids kept by cluster
+     */
+    public AnnounceClustersCollector( AnnounceMapTile tile, int nGridSize, int nMaxSamples )
+    {
+        _tile = tile;
+        _nGridSize = nGridSize;
+        _nMaxSamples = nMaxSamples;
+    }
+
+    /**
+     * Create a manager of collectors clustering the matching announces of a tile. Each slice of a concurrent search is clustered by its own collector, and
+     * the clusters of a cell are merged once the search is done
+     * 
+     * @param tile
+     *            The tile
+     * @param nGridSize
+     *            The number of cells per side of the tile
+     * @param nMaxSamples
+     *            The maximum number of announce ids kept by cluster
+     * @return The collector manager
+     */
+    public static CollectorManager<AnnounceClustersCollector, List<AnnounceCluster>> createManager( AnnounceMapTile tile, int nGridSize, int nMaxSamples )
+    {
+        return new CollectorManager<AnnounceClustersCollector, List<AnnounceCluster>>( )
+        {
+            @Override
+            public AnnounceClustersCollector newCollector( )
+            {
+                return new AnnounceClustersCollector( tile, nGridSize, nMaxSamples );
+            }
+
+            @Override
+            public List<AnnounceCluster> reduce( Collection<AnnounceClustersCollector> collectors )
+            {
+                AnnounceClustersCollector collectorAll = newCollector( );
+
+                for ( AnnounceClustersCollector collector : collectors )
+                {
+                    collectorAll.addAll( collector );
+                }
+
+                return collectorAll.getClusters( );
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doSetNextReader( LeafReaderContext context ) throws IOException
+    {
+        _locationValues = DocValues.getSortedNumeric( context.reader( ), AnnounceSearchItem.FIELD_LOCATION );
+        _idValues = DocValues.getNumeric( context.reader( ), AnnounceSearchItem.FIELD_SORT_ID );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void collect( int doc ) throws IOException
+    {
+        if ( !_locationValues.advanceExact( doc ) || !_idValues.advanceExact( doc ) )
+        {
+            return;
+        }
+
+        long lEncodedLocation = _locationValues.nextValue( );
+        double dLatitude = GeoEncodingUtils.decodeLatitude( (int) ( lEncodedLocation >>> LONGITUDE_BITS ) );
+        double dLongitude = GeoEncodingUtils.decodeLongitude( (int) ( lEncodedLocation & LONGITUDE_MASK ) );
+        int nCellX = (int) Math.floor( _tile.getRelativeX( dLongitude ) * _nGridSize );
+        int nCellY = (int) Math.floor( _tile.getRelativeY( dLatitude ) * _nGridSize );
+
+        // Announces on the east or south edge of the tile belong to the next tile
+        if ( ( nCellX < 0 ) || ( nCellX >= _nGridSize ) || ( nCellY < 0 ) || ( nCellY >= _nGridSize ) )
+        {
+            return;
+        }
+
+        _mapClusters.computeIfAbsent( ( nCellY * _nGridSize ) + nCellX, nCell -> new AnnounceCluster( _nMaxSamples ) ).add( dLatitude, dLongitude,
+                (int) _idValues.longValue( ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScoreMode scoreMode( )
+    {
+        return ScoreMode.COMPLETE_NO_SCORES;
+    }
+
+    /**
+     * Get the clusters filled by this collector. This method must be called once the search is done
+     * 
+     * @return The clusters, by cell from the north west corner of the tile
+     */
+    public List<AnnounceCluster> getClusters( )
+    {
+        return new ArrayList<>( _mapClusters.values( ) );
+    }
+
+    /**
+     * Add the clusters of another collector of the same tile to the clusters of this collector
+     * 
+     * @param collector
+     *            The other collector
+     */
+    private void addAll( AnnounceClustersCollector collector )
+    {
+        for ( Map.Entry<Integer, AnnounceCluster> entry : collector._mapClusters.entrySet( ) )
+        {
+            _mapClusters.computeIfAbsent( entry.getKey( ), nCell -> new AnnounceCluster( _nMaxSamples ) ).addAll( entry.getValue( ) );
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * Opens the Lucene directories of the announce index with the configured implementation : the default implementation of the platform, memory-mapped files,
+ * NIO files, or directories held in the heap. Heap directories are never written to disk : they are kept by path until they are deleted, and are rebuilt
+ * after a restart.
+ */
+class AnnounceDirectoryFactory
+{
+    // Types of directories
+    static final String TYPE_FS = "fs";
+    static final String TYPE_MMAP = "mmap";
+    static final String TYPE_NIO = "nio";
+    static final String TYPE_HEAP = "heap";
+
+    private final String _strType;
+    private final Map<Path, Directory> _mapHeapDirectories = new ConcurrentHashMap<>( );
+
+    /**
+     * Creates a new factory
+     * 
+     * @param strType
+     *            The type of the directories. Unknown types open the default implementation of the platform
+     */
+    AnnounceDirectoryFactory( String strType )
+    {
+        _strType = strType;
+    }
+
+    /**
+     * Open the directory of an index
+     * 
+     * @param path
+     *            The path of the index
+     * @return The directory
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    Directory open( Path path ) throws IOException
+    {
+        switch( _strType )
+        {
+            case TYPE_MMAP:
+                return new MMapDirectory( path );
+            case TYPE_NIO:
+                return new NIOFSDirectory( path );
+            case TYPE_HEAP:
+                return new HeapDirectory( _mapHeapDirectories.computeIfAbsent( getKey( path ), key -> new ByteBuffersDirectory( ) ) );
+            case TYPE_FS:
+            default:
+                return FSDirectory.open( path );
+        }
+    }
+
+    /**
+     * Check if the directory of an index exists
+     * 
+     * @param path
+     *            The path of the index
+     * @return True if the directory exists
+     */
+    boolean exists( Path path )
+    {
+        if ( TYPE_HEAP.equals( _strType ) )
+        {
+            return _mapHeapDirectories.containsKey( getKey( path ) );
+        }
+
+        return Files.isDirectory( path );
+    }
+
+    /**
+     * Move the directory of an index to another path
+     * 
+     * @param pathSource
+     *            The current path of the index
+     * @param pathTarget
+     *            The new path of the index
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    void move( Path pathSource, Path pathTarget ) throws IOException
+    {
+        if ( TYPE_HEAP.equals( _strType ) )
+        {
+            Directory dir = _mapHeapDirectories.remove( getKey( pathSource ) );
+
+            if ( dir == null )
+            {
+                throw new IOException( "No announce index in memory at " + pathSource );
+            }
+
+            _mapHeapDirectories.put( getKey( pathTarget ), dir );
+
+            return;
+        }
+
+        Files.move( pathSource, pathTarget, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /**
+     * Delete the directory of an index. The directory must not be used anymore
+     * 
+     * @param path
+     *            The path of the index
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    void delete( Path path ) throws IOException
+    {
+        if ( TYPE_HEAP.equals( _strType ) )
+        {
+            IOUtils.close( _mapHeapDirectories.remove( getKey( path ) ) );
+
+            return;
+        }
+
+        IOUtils.rm( path );
+    }
+
+    /**
+     * Get the key of the heap directory of an index
+     * 
+     * @param path
+     *            The path of the index
+     * @return The key
+     */
+    private static Path getKey( Path path )
+    {
+        return path.toAbsolutePath( ).normalize( );
+    }
+
+    /**
+     * Heap directory as seen by the writers and readers of an index. Closing it leaves the content of the index in the heap, so that the index can be
+     * reopened
+     */
+    private static final class HeapDirectory extends FilterDirectory
+    {
+        /**
+         * Creates a new directory
+         * 
+         * @param dir
+         *            The heap directory holding the index
+         */
+        HeapDirectory( Directory dir )
+        {
+            super( dir );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close( )
+        {
+            // The content of the index is only released when the index is deleted
+        }
+    }
+}
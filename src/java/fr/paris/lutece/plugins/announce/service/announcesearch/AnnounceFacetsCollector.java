@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+
+/**
+ * Collector counting the matching announces by sector, category and tag from the doc values of the index. It can be combined with the collector of the
+ * results so that counts are computed in the same search pass.
+ */
+public class AnnounceFacetsCollector extends SimpleCollector
+{
+    private final AnnounceSearchFacets _facets;
+    private NumericDocValues _sectorValues;
+    private NumericDocValues _categoryValues;
+    private SortedSetDocValues _tagValues;
+    private int [ ] _tagOrdCounts;
+
+    /**
+     * Creates a new collector
+     * 
+     * @param facets
+     *            The facets to fill with the counts of matching announces
+     */
+    public AnnounceFacetsCollector( AnnounceSearchFacets facets )
+    {
+        _facets = facets;
+    }
+
+    /**
+     * Create a manager of collectors counting the matching announces. Each slice of a concurrent search is counted by its own collector, and the counts of
+     * all the slices are added to the given facets once the search is done
+     * 
+     * @param facets
+     *            The facets to fill with the counts of matching announces
+     * @return The collector manager
+     */
+    public static CollectorManager<AnnounceFacetsCollector, AnnounceSearchFacets> createManager( AnnounceSearchFacets facets )
+    {
+        return new CollectorManager<AnnounceFacetsCollector, AnnounceSearchFacets>( )
+        {
+            @Override
+            public AnnounceFacetsCollector newCollector( )
+            {
+                return new AnnounceFacetsCollector( new AnnounceSearchFacets( ) );
+            }
+
+            @Override
+            public AnnounceSearchFacets reduce( Collection<AnnounceFacetsCollector> collectors ) throws IOException
+            {
+                for ( AnnounceFacetsCollector collector : collectors )
+                {
+                    facets.addAll( collector.getFacets( ) );
+                }
+
+                return facets;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doSetNextReader( LeafReaderContext context ) throws IOException
+    {
+        flushTagCounts( );
+
+        _sectorValues = DocValues.getNumeric( context.reader( ), AnnounceSearchItem.FIELD_FACET_SECTOR );
+        _categoryValues = DocValues.getNumeric( context.reader( ), AnnounceSearchItem.FIELD_FACET_CATEGORY );
+        _tagValues = DocValues.getSortedSet( context.reader( ), AnnounceSearchItem.FIELD_FACET_TAGS );
+        _tagOrdCounts = new int [ (int) _tagValues.getValueCount( )];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void collect( int doc ) throws IOException
+    {
+        if ( _sectorValues.advanceExact( doc ) )
+        {
+            _facets.incrementSector( (int) _sectorValues.longValue( ) );
+        }
+
+        if ( _categoryValues.advanceExact( doc ) )
+        {
+            _facets.incrementCategory( (int) _categoryValues.longValue( ) );
+        }
+
+        // Tags are counted by ordinal and only resolved once the segment is done
+        if ( _tagValues.advanceExact( doc ) )
+        {
+            for ( long lOrd = _tagValues.nextOrd( ); lOrd != SortedSetDocValues.NO_MORE_ORDS; lOrd = _tagValues.nextOrd( ) )
+            {
+                _tagOrdCounts [(int) lOrd]++;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScoreMode scoreMode( )
+    {
+        return ScoreMode.COMPLETE_NO_SCORES;
+    }
+
+    /**
+     * Get the facets filled by this collector. This method must be called once the search is done
+     * 
+     * @return The facets
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    public AnnounceSearchFacets getFacets( ) throws IOException
+    {
+        flushTagCounts( );
+
+        return _facets;
+    }
+
+    /**
+     * Add the tag counts of the current segment to the facets
+     * 
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    private void flushTagCounts( ) throws IOException
+    {
+        if ( _tagOrdCounts == null )
+        {
+            return;
+        }
+
+        for ( int nOrd = 0; nOrd < _tagOrdCounts.length; nOrd++ )
+        {
+            if ( _tagOrdCounts [nOrd] > 0 )
+            {
+                _facets.addTag( _tagValues.lookupOrd( nOrd ).utf8ToString( ), _tagOrdCounts [nOrd] );
+            }
+        }
+
+        _tagOrdCounts = null;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import fr.paris.lutece.portal.service.daemon.Daemon;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Daemon merging away the deleted documents of the announce index during off-peak hours
+ */
+public class AnnounceIndexOptimizerDaemon extends Daemon
+{
+    private static final String PROPERTY_OPTIMIZE_ENABLE = "announce.indexer.optimize.enable";
+    private static final String PROPERTY_OPTIMIZE_START_HOUR = "announce.indexer.optimize.startHour";
+    private static final String PROPERTY_OPTIMIZE_END_HOUR = "announce.indexer.optimize.endHour";
+    private static final int DEFAULT_OPTIMIZE_START_HOUR = 2;
+    private static final int DEFAULT_OPTIMIZE_END_HOUR = 5;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run( )
+    {
+        if ( !AppPropertiesService.getPropertyBoolean( PROPERTY_OPTIMIZE_ENABLE, false ) )
+        {
+            setLastRunLogs( "Index optimization is disabled\r\n" + AnnounceSearchService.getInstance( ).getIndexStatisticsLogs( ) );
+
+            return;
+        }
+
+        int nStartHour = AppPropertiesService.getPropertyInt( PROPERTY_OPTIMIZE_START_HOUR, DEFAULT_OPTIMIZE_START_HOUR );
+        int nEndHour = AppPropertiesService.getPropertyInt( PROPERTY_OPTIMIZE_END_HOUR, DEFAULT_OPTIMIZE_END_HOUR );
+        int nHour = new GregorianCalendar( ).get( Calendar.HOUR_OF_DAY );
+
+        // The off-peak period may span midnight
+        boolean bOffPeak = ( nStartHour <= nEndHour ) ? ( ( nHour >= nStartHour ) && ( nHour < nEndHour ) )
+                : ( ( nHour >= nStartHour ) || ( nHour < nEndHour ) );
+
+        if ( !bOffPeak )
+        {
+            setLastRunLogs( "Outside of the off-peak hours, the index is not optimized\r\n" + AnnounceSearchService.getInstance( ).getIndexStatisticsLogs( ) );
+
+            return;
+        }
+
+        setLastRunLogs( AnnounceSearchService.getInstance( ).optimizeIndex( ) );
+    }
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.IOUtils;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Physical Lucene index holding announces : either the whole announce index, or the shard of a sector when the index is sharded. The shard owns the writer
+ * of the index and the manager of its near-real-time searchers. A rebuilt index replaces the live index of the shard by switching the path recorded in a
+ * file next to the base path of the shard
+ */
+class AnnounceIndexShard
+{
+    // Suffixes of the paths derived from the base path : the file holding the path of the live index, the directory of the rebuild in progress and the
+    // directories of the rebuilt indexes
+    private static final String SUFFIX_LIVE_INDEX_FILE = ".current";
+    private static final String SUFFIX_TEMPORARY_FILE = ".tmp";
+    private static final String SUFFIX_REBUILD_DIRECTORY = ".rebuild";
+    private static final String SUFFIX_GENERATION_DIRECTORY = ".";
+
+    private final String _strBasePath;
+    private final int _nIdSector;
+    private final Object _lockWriter = new Object( );
+    private IndexWriter _indexWriter;
+    private volatile SearcherManager _searcherManager;
+    private final Map<Directory, IndexReaders> _mapIndexReaders = new ConcurrentHashMap<>( );
+
+    /**
+     * Creates a new shard
+     * 
+     * @param strBasePath
+     *            The base path of the shard
+     * @param nIdSector
+     *            The id of the sector of the announces of the shard, or 0 if the shard holds every announce
+     */
+    AnnounceIndexShard( String strBasePath, int nIdSector )
+    {
+        _strBasePath = strBasePath;
+        _nIdSector = nIdSector;
+    }
+
+    /**
+     * Get the id of the sector of the announces of this shard
+     * 
+     * @return The id of the sector, or 0 if the shard holds every announce
+     */
+    int getIdSector( )
+    {
+        return _nIdSector;
+    }
+
+    /**
+     * Get the writer of the live index. The writer is opened on the first call and stays open until the shard is closed or an indexing error occurs.
+     * 
+     * @return The writer of the live index
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    IndexWriter getIndexWriter( ) throws IOException
+    {
+        synchronized( _lockWriter )
+        {
+            if ( ( _indexWriter == null ) || !_indexWriter.isOpen( ) )
+            {
+                Directory dir = AnnounceSearchService.getInstance( ).getDirectoryFactory( ).open( getLiveIndexPath( ) );
+
+                try
+                {
+                    _indexWriter = new IndexWriter( dir, AnnounceSearchService.getInstance( ).getIndexWriterConfig( OpenMode.CREATE_OR_APPEND ) );
+                }
+                catch( IOException | RuntimeException e )
+                {
+                    IOUtils.closeWhileHandlingException( dir );
+                    throw e;
+                }
+            }
+
+            return _indexWriter;
+        }
+    }
+
+    /**
+     * Acquire a searcher on the current state of the live index. The searcher must be released by decrementing the reference count of its reader
+     * 
+     * @return The searcher
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    IndexSearcher acquireSearcher( ) throws IOException
+    {
+        IndexSearcher searcher;
+
+        try
+        {
+            searcher = getSearcherManager( ).acquire( );
+        }
+        catch( AlreadyClosedException e )
+        {
+            // The manager was closed by a concurrent switch or rollback : the manager of the current live index is read under the lock of the writer
+            synchronized( _lockWriter )
+            {
+                searcher = getSearcherManager( ).acquire( );
+            }
+        }
+
+        trackReader( searcher.getIndexReader( ) );
+
+        return searcher;
+    }
+
+    /**
+     * Track a reader handed out by the searcher manager until it is closed, so that the directory of a retired index is only deleted once every reader
+     * still used by a search is closed
+     * 
+     * @param reader
+     *            The reader
+     */
+    private void trackReader( IndexReader reader )
+    {
+        if ( reader instanceof DirectoryReader )
+        {
+            _mapIndexReaders.computeIfAbsent( ( (DirectoryReader) reader ).directory( ), dir -> new IndexReaders( ) ).track( reader );
+        }
+    }
+
+    /**
+     * Refresh the searchers so that they see the last changes of the writer
+     * 
+     * @param bBlocking
+     *            True to wait for a concurrent refresh to complete, false to skip the refresh if another thread is already refreshing
+     */
+    void refreshSearcher( boolean bBlocking )
+    {
+        SearcherManager searcherManager = _searcherManager;
+
+        // If the manager has not been created yet, it will be opened on the current state of the writer by the next search
+        if ( searcherManager == null )
+        {
+            return;
+        }
+
+        try
+        {
+            if ( bBlocking )
+            {
+                searcherManager.maybeRefreshBlocking( );
+            }
+            else
+            {
+                searcherManager.maybeRefresh( );
+            }
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Unable to refresh the announce searcher : " + e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Get the searcher manager of the live index. The manager opens near-real-time searchers from the writer of the index, so that searches see the changes
+     * of the writer as soon as the manager is refreshed.
+     * 
+     * @return The searcher manager
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    private SearcherManager getSearcherManager( ) throws IOException
+    {
+        if ( _searcherManager == null )
+        {
+            synchronized( _lockWriter )
+            {
+                if ( _searcherManager == null )
+                {
+                    _searcherManager = new SearcherManager( getIndexWriter( ), true, false, new AnnounceSearcherFactory( _nIdSector ) );
+                }
+            }
+        }
+
+        return _searcherManager;
+    }
+
+    /**
+     * Get the path of the live index. It is the base path of the shard until an index has been rebuilt, and then the path of the last rebuilt index
+     * 
+     * @return The path of the live index
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    private Path getLiveIndexPath( ) throws IOException
+    {
+        Path pathLiveIndexFile = Paths.get( _strBasePath + SUFFIX_LIVE_INDEX_FILE );
+
+        if ( Files.exists( pathLiveIndexFile ) )
+        {
+            return Paths.get( new String( Files.readAllBytes( pathLiveIndexFile ), StandardCharsets.UTF_8 ).trim( ) );
+        }
+
+        return Paths.get( _strBasePath );
+    }
+
+    /**
+     * Get the path of the index being rebuilt
+     * 
+     * @return The path of the index being rebuilt
+     */
+    Path getRebuildIndexPath( )
+    {
+        return Paths.get( _strBasePath + SUFFIX_REBUILD_DIRECTORY );
+    }
+
+    /**
+     * Make the rebuilt index the live index. The writer and the searcher manager of the previous live index are closed. Its directory is deleted once every
+     * reader acquired on it, including the older near-real-time readers still used by searches in progress, has been closed
+     * 
+     * @return The path of the new live index
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    Path switchLiveIndex( ) throws IOException
+    {
+        Path pathIndex = Paths.get( _strBasePath + SUFFIX_GENERATION_DIRECTORY + System.currentTimeMillis( ) );
+        AnnounceSearchService.getInstance( ).getDirectoryFactory( ).move( getRebuildIndexPath( ), pathIndex );
+
+        synchronized( _lockWriter )
+        {
+            Path pathPreviousIndex = getLiveIndexPath( );
+
+            // The path of the live index is replaced atomically, so that a restart opens either the previous or the rebuilt index
+            Path pathLiveIndexFile = Paths.get( _strBasePath + SUFFIX_LIVE_INDEX_FILE );
+            Path pathTemporaryFile = Paths.get( _strBasePath + SUFFIX_LIVE_INDEX_FILE + SUFFIX_TEMPORARY_FILE );
+            Files.write( pathTemporaryFile, pathIndex.toString( ).getBytes( StandardCharsets.UTF_8 ) );
+            Files.move( pathTemporaryFile, pathLiveIndexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+
+            SearcherManager searcherManager = _searcherManager;
+            IndexWriter writer = _indexWriter;
+            _searcherManager = null;
+            _indexWriter = null;
+
+            Directory dirPrevious = null;
+
+            if ( writer != null )
+            {
+                dirPrevious = writer.getDirectory( );
+
+                // Changes applied since the rebuild started are still stored as indexer actions, they are applied to the rebuilt index by the next indexing
+                writer.rollback( );
+            }
+
+            retireIndex( searcherManager, dirPrevious, pathPreviousIndex );
+        }
+
+        return pathIndex;
+    }
+
+    /**
+     * Delete the directory of an index that is not live anymore, once every reader acquired on it has been closed
+     * 
+     * @param searcherManager
+     *            The searcher manager of the index, or null if no searcher was opened
+     * @param dir
+     *            The directory of the index, or null if it was not opened
+     * @param pathIndex
+     *            The path of the index
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    private void retireIndex( SearcherManager searcherManager, Directory dir, Path pathIndex ) throws IOException
+    {
+        Runnable deletion = ( ) -> {
+            try
+            {
+                IOUtils.close( dir );
+                AnnounceSearchService.getInstance( ).getDirectoryFactory( ).delete( pathIndex );
+                AppLogService.info( "Retired announce index " + pathIndex + " deleted" );
+            }
+            catch( IOException e )
+            {
+                AppLogService.error( "Unable to delete the retired announce index " + pathIndex + " : " + e.getMessage( ), e );
+            }
+        };
+
+        if ( ( searcherManager == null ) || ( dir == null ) )
+        {
+            deletion.run( );
+
+            return;
+        }
+
+        // The current reader of the manager is tracked as well : searches acquiring it until the manager is closed do not need to be tracked in time
+        IndexSearcher searcher = searcherManager.acquire( );
+
+        try
+        {
+            trackReader( searcher.getIndexReader( ) );
+        }
+        finally
+        {
+            searcherManager.release( searcher );
+        }
+
+        IndexReaders indexReaders = _mapIndexReaders.computeIfAbsent( dir, d -> new IndexReaders( ) );
+        indexReaders.retire( ( ) -> {
+            _mapIndexReaders.remove( dir );
+            deletion.run( );
+        } );
+        searcherManager.close( );
+    }
+
+    /**
+     * Discard the uncommitted changes of the writer after an indexing error. The writer, its directory and the searcher manager are closed, and reopened on
+     * the last commit by the next call. Searchers opened since the last commit saw the discarded changes : the next searchers do not
+     */
+    void rollback( )
+    {
+        synchronized( _lockWriter )
+        {
+            closeSearcherManager( );
+
+            if ( _indexWriter != null )
+            {
+                Directory dir = _indexWriter.getDirectory( );
+
+                try
+                {
+                    _indexWriter.rollback( );
+                }
+                catch( IOException e )
+                {
+                    AppLogService.error( "Unable to rollback the announce index : " + e.getMessage( ), e );
+                }
+                finally
+                {
+                    IOUtils.closeWhileHandlingException( dir );
+                }
+
+                _indexWriter = null;
+            }
+        }
+    }
+
+    /**
+     * Close the searcher manager, the writer of the index and its directory
+     */
+    void close( )
+    {
+        synchronized( _lockWriter )
+        {
+            closeSearcherManager( );
+
+            if ( _indexWriter != null )
+            {
+                Directory dir = _indexWriter.getDirectory( );
+
+                try
+                {
+                    if ( _indexWriter.hasUncommittedChanges( ) )
+                    {
+                        _indexWriter.commit( );
+                    }
+
+                    _indexWriter.close( );
+                }
+                catch( IOException e )
+                {
+                    AppLogService.error( "Unable to close the announce index : " + e.getMessage( ), e );
+                }
+                finally
+                {
+                    IOUtils.closeWhileHandlingException( dir );
+                }
+
+                _indexWriter = null;
+            }
+        }
+    }
+
+    /**
+     * Readers of an index handed out to searches and not closed yet
+     */
+    private static final class IndexReaders
+    {
+        private final Set<IndexReader> _setReaders = Collections.newSetFromMap( new IdentityHashMap<>( ) );
+        private Runnable _deletion;
+
+        /**
+         * Track a reader until it is closed
+         * 
+         * @param reader
+         *            The reader, which must be open
+         */
+        synchronized void track( IndexReader reader )
+        {
+            if ( _setReaders.add( reader ) )
+            {
+                reader.getReaderCacheHelper( ).addClosedListener( key -> untrack( reader ) );
+            }
+        }
+
+        /**
+         * Stop tracking a closed reader, and run the deletion of the retired index once its last reader is closed
+         * 
+         * @param reader
+         *            The closed reader
+         */
+        private void untrack( IndexReader reader )
+        {
+            Runnable deletion = null;
+
+            synchronized( this )
+            {
+                _setReaders.remove( reader );
+
+                if ( _setReaders.isEmpty( ) )
+                {
+                    deletion = _deletion;
+                    _deletion = null;
+                }
+            }
+
+            if ( deletion != null )
+            {
+                deletion.run( );
+            }
+        }
+
+        /**
+         * Retire the index : the deletion is run once every tracked reader is closed
+         * 
+         * @param deletion
+         *            The deletion of the index
+         */
+        void retire( Runnable deletion )
+        {
+            synchronized( this )
+            {
+                if ( !_setReaders.isEmpty( ) )
+                {
+                    _deletion = deletion;
+
+                    return;
+                }
+            }
+
+            deletion.run( );
+        }
+    }
+
+    /**
+     * Close the searcher manager. Searchers already acquired remain usable until they are released
+     */
+    private void closeSearcherManager( )
+    {
+        if ( _searcherManager != null )
+        {
+            try
+            {
+                _searcherManager.close( );
+            }
+            catch( IOException e )
+            {
+                AppLogService.error( e.getMessage( ), e );
+            }
+
+            _searcherManager = null;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+/**
+ * Statistics of the segments of the live index of a shard
+ */
+public class AnnounceIndexStatistics
+{
+    private static final double PERCENT = 100d;
+
+    private final int _nIdSector;
+    private final int _nSegmentCount;
+    private final int _nNumDocs;
+    private final int _nMaxDoc;
+
+    /**
+     * Creates new statistics
+     *
+     * @param nIdSector
+     *            The id of the sector of the shard, or 0 if the shard holds every announce
+     * @param nSegmentCount
+     *            The number of segments
+     * @param nNumDocs
+     *            The number of live documents
+     * @param nMaxDoc
+     *            The number of documents, including deleted documents that are not merged away yet
+     */
+    public AnnounceIndexStatistics( int nIdSector, int nSegmentCount, int nNumDocs, int nMaxDoc )
+    {
+        _nIdSector = nIdSector;
+        _nSegmentCount = nSegmentCount;
+        _nNumDocs = nNumDocs;
+        _nMaxDoc = nMaxDoc;
+    }
+
+    /**
+     * Get the id of the sector of the shard
+     *
+     * @return The id of the sector, or 0 if the shard holds every announce
+     */
+    public int getIdSector( )
+    {
+        return _nIdSector;
+    }
+
+    /**
+     * Get the number of segments of the index
+     *
+     * @return The number of segments
+     */
+    public int getSegmentCount( )
+    {
+        return _nSegmentCount;
+    }
+
+    /**
+     * Get the number of live documents of the index
+     *
+     * @return The number of live documents
+     */
+    public int getNumDocs( )
+    {
+        return _nNumDocs;
+    }
+
+    /**
+     * Get the number of deleted documents still held by the segments of the index
+     *
+     * @return The number of deleted documents
+     */
+    public int getDeletedDocs( )
+    {
+        return _nMaxDoc - _nNumDocs;
+    }
+
+    /**
+     * Get the ratio of deleted documents among the documents held by the segments of the index
+     *
+     * @return The percentage of deleted documents
+     */
+    public double getDeletedRatio( )
+    {
+        return ( _nMaxDoc > 0 ) ? ( ( getDeletedDocs( ) * PERCENT ) / _nMaxDoc ) : 0d;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString( )
+    {
+        return "sector " + _nIdSector + " : " + _nSegmentCount + " segments, " + _nNumDocs + " documents, " + getDeletedDocs( ) + " deleted documents ("
+                + String.format( "%.1f", getDeletedRatio( ) ) + "%)";
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import fr.paris.lutece.plugins.announce.business.IndexerAction;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Applies the changes of announces to the index of this webapp as soon as they are made. Changes are gathered into small batches, which are applied to the
+ * index writer and made visible by refreshing the searchers, without committing. The indexer actions stored in the database remain the reference : the
+ * indexer daemon applies them again and commits them, so that changes lost by a crash or made by other webapps of a cluster are indexed too
+ */
+public class AnnounceIndexingPipeline
+{
+    private static final String THREAD_NAME = "announce-indexing-pipeline";
+
+    private final BlockingQueue<IndexerAction> _queue;
+    private final ScheduledExecutorService _executor;
+    private final AtomicBoolean _bFlushScheduled = new AtomicBoolean( );
+    private final long _lBatchDelay;
+    private final int _nBatchSize;
+
+    /**
+     * Creates a new pipeline
+     * 
+     * @param lBatchDelay
+     *            The delay in milliseconds between the first change of a batch and the application of the batch
+     * @param nBatchSize
+     *            The number of changes from which a batch is applied without waiting for the delay
+     * @param nMaxPendingChanges
+     *            The maximum number of changes waiting to be applied. Further changes are left to the indexer daemon
+     */
+    public AnnounceIndexingPipeline( long lBatchDelay, int nBatchSize, int nMaxPendingChanges )
+    {
+        _lBatchDelay = lBatchDelay;
+        _nBatchSize = nBatchSize;
+        _queue = new LinkedBlockingQueue<>( nMaxPendingChanges );
+        _executor = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME );
+            thread.setDaemon( true );
+
+            return thread;
+        } );
+    }
+
+    /**
+     * Notify the pipeline of a change of an announce
+     * 
+     * @param nIdAnnounce
+     *            The id of the announce
+     * @param nIdTask
+     *            The indexer task of the change
+     */
+    public void notifyChange( int nIdAnnounce, int nIdTask )
+    {
+        IndexerAction action = new IndexerAction( );
+        action.setIdAnnounce( nIdAnnounce );
+        action.setIdTask( nIdTask );
+
+        if ( !_queue.offer( action ) )
+        {
+            AppLogService.debug( "Announce indexing pipeline full, announce #" + nIdAnnounce + " is left to the indexer daemon" );
+
+            return;
+        }
+
+        if ( _queue.size( ) >= _nBatchSize )
+        {
+            _executor.execute( this::flush );
+        }
+        else
+            if ( _bFlushScheduled.compareAndSet( false, true ) )
+            {
+                _executor.schedule( this::flush, _lBatchDelay, TimeUnit.MILLISECONDS );
+            }
+    }
+
+    /**
+     * Stop the pipeline. Pending changes are left to the indexer daemon
+     */
+    public void shutdown( )
+    {
+        _executor.shutdownNow( );
+    }
+
+    /**
+     * Apply the pending changes to the index
+     */
+    private void flush( )
+    {
+        _bFlushScheduled.set( false );
+
+        List<IndexerAction> listActions = new ArrayList<>( );
+        _queue.drainTo( listActions );
+
+        if ( listActions.isEmpty( ) )
+        {
+            return;
+        }
+
+        try
+        {
+            AnnounceSearchService.getInstance( ).applyIndexerActions( listActions );
+        }
+        catch( Exception e )
+        {
+            // The indexer actions stored in the database are applied by the next run of the indexer daemon
+            AppLogService.error( "Unable to apply announce changes to the index : " + e.getMessage( ), e );
+        }
+    }
+}
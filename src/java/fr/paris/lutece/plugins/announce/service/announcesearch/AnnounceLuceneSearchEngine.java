@@ -33,34 +33,45 @@
  */
 package fr.paris.lutece.plugins.announce.service.announcesearch;
 
+import java.io.IOException;
+import java.sql.Timestamp;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
-import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.document.LatLonDocValuesField;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.MultiCollectorManager;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TermQuery;
-import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopFieldDocs;
 
 import fr.paris.lutece.plugins.announce.business.Announce;
 import fr.paris.lutece.plugins.announce.business.AnnounceHome;
 import fr.paris.lutece.plugins.announce.business.AnnounceSearchFilter;
 import fr.paris.lutece.plugins.announce.business.AnnounceSort;
-import fr.paris.lutece.plugins.announce.service.AnnouncePlugin;
+import fr.paris.lutece.plugins.announce.business.Category;
+import fr.paris.lutece.plugins.announce.business.CategoryHome;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.search.SearchItem;
 import fr.paris.lutece.portal.service.search.SearchResult;
@@ -71,9 +82,14 @@ import fr.paris.lutece.portal.service.util.AppLogService;
  */
 public class AnnounceLuceneSearchEngine implements IAnnounceSearchEngine
 {
-    private static final int NO_CATEGORY = 0;
-    private static final int NO_SECTOR = 0;
-    private final SimpleDateFormat _dayFormat = new SimpleDateFormat( "yyyyMMdd", Locale.US );
+    private static final double CENTS_PER_UNIT = 100d;
+    private static final Set<String> FIELDS_TO_LOAD_ID = Collections.singleton( SearchItem.FIELD_UID );
+    private static final Set<String> FIELDS_TO_LOAD_PROJECTION = new HashSet<>( Arrays.asList( SearchItem.FIELD_UID, SearchItem.FIELD_TITLE,
+            AnnounceSearchItem.FIELD_CATEGORY_ID, AnnounceSearchItem.FIELD_SECTOR_ID, AnnounceSearchItem.FIELD_CATEGORY_LABEL,
+            AnnounceSearchItem.FIELD_CATEGORY_DISPLAY_PRICE, AnnounceSearchItem.FIELD_DESCRIPTION_EXCERPT, AnnounceSearchItem.FIELD_TAGS,
+            AnnounceSearchItem.FIELD_USER_NAME, AnnounceSearchItem.FIELD_USER_LAST_NAME, AnnounceSearchItem.FIELD_USER_SECOND_NAME,
+            AnnounceSearchItem.FIELD_PRICE_CENTS, AnnounceSearchItem.FIELD_DATE_CREATION, AnnounceSearchItem.FIELD_PUBLICATION_TIME,
+            AnnounceSearchItem.FIELD_COVER_IMAGE_ID ) );
 
     /**
      * {@inheritDoc}
@@ -82,102 +98,87 @@ public class AnnounceLuceneSearchEngine implements IAnnounceSearchEngine
     public int getSearchResults( AnnounceSearchFilter filter, Plugin plugin, List<SearchResult> listSearchResult, int nPage, int nItemsPerPage )
     {
         ArrayList<SearchItem> listResults = new ArrayList<>( );
-        IndexSearcher searcher;
+        IndexSearcher searcher = null;
 
         int nNbResults = 0;
 
         try
         {
-            searcher = AnnounceSearchService.getInstance( ).getSearcher( );
+            searcher = AnnounceSearchService.getInstance( ).acquireSearcher( filter.getIdSector( ) );
 
-            Collection<String> queries = new ArrayList<>( );
-            Collection<String> sectors = new ArrayList<>( );
-            Collection<BooleanClause.Occur> flags = new ArrayList<>( );
-
-            // Category id
-            if ( filter.getIdCategory( ) != NO_CATEGORY )
+            if ( searcher == null )
             {
-                Query queryCategoryId = new TermQuery( new Term( AnnounceSearchItem.FIELD_CATEGORY_ID, String.valueOf( filter.getIdCategory( ) ) ) );
-                queries.add( queryCategoryId.toString( ) );
-                sectors.add( AnnounceSearchItem.FIELD_CATEGORY_ID );
-                flags.add( BooleanClause.Occur.MUST );
+                return nNbResults;
             }
 
-            // Category id
-            if ( filter.getIdSector( ) != NO_SECTOR )
+            Query query = AnnounceSearchService.getInstance( ).getQueryBuilder( ).buildQuery( filter );
+
+            // Matching documents are counted without being collected, and only the documents up to the current page are collected
+            nNbResults = searcher.count( query );
+
+            // We only get the documents of the current page
+            int nFrom = ( nPage - 1 ) * nItemsPerPage;
+
+            if ( nFrom < 0 )
             {
-                Query querySectorId = new TermQuery( new Term( AnnounceSearchItem.FIELD_SECTOR_ID, String.valueOf( filter.getIdSector( ) ) ) );
-                queries.add( querySectorId.toString( ) );
-                sectors.add( AnnounceSearchItem.FIELD_SECTOR_ID );
-                flags.add( BooleanClause.Occur.MUST );
+                nFrom = 0;
             }
 
-            // Type (=announce)
-            PhraseQuery.Builder queryTypeBuilder = new PhraseQuery.Builder( );
-            // add character "e" to TYPE because field is not analyzed when added to lucene document, but it's analyzed then in MultiFieldQueryParser.parse
-            // method
-            queryTypeBuilder.add( new Term( SearchItem.FIELD_TYPE, AnnouncePlugin.PLUGIN_NAME + "e" ) );
-            queries.add( queryTypeBuilder.build( ).toString( ) );
-            sectors.add( SearchItem.FIELD_TYPE );
-            flags.add( BooleanClause.Occur.MUST );
-
-            // Keywords in title or description
-            if ( StringUtils.isNotBlank( filter.getKeywords( ) ) )
+            int nTo = ( nPage * nItemsPerPage );
+
+            if ( ( nTo <= 0 ) || ( nTo > nNbResults ) )
             {
-                PhraseQuery.Builder queryContentBuilder = new PhraseQuery.Builder( );
-                queryContentBuilder.add( new Term( SearchItem.FIELD_CONTENTS, filter.getKeywords( ) ) );
-                queries.add( queryContentBuilder.build( ).toString( ) );
-                sectors.add( SearchItem.FIELD_CONTENTS );
-                flags.add( BooleanClause.Occur.MUST );
+                nTo = nNbResults;
             }
 
-            // contains range date
-            if ( ( filter.getDateMin( ) != null ) || ( filter.getDateMax( ) != null ) )
+            if ( nTo > nFrom )
             {
-                Date dateMinToSearch = new Date( 0L );
-                Date dateMaxToSearch = new Date( );
-                if ( filter.getDateMin( ) != null )
-                {
-                    dateMinToSearch = filter.getDateMin( );
-                }
+                ScoreDoc [ ] hits = searcher.search( query, nTo ).scoreDocs;
 
-                if ( filter.getDateMax( ) != null )
+                for ( int i = nFrom; i < hits.length; i++ )
                 {
-                    dateMaxToSearch = filter.getDateMax( );
+                    int docId = hits [i].doc;
+                    Document document = searcher.doc( docId );
+                    SearchItem si = new SearchItem( document );
+                    listResults.add( si );
                 }
-
-                // String stringDateMin = DateUtil.
-                String strLowerTerm = _dayFormat.format( dateMinToSearch );
-                String strUpperTerm = _dayFormat.format( dateMaxToSearch );
-                BytesRef bRLowerTerm = new BytesRef( strLowerTerm );
-                BytesRef bRUpperTerm = new BytesRef( strUpperTerm );
-                Query queryRangeDate = new TermRangeQuery( SearchItem.FIELD_DATE, bRLowerTerm, bRUpperTerm, true, true );
-                queries.add( queryRangeDate.toString( ) );
-                sectors.add( SearchItem.FIELD_DATE );
-                flags.add( BooleanClause.Occur.MUST );
             }
+        }
+        catch( Exception e )
+        {
+            AppLogService.error( e.getMessage( ), e );
+        }
+        finally
+        {
+            AnnounceSearchService.getInstance( ).releaseSearcher( searcher );
+        }
+        convertList( listResults, listSearchResult );
 
-            // contains range price
-            if ( ( filter.getPriceMin( ) > 0 ) || ( filter.getPriceMax( ) > 0 ) )
+        return nNbResults;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSearchResultsBis( AnnounceSearchFilter filter, Plugin plugin, List<Announce> listAnnouncesResult, int nPage, int nItemsPerPage,
+            AnnounceSort anSort, AnnounceSearchFacets facets ) throws IOException
+    {
+        IndexSearcher searcher = null;
+
+        int nNbResults = 0;
+        try
+        {
+            searcher = AnnounceSearchService.getInstance( ).acquireSearcher( filter.getIdSector( ) );
+
+            if ( searcher == null )
             {
-                int nPriceMin = ( filter.getPriceMin( ) > 0 ) ? filter.getPriceMin( ) : 0;
-                int nPriceMax = ( filter.getPriceMax( ) > 0 ) ? filter.getPriceMax( ) : Integer.MAX_VALUE;
-                Query queryRangePrice = new TermRangeQuery( AnnounceSearchItem.FIELD_PRICE,
-                        new BytesRef( AnnounceSearchService.formatPriceForIndexer( nPriceMin ) ),
-                        new BytesRef( AnnounceSearchService.formatPriceForIndexer( nPriceMax ) ), true, true );
-                queries.add( queryRangePrice.toString( ) );
-                sectors.add( AnnounceSearchItem.FIELD_PRICE );
-                flags.add( BooleanClause.Occur.MUST );
+                return nNbResults;
             }
 
-            Query queryMulti = MultiFieldQueryParser.parse( queries.toArray( new String [ queries.size( )] ), sectors.toArray( new String [ sectors.size( )] ),
-                    flags.toArray( new BooleanClause.Occur [ flags.size( )] ), AnnounceSearchService.getInstance( ).getAnalyzer( ) );
-
-            TopDocs topDocs = searcher.search( queryMulti, 1000000 );
-            ScoreDoc [ ] hits = topDocs.scoreDocs;
-            nNbResults = hits.length;
+            Query query = AnnounceSearchService.getInstance( ).getQueryBuilder( ).buildQuery( filter );
 
-            // We only get the documents of the current page
+            // We only collect the documents up to the current page
             int nFrom = ( nPage - 1 ) * nItemsPerPage;
 
             if ( nFrom < 0 )
@@ -187,24 +188,21 @@ public class AnnounceLuceneSearchEngine implements IAnnounceSearchEngine
 
             int nTo = ( nPage * nItemsPerPage );
 
-            if ( ( nTo == 0 ) || ( nTo > nNbResults ) )
+            if ( nTo <= 0 )
             {
-                nTo = nNbResults;
+                nTo = Math.max( 1, searcher.getIndexReader( ).maxDoc( ) );
             }
 
-            for ( int i = nFrom; i < nTo; i++ )
-            {
-                int docId = hits [i].doc;
-                Document document = searcher.doc( docId );
-                SearchItem si = new SearchItem( document );
-                listResults.add( si );
-            }
+            TopFieldDocs topDocs = search( searcher, query, getSort( anSort, filter ), nTo, null, facets );
+            nNbResults = (int) topDocs.totalHits.value;
+
+            ScoreDoc [ ] hits = topDocs.scoreDocs;
+            listAnnouncesResult.addAll( loadAnnounces( searcher, Arrays.copyOfRange( hits, Math.min( nFrom, hits.length ), hits.length ), anSort ) );
         }
-        catch( Exception e )
+        finally
         {
-            AppLogService.error( e.getMessage( ), e );
+            AnnounceSearchService.getInstance( ).releaseSearcher( searcher );
         }
-        convertList( listResults, listSearchResult );
 
         return nNbResults;
     }
@@ -213,159 +211,498 @@ public class AnnounceLuceneSearchEngine implements IAnnounceSearchEngine
      * {@inheritDoc}
      */
     @Override
-    public int getSearchResultsBis( AnnounceSearchFilter filter, Plugin plugin, List<Announce> listAnnouncesResult, int nPage, int nItemsPerPage,
-            AnnounceSort anSort )
+    public int getSearchResultsAfter( AnnounceSearchFilter filter, Plugin plugin, List<Announce> listAnnouncesResult, int nItemsPerPage,
+            AnnounceSearchCursor cursor, AnnounceSearchFacets facets ) throws IOException
     {
-        ArrayList<SearchItem> listResults = new ArrayList<>( );
-        List<Integer> listIdAnnounces = new ArrayList<>( );
-        IndexSearcher searcher;
+        IndexSearcher searcher = null;
 
-        Date dateMinToSearch;
-        Date dateMaxToSearch;
         int nNbResults = 0;
         try
         {
-            searcher = AnnounceSearchService.getInstance( ).getSearcher( );
+            searcher = AnnounceSearchService.getInstance( ).acquireSearcher( filter.getIdSector( ) );
+
+            if ( searcher == null )
+            {
+                return nNbResults;
+            }
 
-            Collection<String> queries = new ArrayList<>( );
-            Collection<String> sectors = new ArrayList<>( );
-            Collection<BooleanClause.Occur> flags = new ArrayList<>( );
+            Query query = AnnounceSearchService.getInstance( ).getQueryBuilder( ).buildQuery( filter );
+            int nNumHits = ( nItemsPerPage > 0 ) ? nItemsPerPage : Math.max( 1, searcher.getIndexReader( ).maxDoc( ) );
 
-            // Category id
-            if ( filter.getIdCategory( ) != NO_CATEGORY )
+            // Only the hits following the cursor are collected, but every matching document is counted
+            TopFieldDocs topDocs = search( searcher, query, getSort( cursor.getSort( ), filter ), nNumHits, cursor.getAfter( ), facets );
+            nNbResults = (int) topDocs.totalHits.value;
+
+            ScoreDoc [ ] hits = topDocs.scoreDocs;
+
+            if ( ( nItemsPerPage > 0 ) && ( hits.length == nItemsPerPage ) )
             {
-                Query queryCategoryId = new TermQuery( new Term( AnnounceSearchItem.FIELD_CATEGORY_ID, String.valueOf( filter.getIdCategory( ) ) ) );
-                queries.add( queryCategoryId.toString( ) );
-                sectors.add( AnnounceSearchItem.FIELD_CATEGORY_ID );
-                flags.add( BooleanClause.Occur.MUST );
+                cursor.setLastHit( (FieldDoc) hits [hits.length - 1] );
             }
 
-            // Category id
-            if ( filter.getIdSector( ) != NO_SECTOR )
+            listAnnouncesResult.addAll( loadAnnounces( searcher, hits, cursor.getSort( ) ) );
+        }
+        finally
+        {
+            AnnounceSearchService.getInstance( ).releaseSearcher( searcher );
+        }
+
+        return nNbResults;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AnnounceSearchFacets getSearchFacets( AnnounceSearchFilter filter, Plugin plugin ) throws IOException
+    {
+        AnnounceSearchFacets facets = new AnnounceSearchFacets( );
+        IndexSearcher searcher = null;
+
+        try
+        {
+            searcher = AnnounceSearchService.getInstance( ).acquireSearcher( filter.getIdSector( ) );
+
+            if ( searcher != null )
             {
-                Query querySectorId = new TermQuery( new Term( AnnounceSearchItem.FIELD_SECTOR_ID, String.valueOf( filter.getIdSector( ) ) ) );
-                queries.add( querySectorId.toString( ) );
-                sectors.add( AnnounceSearchItem.FIELD_SECTOR_ID );
-                flags.add( BooleanClause.Occur.MUST );
+                Query query = AnnounceSearchService.getInstance( ).getQueryBuilder( ).buildQuery( filter );
+                searcher.search( query, AnnounceFacetsCollector.createManager( facets ) );
             }
+        }
+        finally
+        {
+            AnnounceSearchService.getInstance( ).releaseSearcher( searcher );
+        }
+
+        return facets;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int countSearchResults( AnnounceSearchFilter filter, int nMaxCount, Plugin plugin )
+    {
+        IndexSearcher searcher = null;
 
-            // Type (=announce)
-            PhraseQuery.Builder queryTypeBuilder = new PhraseQuery.Builder( );
-            // add character "e" to TYPE because field is not analyzed when added to lucene document, but it's analyzed then in MultiFieldQueryParser.parse
-            // method
-            queryTypeBuilder.add( new Term( SearchItem.FIELD_TYPE, AnnouncePlugin.PLUGIN_NAME + "e" ) );
-            queries.add( queryTypeBuilder.build( ).toString( ) );
-            sectors.add( SearchItem.FIELD_TYPE );
-            flags.add( BooleanClause.Occur.MUST );
-
-            // Keywords in title or description
-            if ( StringUtils.isNotBlank( filter.getKeywords( ) ) )
+        try
+        {
+            searcher = AnnounceSearchService.getInstance( ).acquireSearcher( filter.getIdSector( ) );
+
+            if ( searcher == null )
             {
-                PhraseQuery.Builder queryContentBuilder = new PhraseQuery.Builder( );
-                queryContentBuilder.add( new Term( SearchItem.FIELD_CONTENTS, filter.getKeywords( ) ) );
-                queries.add( queryContentBuilder.build( ).toString( ) );
-                sectors.add( SearchItem.FIELD_CONTENTS );
-                flags.add( BooleanClause.Occur.MUST );
+                return 0;
             }
 
-            // contains range date
-            if ( ( filter.getDateMin( ) != null ) || ( filter.getDateMax( ) != null ) )
+            Query query = AnnounceSearchService.getInstance( ).getQueryBuilder( ).buildQuery( filter );
+
+            if ( nMaxCount <= 0 )
             {
-                if ( filter.getDateMin( ) == null )
-                {
-                    dateMinToSearch = new Date( 0L );
-                }
-                else
-                {
-                    dateMinToSearch = filter.getDateMin( );
-                }
+                return searcher.count( query );
+            }
 
-                if ( filter.getDateMax( ) == null )
-                {
-                    dateMaxToSearch = new Date( );
-                }
-                else
-                {
-                    dateMaxToSearch = filter.getDateMax( );
-                }
+            MaxCountCollector collector = new MaxCountCollector( nMaxCount );
+            searcher.search( query, collector );
 
-                // String stringDateMin = DateUtil.
-                String strLowerTerm = _dayFormat.format( dateMinToSearch );
-                String strUpperTerm = _dayFormat.format( dateMaxToSearch );
-                BytesRef bRLowerTerm = new BytesRef( strLowerTerm );
-                BytesRef bRUpperTerm = new BytesRef( strUpperTerm );
-                Query queryRangeDate = new TermRangeQuery( SearchItem.FIELD_DATE, bRLowerTerm, bRUpperTerm, true, true );
-                queries.add( queryRangeDate.toString( ) );
-                sectors.add( SearchItem.FIELD_DATE );
-                flags.add( BooleanClause.Occur.MUST );
+            return collector.getCount( );
+        }
+        catch( Exception e )
+        {
+            AppLogService.error( e.getMessage( ), e );
+        }
+        finally
+        {
+            AnnounceSearchService.getInstance( ).releaseSearcher( searcher );
+        }
+
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Integer> getSimilarAnnounces( Announce announce, int nMaxResults, Plugin plugin )
+    {
+        IndexSearcher searcher = null;
+
+        try
+        {
+            searcher = AnnounceSearchService.getInstance( ).acquireSearcher( announce.getCategory( ).getIdSector( ) );
+
+            Query query = AnnounceSearchService.getInstance( ).getQueryBuilder( ).buildSimilarQuery( searcher.getIndexReader( ), announce );
+
+            if ( query != null )
+            {
+                return getIdAnnounces( searcher, searcher.search( query, nMaxResults ).scoreDocs );
             }
+        }
+        catch( Exception e )
+        {
+            AppLogService.error( e.getMessage( ), e );
+        }
+        finally
+        {
+            AnnounceSearchService.getInstance( ).releaseSearcher( searcher );
+        }
 
-            // contains range price
-            if ( ( filter.getPriceMin( ) > 0 ) || ( filter.getPriceMax( ) > 0 ) )
+        return new ArrayList<>( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<AnnounceCluster> getClusters( AnnounceSearchFilter filter, AnnounceMapTile tile, int nGridSize, int nMaxSamples, Plugin plugin )
+    {
+        IndexSearcher searcher = null;
+
+        try
+        {
+            searcher = AnnounceSearchService.getInstance( ).acquireSearcher( filter.getIdSector( ) );
+
+            if ( searcher != null )
             {
-                int nPriceMin = ( filter.getPriceMin( ) > 0 ) ? filter.getPriceMin( ) : 0;
-                int nPriceMax = ( filter.getPriceMax( ) > 0 ) ? filter.getPriceMax( ) : Integer.MAX_VALUE;
-                Query queryRangePrice = new TermRangeQuery( AnnounceSearchItem.FIELD_PRICE,
-                        new BytesRef( AnnounceSearchService.formatPriceForIndexer( nPriceMin ) ),
-                        new BytesRef( AnnounceSearchService.formatPriceForIndexer( nPriceMax ) ), true, true );
-                queries.add( queryRangePrice.toString( ) );
-                sectors.add( AnnounceSearchItem.FIELD_PRICE );
-                flags.add( BooleanClause.Occur.MUST );
+                Query query = AnnounceSearchService.getInstance( ).getQueryBuilder( ).buildQuery( filter, tile );
+
+                return searcher.search( query, AnnounceClustersCollector.createManager( tile, nGridSize, nMaxSamples ) );
             }
+        }
+        catch( Exception e )
+        {
+            AppLogService.error( e.getMessage( ), e );
+        }
+        finally
+        {
+            AnnounceSearchService.getInstance( ).releaseSearcher( searcher );
+        }
 
-            Query queryMulti = MultiFieldQueryParser.parse( queries.toArray( new String [ queries.size( )] ), sectors.toArray( new String [ sectors.size( )] ),
-                    flags.toArray( new BooleanClause.Occur [ flags.size( )] ), AnnounceSearchService.getInstance( ).getAnalyzer( ) );
+        return new ArrayList<>( );
+    }
 
-            TopDocs topDocs = searcher.search( queryMulti, 1000000 );
-            ScoreDoc [ ] hits = topDocs.scoreDocs;
-            nNbResults = hits.length;
+    /**
+     * Run a search the way the first page of a listing is searched, sorted by the default sort and counting facets, so that the data structures it reads are
+     * loaded
+     * 
+     * @param searcher
+     *            The searcher
+     * @param query
+     *            The query
+     * @param nNumHits
+     *            The number of hits to collect
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    static void warmSearcher( IndexSearcher searcher, Query query, int nNumHits ) throws IOException
+    {
+        search( searcher, query, getSort( AnnounceSort.DEFAULT_SORT, null ), nNumHits, null, new AnnounceSearchFacets( ) );
+    }
 
-            // -------------------------------------------------
-            for ( int i = 0; i < nNbResults; i++ )
+    /**
+     * Run a search, counting the results by sector, category and tag in the same pass if facets are requested. When the index is sharded, the slices of the
+     * shards are searched concurrently by their own collectors, whose results are merged once the search is done
+     * 
+     * @param searcher
+     *            The searcher
+     * @param query
+     *            The query
+     * @param sort
+     *            The sort of the results
+     * @param nNumHits
+     *            The number of hits to collect
+     * @param after
+     *            The hit to collect the results after, or null to collect from the first result
+     * @param facets
+     *            The facets to fill, or null to skip counting
+     * @return The collected hits, with the total number of results
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    private static TopFieldDocs search( IndexSearcher searcher, Query query, Sort sort, int nNumHits, FieldDoc after, AnnounceSearchFacets facets )
+            throws IOException
+    {
+        CollectorManager<TopFieldCollector, TopFieldDocs> hitsManager = new CollectorManager<TopFieldCollector, TopFieldDocs>( )
+        {
+            @Override
+            public TopFieldCollector newCollector( )
             {
-                int docId = hits [i].doc;
-                Document document = searcher.doc( docId );
-                SearchItem si = new SearchItem( document );
-                listResults.add( si );
+                // Every matching document is counted
+                return TopFieldCollector.create( sort, nNumHits, after, Integer.MAX_VALUE );
             }
-            for ( SearchItem searchResult : listResults )
+
+            @Override
+            public TopFieldDocs reduce( Collection<TopFieldCollector> collectors )
             {
-                if ( searchResult.getId( ) != null )
+                TopFieldDocs [ ] topDocs = new TopFieldDocs [ collectors.size( )];
+                int i = 0;
+
+                for ( TopFieldCollector collector : collectors )
                 {
-                    listIdAnnounces.add( Integer.parseInt( searchResult.getId( ) ) );
+                    topDocs [i++] = collector.topDocs( );
                 }
+
+                return TopDocs.merge( sort, nNumHits, topDocs );
             }
+        };
 
-            List<Announce> listAnnounces = AnnounceHome.findByListId( listIdAnnounces, anSort );
+        if ( facets == null )
+        {
+            return searcher.search( query, hitsManager );
+        }
 
-            // -------------------------------------------------
+        Object [ ] results = searcher.search( query, new MultiCollectorManager( hitsManager, AnnounceFacetsCollector.createManager( facets ) ) );
 
-            // We only get the documents of the current page
-            int nFrom = ( nPage - 1 ) * nItemsPerPage;
+        return (TopFieldDocs) results [0];
+    }
 
-            if ( nFrom < 0 )
-            {
-                nFrom = 0;
-            }
+    /**
+     * Get the Lucene sort matching an announce sort. The id of announces is used as a tie-breaker so that the order of results is stable.
+     * 
+     * @param anSort
+     *            The announce sort
+     * @param filter
+     *            The search filter, holding the centre of the search by distance
+     * @return The Lucene sort
+     */
+    private static Sort getSort( AnnounceSort anSort, AnnounceSearchFilter filter )
+    {
+        boolean bReverse = !anSort.getSortAsc( );
+        SortField sortField;
 
-            int nTo = ( nPage * nItemsPerPage );
+        switch( anSort.getSortColumn( ) )
+        {
+            case AnnounceSort.SORT_DISTANCE:
+                if ( filter.hasGeoDistance( ) )
+                {
+                    // Distances are always sorted closest first
+                    return new Sort( LatLonDocValuesField.newDistanceSort( AnnounceSearchItem.FIELD_LOCATION, filter.getLatitude( ), filter.getLongitude( ) ),
+                            new SortField( AnnounceSearchItem.FIELD_SORT_ID, SortField.Type.LONG ) );
+                }
+
+                sortField = new SortField( AnnounceSearchItem.FIELD_DATE_MODIFICATION, SortField.Type.LONG, true );
+                break;
+            case AnnounceSort.SORT_DATE_CREATION:
+                sortField = new SortField( AnnounceSearchItem.FIELD_DATE_CREATION, SortField.Type.LONG, bReverse );
+                break;
+            case AnnounceSort.SORT_DATE_PUBLICATION:
+                sortField = new SortField( AnnounceSearchItem.FIELD_PUBLICATION_TIME, SortField.Type.LONG, bReverse );
+                break;
+            case AnnounceSort.SORT_TITLE:
+                sortField = new SortField( AnnounceSearchItem.FIELD_SORT_TITLE, SortField.Type.STRING, bReverse );
+                break;
+            case AnnounceSort.SORT_PRICE:
+                sortField = new SortField( AnnounceSearchItem.FIELD_PRICE_CENTS, SortField.Type.LONG, bReverse );
+                break;
+            case AnnounceSort.SORT_DESCRIPTION:
+                sortField = new SortField( AnnounceSearchItem.FIELD_SORT_DESCRIPTION, SortField.Type.STRING, bReverse );
+                break;
+            case AnnounceSort.SORT_DATE_MODIFICATION:
+            default:
+                sortField = new SortField( AnnounceSearchItem.FIELD_DATE_MODIFICATION, SortField.Type.LONG, bReverse );
+                break;
+        }
+
+        return new Sort( sortField, new SortField( AnnounceSearchItem.FIELD_SORT_ID, SortField.Type.LONG, bReverse ) );
+    }
 
-            if ( ( nTo == 0 ) || ( nTo > nNbResults ) )
+    /**
+     * Load the announces of a list of hits, either from the fields stored in the index or from the database
+     * 
+     * @param searcher
+     *            The searcher the hits come from
+     * @param hits
+     *            The hits
+     * @param anSort
+     *            The sort
+     * @return The announces, in the order of the hits
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    private static List<Announce> loadAnnounces( IndexSearcher searcher, ScoreDoc [ ] hits, AnnounceSort anSort ) throws IOException
+    {
+        if ( AnnounceSearchService.getInstance( ).isProjectionEnabled( ) )
+        {
+            List<Announce> listAnnounces = new ArrayList<>( hits.length );
+            Map<Integer, Category> mapCategories = new HashMap<>( );
+
+            for ( ScoreDoc hit : hits )
             {
-                nTo = nNbResults;
+                listAnnounces.add( getProjectedAnnounce( searcher.doc( hit.doc, FIELDS_TO_LOAD_PROJECTION ), mapCategories ) );
             }
 
-            for ( int i = nFrom; i < nTo; i++ )
+            return listAnnounces;
+        }
+
+        // The distance is not a column of the database : the announces are put back in the order of the hits anyway
+        return getAnnounces( getIdAnnounces( searcher, hits ),
+                AnnounceSort.SORT_DISTANCE.equals( anSort.getSortColumn( ) ) ? AnnounceSort.DEFAULT_SORT : anSort );
+    }
+
+    /**
+     * Build an announce from the fields stored in its document. Only the data needed to display lists of announces is set
+     * 
+     * @param document
+     *            The document
+     * @param mapCategories
+     *            The categories already loaded for the list, by id
+     * @return The announce
+     */
+    private static Announce getProjectedAnnounce( Document document, Map<Integer, Category> mapCategories )
+    {
+        Category category = getProjectedCategory( document, mapCategories );
+
+        Announce announce = new Announce( );
+        announce.setId( getInt( document, SearchItem.FIELD_UID ) );
+        announce.setCategory( category );
+        announce.setTitle( document.get( SearchItem.FIELD_TITLE ) );
+        announce.setDescription( document.get( AnnounceSearchItem.FIELD_DESCRIPTION_EXCERPT ) );
+        announce.setTags( document.get( AnnounceSearchItem.FIELD_TAGS ) );
+        announce.setUserName( document.get( AnnounceSearchItem.FIELD_USER_NAME ) );
+        announce.setUserLastName( document.get( AnnounceSearchItem.FIELD_USER_LAST_NAME ) );
+        announce.setUserSecondName( document.get( AnnounceSearchItem.FIELD_USER_SECOND_NAME ) );
+        announce.setPrice( getLong( document, AnnounceSearchItem.FIELD_PRICE_CENTS )  / CENTS_PER_UNIT );
+        announce.setDateCreation( new Timestamp( getLong( document, AnnounceSearchItem.FIELD_DATE_CREATION ) ) );
+        announce.setTimePublication( getLong( document, AnnounceSearchItem.FIELD_PUBLICATION_TIME ) );
+        announce.setPublished( true );
+
+        IndexableField fieldCoverImage = document.getField( AnnounceSearchItem.FIELD_COVER_IMAGE_ID );
+        List<Integer> listIdImageResponse = new ArrayList<>( );
+
+        if ( fieldCoverImage != null )
+        {
+            listIdImageResponse.add( fieldCoverImage.numericValue( ).intValue( ) );
+        }
+
+        announce.setHasPictures( !listIdImageResponse.isEmpty( ) );
+        announce.setListIdImageResponse( listIdImageResponse );
+
+        return announce;
+    }
+
+    /**
+     * Get the category of an announce. Categories are modified without reindexing their announces, so the category is loaded from the cache of
+     * categories. The fields stored in the document are only used if the category does not exist anymore
+     * 
+     * @param document
+     *            The document of the announce
+     * @param mapCategories
+     *            The categories already loaded for the list, by id
+     * @return The category
+     */
+    private static Category getProjectedCategory( Document document, Map<Integer, Category> mapCategories )
+    {
+        int nIdCategory = getInt( document, AnnounceSearchItem.FIELD_CATEGORY_ID );
+        Category category = mapCategories.computeIfAbsent( nIdCategory, CategoryHome::findByPrimaryKey );
+
+        if ( category == null )
+        {
+            category = new Category( );
+            category.setId( nIdCategory );
+            category.setIdSector( getInt( document, AnnounceSearchItem.FIELD_SECTOR_ID ) );
+            category.setLabel( document.get( AnnounceSearchItem.FIELD_CATEGORY_LABEL ) );
+            category.setDisplayPrice( getInt( document, AnnounceSearchItem.FIELD_CATEGORY_DISPLAY_PRICE ) != 0 );
+        }
+
+        return category;
+    }
+
+    /**
+     * Get the value of a stored field as an integer
+     * 
+     * @param document
+     *            The document
+     * @param strField
+     *            The name of the field
+     * @return The value of the field, or 0 if the document has no such field
+     */
+    private static int getInt( Document document, String strField )
+    {
+        IndexableField field = document.getField( strField );
+
+        if ( field == null )
+        {
+            return 0;
+        }
+
+        return ( field.numericValue( ) != null ) ? field.numericValue( ).intValue( ) : Integer.parseInt( field.stringValue( ) );
+    }
+
+    /**
+     * Get the value of a stored numeric field as a long
+     * 
+     * @param document
+     *            The document
+     * @param strField
+     *            The name of the field
+     * @return The value of the field, or 0 if the document has no such field
+     */
+    private static long getLong( Document document, String strField )
+    {
+        IndexableField field = document.getField( strField );
+
+        return ( ( field != null ) && ( field.numericValue( ) != null ) ) ? field.numericValue( ).longValue( ) : 0L;
+    }
+
+    /**
+     * Get the ids of the announces of a list of hits
+     * 
+     * @param searcher
+     *            The searcher the hits come from
+     * @param hits
+     *            The hits
+     * @return The ids of the announces, in the order of the hits
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    private static List<Integer> getIdAnnounces( IndexSearcher searcher, ScoreDoc [ ] hits ) throws IOException
+    {
+        List<Integer> listIdAnnounces = new ArrayList<>( hits.length );
+
+        for ( ScoreDoc hit : hits )
+        {
+            String strId = searcher.doc( hit.doc, FIELDS_TO_LOAD_ID ).get( SearchItem.FIELD_UID );
+
+            if ( strId != null )
             {
-                listAnnouncesResult.add( listAnnounces.get( i ) );
+                listIdAnnounces.add( Integer.parseInt( strId ) );
             }
         }
-        catch( Exception e )
+
+        return listIdAnnounces;
+    }
+
+    /**
+     * Load announces from the database, keeping the order of the given list of ids
+     * 
+     * @param listIdAnnounces
+     *            The ids of the announces to load
+     * @param anSort
+     *            The sort
+     * @return The announces
+     */
+    private static List<Announce> getAnnounces( List<Integer> listIdAnnounces, AnnounceSort anSort )
+    {
+        Map<Integer, Announce> mapAnnounces = new HashMap<>( );
+
+        for ( Announce announce : AnnounceHome.findByListId( listIdAnnounces, anSort ) )
         {
-            AppLogService.error( e.getMessage( ), e );
+            mapAnnounces.put( announce.getId( ), announce );
         }
 
-        return nNbResults;
+        List<Announce> listAnnounces = new ArrayList<>( listIdAnnounces.size( ) );
+
+        for ( Integer nIdAnnounce : listIdAnnounces )
+        {
+            Announce announce = mapAnnounces.get( nIdAnnounce );
+
+            // The announce may have been removed since the last indexing
+            if ( announce != null )
+            {
+                listAnnounces.add( announce );
+            }
+        }
+
+        return listAnnounces;
     }
 
     /**
@@ -399,4 +736,70 @@ public class AnnounceLuceneSearchEngine implements IAnnounceSearchEngine
             listSearchResult.add( result );
         }
     }
+
+    /**
+     * Collector counting the matching documents until a maximum count is reached. Once the maximum is reached, the remaining documents and segments are
+     * skipped
+     */
+    private static final class MaxCountCollector extends SimpleCollector
+    {
+        private final int _nMaxCount;
+        private int _nCount;
+
+        /**
+         * Creates a new collector
+         * 
+         * @param nMaxCount
+         *            The number from which counting stops
+         */
+        MaxCountCollector( int nMaxCount )
+        {
+            _nMaxCount = nMaxCount;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void doSetNextReader( LeafReaderContext context )
+        {
+            if ( _nCount >= _nMaxCount )
+            {
+                throw new CollectionTerminatedException( );
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void collect( int doc )
+        {
+            _nCount++;
+
+            if ( _nCount >= _nMaxCount )
+            {
+                throw new CollectionTerminatedException( );
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ScoreMode scoreMode( )
+        {
+            return ScoreMode.COMPLETE_NO_SCORES;
+        }
+
+        /**
+         * Get the number of documents counted
+         * 
+         * @return The number of matching documents, at most the maximum count
+         */
+        int getCount( )
+        {
+            return _nCount;
+        }
+    }
 }
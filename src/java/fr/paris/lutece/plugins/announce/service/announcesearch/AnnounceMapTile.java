@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tile of a web map, in the usual XYZ tiling of the Web Mercator projection : at a zoom level z, the world is split into 2^z x 2^z tiles numbered from the
+ * north west corner.
+ */
+public class AnnounceMapTile
+{
+    // Latitude of the north and south edges of the Web Mercator projection, in degrees
+    private static final double MAX_LATITUDE = 85.05112878d;
+    private static final String KEY_SEPARATOR = "/";
+
+    private final int _nZoom;
+    private final int _nX;
+    private final int _nY;
+
+    /**
+     * Creates a new tile
+     * 
+     * @param nZoom
+     *            The zoom level
+     * @param nX
+     *            The column of the tile, from west to east
+     * @param nY
+     *            The row of the tile, from north to south
+     */
+    public AnnounceMapTile( int nZoom, int nX, int nY )
+    {
+        _nZoom = nZoom;
+        _nX = nX;
+        _nY = nY;
+    }
+
+    /**
+     * Get the tiles covering a bounding box. The tiles are taken at the given zoom level, or at the deepest lower zoom level where they are not more than the
+     * given maximum, so that the number of tiles does not depend on the size of the box.
+     * 
+     * @param dMinLatitude
+     *            The minimum latitude of the box, in degrees
+     * @param dMaxLatitude
+     *            The maximum latitude of the box, in degrees
+     * @param dMinLongitude
+     *            The minimum longitude of the box, in degrees
+     * @param dMaxLongitude
+     *            The maximum longitude of the box, in degrees. It may be lower than the minimum longitude for boxes crossing the dateline
+     * @param nZoom
+     *            The requested zoom level
+     * @param nMaxTiles
+     *            The maximum number of tiles
+     * @return The tiles covering the box
+     */
+    public static List<AnnounceMapTile> getTiles( double dMinLatitude, double dMaxLatitude, double dMinLongitude, double dMaxLongitude, int nZoom,
+            int nMaxTiles )
+    {
+        int nTileZoom = Math.max( 0, nZoom );
+        int nTilesPerSide = 1 << nTileZoom;
+        int nMinX = getTileX( dMinLongitude, nTilesPerSide );
+        int nMaxX = getTileX( dMaxLongitude, nTilesPerSide );
+        int nMinY = getTileY( dMaxLatitude, nTilesPerSide );
+        int nMaxY = getTileY( dMinLatitude, nTilesPerSide );
+        int nWidth = getWidth( nMinX, nMaxX, nTilesPerSide, dMinLongitude > dMaxLongitude );
+
+        while ( ( nTileZoom > 0 ) && ( ( (long) nWidth * ( nMaxY - nMinY + 1 ) ) > nMaxTiles ) )
+        {
+            nTileZoom--;
+            nTilesPerSide = 1 << nTileZoom;
+            nMinX = getTileX( dMinLongitude, nTilesPerSide );
+            nMaxX = getTileX( dMaxLongitude, nTilesPerSide );
+            nMinY = getTileY( dMaxLatitude, nTilesPerSide );
+            nMaxY = getTileY( dMinLatitude, nTilesPerSide );
+            nWidth = getWidth( nMinX, nMaxX, nTilesPerSide, dMinLongitude > dMaxLongitude );
+        }
+
+        List<AnnounceMapTile> listTiles = new ArrayList<>( );
+
+        for ( int i = 0; i < nWidth; i++ )
+        {
+            for ( int nY = nMinY; nY <= nMaxY; nY++ )
+            {
+                listTiles.add( new AnnounceMapTile( nTileZoom, ( nMinX + i ) % nTilesPerSide, nY ) );
+            }
+        }
+
+        return listTiles;
+    }
+
+    /**
+     * Get the zoom level of the tile
+     * 
+     * @return The zoom level
+     */
+    public int getZoom( )
+    {
+        return _nZoom;
+    }
+
+    /**
+     * Get the column of the tile
+     * 
+     * @return The column of the tile, from west to east
+     */
+    public int getX( )
+    {
+        return _nX;
+    }
+
+    /**
+     * Get the row of the tile
+     * 
+     * @return The row of the tile, from north to south
+     */
+    public int getY( )
+    {
+        return _nY;
+    }
+
+    /**
+     * Get the key of the tile, made of its zoom level, column and row
+     * 
+     * @return The key of the tile
+     */
+    public String getKey( )
+    {
+        return _nZoom + KEY_SEPARATOR + _nX + KEY_SEPARATOR + _nY;
+    }
+
+    /**
+     * Get the minimum latitude of the tile
+     * 
+     * @return The latitude of the south edge of the tile, in degrees
+     */
+    public double getMinLatitude( )
+    {
+        return getLatitude( _nY + 1, 1 << _nZoom );
+    }
+
+    /**
+     * Get the maximum latitude of the tile
+     * 
+     * @return The latitude of the north edge of the tile, in degrees
+     */
+    public double getMaxLatitude( )
+    {
+        return getLatitude( _nY, 1 << _nZoom );
+    }
+
+    /**
+     * Get the minimum longitude of the tile
+     * 
+     * @return The longitude of the west edge of the tile, in degrees
+     */
+    public double getMinLongitude( )
+    {
+        return getLongitude( _nX, 1 << _nZoom );
+    }
+
+    /**
+     * Get the maximum longitude of the tile
+     * 
+     * @return The longitude of the east edge of the tile, in degrees
+     */
+    public double getMaxLongitude( )
+    {
+        return getLongitude( _nX + 1, 1 << _nZoom );
+    }
+
+    /**
+     * Get the horizontal position of a longitude in the tile
+     * 
+     * @param dLongitude
+     *            The longitude, in degrees
+     * @return The position, from 0 on the west edge to 1 on the east edge of the tile
+     */
+    public double getRelativeX( double dLongitude )
+    {
+        return ( getWorldX( dLongitude ) * ( 1 << _nZoom ) ) - _nX;
+    }
+
+    /**
+     * Get the vertical position of a latitude in the tile
+     * 
+     * @param dLatitude
+     *            The latitude, in degrees
+     * @return The position, from 0 on the north edge to 1 on the south edge of the tile
+     */
+    public double getRelativeY( double dLatitude )
+    {
+        return ( getWorldY( dLatitude ) * ( 1 << _nZoom ) ) - _nY;
+    }
+
+    /**
+     * Get the number of columns of tiles between two columns
+     * 
+     * @param nMinX
+     *            The west column
+     * @param nMaxX
+     *            The east column
+     * @param nTilesPerSide
+     *            The number of tiles per side of the world
+     * @param bCrossDateline
+     *            True if the columns are on both sides of the dateline
+     * @return The number of columns
+     */
+    private static int getWidth( int nMinX, int nMaxX, int nTilesPerSide, boolean bCrossDateline )
+    {
+        // A box crossing the dateline whose edges are in the same column covers every column
+        if ( bCrossDateline && ( nMinX == nMaxX ) )
+        {
+            return nTilesPerSide;
+        }
+
+        return ( ( ( nMaxX - nMinX ) + nTilesPerSide ) % nTilesPerSide ) + 1;
+    }
+
+    /**
+     * Get the column of the tile holding a longitude
+     * 
+     * @param dLongitude
+     *            The longitude, in degrees
+     * @param nTilesPerSide
+     *            The number of tiles per side of the world
+     * @return The column of the tile
+     */
+    private static int getTileX( double dLongitude, int nTilesPerSide )
+    {
+        return Math.min( nTilesPerSide - 1, Math.max( 0, (int) Math.floor( getWorldX( dLongitude ) * nTilesPerSide ) ) );
+    }
+
+    /**
+     * Get the row of the tile holding a latitude
+     * 
+     * @param dLatitude
+     *            The latitude, in degrees
+     * @param nTilesPerSide
+     *            The number of tiles per side of the world
+     * @return The row of the tile
+     */
+    private static int getTileY( double dLatitude, int nTilesPerSide )
+    {
+        return Math.min( nTilesPerSide - 1, Math.max( 0, (int) Math.floor( getWorldY( dLatitude ) * nTilesPerSide ) ) );
+    }
+
+    /**
+     * Get the horizontal position of a longitude in the world
+     * 
+     * @param dLongitude
+     *            The longitude, in degrees
+     * @return The position, from 0 on the west edge to 1 on the east edge of the world
+     */
+    private static double getWorldX( double dLongitude )
+    {
+        return ( dLongitude + 180d ) / 360d;
+    }
+
+    /**
+     * Get the vertical position of a latitude in the world, in the Web Mercator projection
+     * 
+     * @param dLatitude
+     *            The latitude, in degrees
+     * @return The position, from 0 on the north edge to 1 on the south edge of the world
+     */
+    private static double getWorldY( double dLatitude )
+    {
+        double dRadians = Math.toRadians( Math.max( -MAX_LATITUDE, Math.min( MAX_LATITUDE, dLatitude ) ) );
+
+        return ( 1d - ( Math.log( Math.tan( dRadians ) + ( 1d / Math.cos( dRadians ) ) ) / Math.PI ) ) / 2d;
+    }
+
+    /**
+     * Get the longitude of the west edge of a column of tiles
+     * 
+     * @param nX
+     *            The column
+     * @param nTilesPerSide
+     *            The number of tiles per side of the world
+     * @return The longitude, in degrees
+     */
+    private static double getLongitude( int nX, int nTilesPerSide )
+    {
+        return ( ( nX * 360d ) / nTilesPerSide ) - 180d;
+    }
+
+    /**
+     * Get the latitude of the north edge of a row of tiles
+     * 
+     * @param nY
+     *            The row
+     * @param nTilesPerSide
+     *            The number of tiles per side of the world
+     * @return The latitude, in degrees
+     */
+    private static double getLatitude( int nY, int nTilesPerSide )
+    {
+        return Math.toDegrees( Math.atan( Math.sinh( Math.PI * ( 1d - ( ( 2d * nY ) / nTilesPerSide ) ) ) ) );
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.DateUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.LatLonPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.mlt.MoreLikeThis;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.QueryBuilder;
+
+import fr.paris.lutece.plugins.announce.business.Announce;
+import fr.paris.lutece.plugins.announce.business.AnnounceSearchFilter;
+import fr.paris.lutece.plugins.announce.service.AnnouncePlugin;
+import fr.paris.lutece.portal.service.search.SearchItem;
+
+/**
+ * Builds Lucene queries from announce search filters. Criteria that do not contribute to the relevance of results (type, category, sector, date and price)
+ * are added as filter clauses, and only the keywords are analyzed.
+ */
+public class AnnounceQueryBuilder
+{
+    private static final int NO_CATEGORY = 0;
+    private static final int NO_SECTOR = 0;
+    private static final long NO_PUBLICATION_TIME = 0L;
+    private static final long CENTS_PER_UNIT = 100L;
+
+    // Texts of announces are short : words found once in an announce and in two announces of the index are enough to find similar announces
+    private static final int SIMILAR_MIN_TERM_FREQ = 1;
+    private static final int SIMILAR_MIN_DOC_FREQ = 2;
+    private static final int SIMILAR_MAX_QUERY_TERMS = 25;
+
+    private final QueryBuilder _queryBuilder;
+
+    /**
+     * Creates a new query builder
+     * 
+     * @param analyzer
+     *            The analyzer to use to analyze keywords. It must be the analyzer used to index the contents of announces
+     */
+    public AnnounceQueryBuilder( Analyzer analyzer )
+    {
+        _queryBuilder = new QueryBuilder( analyzer );
+    }
+
+    /**
+     * Build the query matching announces of a search filter
+     * 
+     * @param filter
+     *            The search filter
+     * @return The query
+     */
+    public Query buildQuery( AnnounceSearchFilter filter )
+    {
+        BooleanQuery.Builder queryBuilder = new BooleanQuery.Builder( );
+
+        // Type (=announce)
+        queryBuilder.add( new TermQuery( new Term( SearchItem.FIELD_TYPE, AnnouncePlugin.PLUGIN_NAME ) ), BooleanClause.Occur.FILTER );
+
+        // Category id
+        if ( filter.getIdCategory( ) != NO_CATEGORY )
+        {
+            queryBuilder.add( new TermQuery( new Term( AnnounceSearchItem.FIELD_CATEGORY_ID, String.valueOf( filter.getIdCategory( ) ) ) ),
+                    BooleanClause.Occur.FILTER );
+        }
+
+        // Sector id
+        if ( filter.getIdSector( ) != NO_SECTOR )
+        {
+            queryBuilder.add( new TermQuery( new Term( AnnounceSearchItem.FIELD_SECTOR_ID, String.valueOf( filter.getIdSector( ) ) ) ),
+                    BooleanClause.Occur.FILTER );
+        }
+
+        // Keywords in title or description
+        if ( StringUtils.isNotBlank( filter.getKeywords( ) ) )
+        {
+            Query queryContents = _queryBuilder.createPhraseQuery( SearchItem.FIELD_CONTENTS, filter.getKeywords( ) );
+
+            // Keywords made only of stop words produce no query
+            if ( queryContents != null )
+            {
+                queryBuilder.add( queryContents, BooleanClause.Occur.MUST );
+            }
+        }
+
+        // contains range date
+        if ( ( filter.getDateMin( ) != null ) || ( filter.getDateMax( ) != null ) )
+        {
+            Date dateMinToSearch = ( filter.getDateMin( ) != null ) ? filter.getDateMin( ) : new Date( 0L );
+            Date dateMaxToSearch = ( filter.getDateMax( ) != null ) ? filter.getDateMax( ) : new Date( );
+
+            queryBuilder.add( getDateRangeQuery( DateUtils.truncate( dateMinToSearch, Calendar.DATE ).getTime( ),
+                    DateUtils.addDays( DateUtils.truncate( dateMaxToSearch, Calendar.DATE ), 1 ).getTime( ) - 1 ), BooleanClause.Occur.FILTER );
+        }
+
+        // contains range price
+        if ( ( filter.getPriceMin( ) > 0 ) || ( filter.getPriceMax( ) > 0 ) )
+        {
+            long lPriceMin = ( filter.getPriceMin( ) > 0 ) ? ( filter.getPriceMin( ) * CENTS_PER_UNIT ) : 0L;
+            long lPriceMax = ( filter.getPriceMax( ) > 0 ) ? ( filter.getPriceMax( ) * CENTS_PER_UNIT ) : Long.MAX_VALUE;
+
+            queryBuilder.add( LongPoint.newRangeQuery( AnnounceSearchItem.FIELD_PRICE_CENTS, lPriceMin, lPriceMax ), BooleanClause.Occur.FILTER );
+        }
+
+        // Location within a distance of a centre
+        if ( filter.hasGeoDistance( ) )
+        {
+            queryBuilder.add( LatLonPoint.newDistanceQuery( AnnounceSearchItem.FIELD_LOCATION, filter.getLatitude( ), filter.getLongitude( ),
+                    filter.getRadius( ) ), BooleanClause.Occur.FILTER );
+        }
+
+        // Location in a bounding box
+        if ( filter.hasBoundingBox( ) )
+        {
+            queryBuilder.add( LatLonPoint.newBoxQuery( AnnounceSearchItem.FIELD_LOCATION, filter.getMinLatitude( ), filter.getMaxLatitude( ),
+                    filter.getMinLongitude( ), filter.getMaxLongitude( ) ), BooleanClause.Occur.FILTER );
+        }
+
+        return queryBuilder.build( );
+    }
+
+    /**
+     * Build the query matching the announces of a search filter located in a map tile
+     * 
+     * @param filter
+     *            The search filter
+     * @param tile
+     *            The tile
+     * @return The query
+     */
+    public Query buildQuery( AnnounceSearchFilter filter, AnnounceMapTile tile )
+    {
+        BooleanQuery.Builder queryBuilder = new BooleanQuery.Builder( );
+        queryBuilder.add( buildQuery( filter ), BooleanClause.Occur.FILTER );
+        queryBuilder.add( LatLonPoint.newBoxQuery( AnnounceSearchItem.FIELD_LOCATION, tile.getMinLatitude( ), tile.getMaxLatitude( ), tile.getMinLongitude( ),
+                tile.getMaxLongitude( ) ), BooleanClause.Occur.FILTER );
+
+        return queryBuilder.build( );
+    }
+
+    /**
+     * Build the query matching the announces similar to an announce : the announces of the same sector sharing the most distinctive words of its title,
+     * description and tags
+     * 
+     * @param reader
+     *            The reader of the index searched, used to weight the words of the announce by their frequency in the index
+     * @param announce
+     *            The announce
+     * @return The query, or null if the announce has no distinctive word
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    public Query buildSimilarQuery( IndexReader reader, Announce announce ) throws IOException
+    {
+        MoreLikeThis moreLikeThis = new MoreLikeThis( reader );
+        moreLikeThis.setAnalyzer( _queryBuilder.getAnalyzer( ) );
+        moreLikeThis.setFieldNames( new String [ ] {
+                SearchItem.FIELD_CONTENTS
+        } );
+        moreLikeThis.setMinTermFreq( SIMILAR_MIN_TERM_FREQ );
+        moreLikeThis.setMinDocFreq( SIMILAR_MIN_DOC_FREQ );
+        moreLikeThis.setMaxQueryTerms( SIMILAR_MAX_QUERY_TERMS );
+
+        // The description is analyzed as it is indexed, without its markup
+        String strDescription = AnnounceSearchService.getInstance( ).getTextExtractor( ).getText( StringUtils.defaultString( announce.getDescription( ) ) );
+        BooleanQuery queryLike = (BooleanQuery) moreLikeThis.like( SearchItem.FIELD_CONTENTS,
+                new StringReader( StringUtils.defaultString( announce.getTitle( ) ) ), new StringReader( strDescription ),
+                new StringReader( StringUtils.defaultString( announce.getTags( ) ) ) );
+
+        if ( queryLike.clauses( ).isEmpty( ) )
+        {
+            return null;
+        }
+
+        BooleanQuery.Builder queryBuilder = new BooleanQuery.Builder( );
+        queryBuilder.add( new TermQuery( new Term( SearchItem.FIELD_TYPE, AnnouncePlugin.PLUGIN_NAME ) ), BooleanClause.Occur.FILTER );
+        queryBuilder.add( new TermQuery( new Term( AnnounceSearchItem.FIELD_SECTOR_ID, String.valueOf( announce.getCategory( ).getIdSector( ) ) ) ),
+                BooleanClause.Occur.FILTER );
+        queryBuilder.add( new TermQuery( new Term( AnnounceSearchItem.FIELD_ID_ANNOUNCE, Integer.toString( announce.getId( ) ) ) ),
+                BooleanClause.Occur.MUST_NOT );
+        queryBuilder.add( queryLike, BooleanClause.Occur.MUST );
+
+        return queryBuilder.build( );
+    }
+
+    /**
+     * Build the query matching announces whose publication time, or creation date if they have not been published, is in a range
+     * 
+     * @param lTimeMin
+     *            The lower bound of the range, included
+     * @param lTimeMax
+     *            The upper bound of the range, included
+     * @return The query
+     */
+    private static Query getDateRangeQuery( long lTimeMin, long lTimeMax )
+    {
+        BooleanQuery.Builder queryNotPublishedBuilder = new BooleanQuery.Builder( );
+        queryNotPublishedBuilder.add( LongPoint.newExactQuery( AnnounceSearchItem.FIELD_PUBLICATION_TIME, NO_PUBLICATION_TIME ), BooleanClause.Occur.FILTER );
+        queryNotPublishedBuilder.add( LongPoint.newRangeQuery( AnnounceSearchItem.FIELD_DATE_CREATION, lTimeMin, lTimeMax ), BooleanClause.Occur.FILTER );
+
+        BooleanQuery.Builder queryBuilder = new BooleanQuery.Builder( );
+        queryBuilder.add( LongPoint.newRangeQuery( AnnounceSearchItem.FIELD_PUBLICATION_TIME, lTimeMin, lTimeMax ), BooleanClause.Occur.SHOULD );
+        queryBuilder.add( queryNotPublishedBuilder.build( ), BooleanClause.Occur.SHOULD );
+
+        return queryBuilder.build( );
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.plugins.announce.business.AnnounceSearchFilter;
+import fr.paris.lutece.plugins.announce.business.AnnounceSort;
+import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
+
+/**
+ * Cache service for announce search results. Keys contain the version of the index the results were computed on, so that entries are never served once the
+ * index has changed : they are simply no longer requested and get evicted.
+ */
+public final class AnnounceSearchCacheService extends AbstractCacheableService
+{
+    private static final String CACHE_SERVICE_NAME = "announce.announceSearchCacheService";
+    private static final String SEARCH_KEY_PREFIXE = "announce.search.";
+    private static final String SIMILAR_KEY_PREFIXE = "announce.similar.";
+    private static final String CLUSTERS_KEY_PREFIXE = "announce.clusters.";
+    private static final String KEY_SEPARATOR = "|";
+    private static final String DAY_FORMAT = "yyyyMMdd";
+    private static AnnounceSearchCacheService _instance = new AnnounceSearchCacheService( );
+
+    /**
+     * Private constructor
+     */
+    private AnnounceSearchCacheService( )
+    {
+        initCache( );
+    }
+
+    /**
+     * Get the instance of this service
+     * 
+     * @return the instance of this service
+     */
+    public static AnnounceSearchCacheService getService( )
+    {
+        return _instance;
+    }
+
+    /**
+     * Get the cache key of a page of search results
+     * 
+     * @param filter
+     *            The search filter
+     * @param anSort
+     *            The sort
+     * @param strPageWindow
+     *            The description of the page of results : page number or cursor token, and number of items per page
+     * @param strIndexVersion
+     *            The version of the index the results are computed on
+     * @return The cache key of the page of results
+     */
+    public static String getSearchCacheKey( AnnounceSearchFilter filter, AnnounceSort anSort, String strPageWindow, String strIndexVersion )
+    {
+        StringBuilder sbKey = new StringBuilder( SEARCH_KEY_PREFIXE );
+        sbKey.append( strIndexVersion ).append( KEY_SEPARATOR );
+        appendFilter( sbKey, filter );
+        sbKey.append( KEY_SEPARATOR ).append( anSort.getSortColumn( ) ).append( KEY_SEPARATOR ).append( anSort.getSortAsc( ) );
+        sbKey.append( KEY_SEPARATOR ).append( strPageWindow );
+
+        return sbKey.toString( );
+    }
+
+    /**
+     * Get the cache key of the clusters of a map tile
+     * 
+     * @param filter
+     *            The search filter
+     * @param tile
+     *            The tile
+     * @param strIndexVersion
+     *            The version of the index the clusters are computed on
+     * @return The cache key of the clusters of the tile
+     */
+    public static String getClustersCacheKey( AnnounceSearchFilter filter, AnnounceMapTile tile, String strIndexVersion )
+    {
+        StringBuilder sbKey = new StringBuilder( CLUSTERS_KEY_PREFIXE );
+        sbKey.append( strIndexVersion ).append( KEY_SEPARATOR ).append( tile.getKey( ) ).append( KEY_SEPARATOR );
+        appendFilter( sbKey, filter );
+
+        return sbKey.toString( );
+    }
+
+    /**
+     * Get the cached ids of the announces similar to an announce
+     * 
+     * @param nIdAnnounce
+     *            The id of the announce
+     * @param strIndexVersion
+     *            The version of the index the similar announces are computed on
+     * @return The ids of the similar announces, or null if they are not in cache
+     */
+    @SuppressWarnings( "unchecked" )
+    public List<Integer> getSimilarAnnounces( int nIdAnnounce, String strIndexVersion )
+    {
+        List<Integer> listIdSimilarAnnounces = (List<Integer>) getFromCache( getSimilarCacheKey( nIdAnnounce, strIndexVersion ) );
+
+        return ( listIdSimilarAnnounces != null ) ? new ArrayList<>( listIdSimilarAnnounces ) : null;
+    }
+
+    /**
+     * Put in cache the ids of the announces similar to an announce
+     * 
+     * @param nIdAnnounce
+     *            The id of the announce
+     * @param strIndexVersion
+     *            The version of the index the similar announces are computed on
+     * @param listIdSimilarAnnounces
+     *            The ids of the similar announces
+     */
+    public void putSimilarAnnounces( int nIdAnnounce, String strIndexVersion, List<Integer> listIdSimilarAnnounces )
+    {
+        putInCache( getSimilarCacheKey( nIdAnnounce, strIndexVersion ), new ArrayList<>( listIdSimilarAnnounces ) );
+    }
+
+    /**
+     * Get the cache key of the similar announces of an announce
+     * 
+     * @param nIdAnnounce
+     *            The id of the announce
+     * @param strIndexVersion
+     *            The version of the index the similar announces are computed on
+     * @return The cache key of the similar announces
+     */
+    private static String getSimilarCacheKey( int nIdAnnounce, String strIndexVersion )
+    {
+        return SIMILAR_KEY_PREFIXE + strIndexVersion + KEY_SEPARATOR + nIdAnnounce;
+    }
+
+    /**
+     * Append the canonical form of a search filter to a cache key. Criteria that do not change the results of the search, like the case and the spacing of
+     * keywords or the id of a saved filter, are ignored, and dates are reduced to days.
+     * 
+     * @param sbKey
+     *            The cache key
+     * @param filter
+     *            The search filter
+     */
+    private static void appendFilter( StringBuilder sbKey, AnnounceSearchFilter filter )
+    {
+        SimpleDateFormat dayFormat = new SimpleDateFormat( DAY_FORMAT, Locale.US );
+
+        sbKey.append( StringUtils.lowerCase( StringUtils.normalizeSpace( StringUtils.defaultString( filter.getKeywords( ) ) ) ) );
+        sbKey.append( KEY_SEPARATOR ).append( filter.getIdSector( ) );
+        sbKey.append( KEY_SEPARATOR ).append( filter.getIdCategory( ) );
+        sbKey.append( KEY_SEPARATOR ).append( Math.max( filter.getPriceMin( ), 0 ) );
+        sbKey.append( KEY_SEPARATOR ).append( Math.max( filter.getPriceMax( ), 0 ) );
+        sbKey.append( KEY_SEPARATOR );
+
+        if ( ( filter.getDateMin( ) != null ) || ( filter.getDateMax( ) != null ) )
+        {
+            // Without maximum date, the search is bounded by the current day
+            sbKey.append( ( filter.getDateMin( ) != null ) ? dayFormat.format( filter.getDateMin( ) ) : StringUtils.EMPTY );
+            sbKey.append( KEY_SEPARATOR ).append( dayFormat.format( ( filter.getDateMax( ) != null ) ? filter.getDateMax( ) : new Date( ) ) );
+        }
+
+        sbKey.append( KEY_SEPARATOR );
+
+        if ( filter.hasGeoDistance( ) )
+        {
+            sbKey.append( filter.getLatitude( ) ).append( KEY_SEPARATOR ).append( filter.getLongitude( ) ).append( KEY_SEPARATOR );
+            sbKey.append( filter.getRadius( ) );
+        }
+
+        sbKey.append( KEY_SEPARATOR );
+
+        if ( filter.hasBoundingBox( ) )
+        {
+            sbKey.append( filter.getMinLatitude( ) ).append( KEY_SEPARATOR ).append( filter.getMaxLatitude( ) ).append( KEY_SEPARATOR );
+            sbKey.append( filter.getMinLongitude( ) ).append( KEY_SEPARATOR ).append( filter.getMaxLongitude( ) );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return CACHE_SERVICE_NAME;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.util.BytesRef;
+
+import fr.paris.lutece.plugins.announce.business.AnnounceSort;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Position of a search in the sorted results of the index. The position is exchanged with the front office as an opaque token holding the sort values of
+ * the last announce of the previous page, so that the next page can be collected with a search after this announce instead of skipping the previous pages.
+ */
+public class AnnounceSearchCursor
+{
+    private static final String SEPARATOR = "|";
+    private static final char PREFIX_LONG = 'L';
+    private static final char PREFIX_STRING = 'S';
+    private static final char PREFIX_DOUBLE = 'D';
+    private static final String VALUE_NULL = "N";
+    private static final int NB_HEADER_ITEMS = 3;
+
+    private final AnnounceSort _sort;
+    private final FieldDoc _after;
+    private final String _strToken;
+    private String _strNextToken;
+
+    /**
+     * Creates a new cursor
+     *
+     * @param strToken
+     *            The token of the position to start from, or null to start from the first result
+     * @param anSort
+     *            The sort of the search. A token created for another sort is ignored
+     */
+    public AnnounceSearchCursor( String strToken, AnnounceSort anSort )
+    {
+        _sort = anSort;
+        _after = decode( strToken, anSort );
+        _strToken = ( _after != null ) ? strToken : null;
+    }
+
+    /**
+     * Get the sort of the search
+     *
+     * @return The sort of the search
+     */
+    public AnnounceSort getSort( )
+    {
+        return _sort;
+    }
+
+    /**
+     * Check if this cursor points after the first result
+     *
+     * @return True if the search must start after a given result, false if it must start from the first result
+     */
+    public boolean hasPosition( )
+    {
+        return _after != null;
+    }
+
+    /**
+     * Get the token of the position of this cursor
+     *
+     * @return The token, or null if this cursor starts from the first result
+     */
+    public String getToken( )
+    {
+        return _strToken;
+    }
+
+    /**
+     * Get the last result of the previous page
+     *
+     * @return The last result of the previous page, or null to start from the first result
+     */
+    FieldDoc getAfter( )
+    {
+        return _after;
+    }
+
+    /**
+     * Get the token of the next page
+     *
+     * @return The token of the next page, or null if there is no next page
+     */
+    public String getNextToken( )
+    {
+        return _strNextToken;
+    }
+
+    /**
+     * Set the token of the next page
+     *
+     * @param strNextToken
+     *            The token of the next page, or null if there is no next page
+     */
+    void setNextToken( String strNextToken )
+    {
+        _strNextToken = strNextToken;
+    }
+
+    /**
+     * Set the last result of the current page
+     *
+     * @param lastHit
+     *            The last result of the current page
+     */
+    void setLastHit( FieldDoc lastHit )
+    {
+        _strNextToken = encode( lastHit, _sort );
+    }
+
+    /**
+     * Encode the position of a result into a token
+     *
+     * @param fieldDoc
+     *            The result
+     * @param anSort
+     *            The sort of the search
+     * @return The token
+     */
+    private static String encode( FieldDoc fieldDoc, AnnounceSort anSort )
+    {
+        StringBuilder sbToken = new StringBuilder( );
+        sbToken.append( anSort.getSortColumn( ) ).append( SEPARATOR ).append( anSort.getSortAsc( ) ).append( SEPARATOR ).append( fieldDoc.doc );
+
+        for ( Object value : fieldDoc.fields )
+        {
+            sbToken.append( SEPARATOR );
+
+            if ( value instanceof BytesRef )
+            {
+                BytesRef bytesRef = (BytesRef) value;
+                byte [ ] bytes = new byte [ bytesRef.length];
+                System.arraycopy( bytesRef.bytes, bytesRef.offset, bytes, 0, bytesRef.length );
+                sbToken.append( PREFIX_STRING ).append( Base64.getUrlEncoder( ).withoutPadding( ).encodeToString( bytes ) );
+            }
+            else
+                if ( value instanceof Double )
+                {
+                    sbToken.append( PREFIX_DOUBLE ).append( value );
+                }
+                else
+                    if ( value instanceof Number )
+                    {
+                        sbToken.append( PREFIX_LONG ).append( ( (Number) value ).longValue( ) );
+                    }
+                    else
+                    {
+                        sbToken.append( VALUE_NULL );
+                    }
+        }
+
+        return Base64.getUrlEncoder( ).withoutPadding( ).encodeToString( sbToken.toString( ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Decode a token into the position of a result
+     *
+     * @param strToken
+     *            The token
+     * @param anSort
+     *            The sort of the search
+     * @return The result, or null if the token is empty, invalid or was created for another sort
+     */
+    private static FieldDoc decode( String strToken, AnnounceSort anSort )
+    {
+        if ( StringUtils.isEmpty( strToken ) )
+        {
+            return null;
+        }
+
+        try
+        {
+            String strDecoded = new String( Base64.getUrlDecoder( ).decode( strToken ), StandardCharsets.UTF_8 );
+            String [ ] strItems = StringUtils.splitPreserveAllTokens( strDecoded, SEPARATOR );
+
+            if ( ( strItems.length <= NB_HEADER_ITEMS ) || !StringUtils.equals( strItems [0], anSort.getSortColumn( ) )
+                    || ( Boolean.parseBoolean( strItems [1] ) != anSort.getSortAsc( ) ) )
+            {
+                return null;
+            }
+
+            int nDoc = Integer.parseInt( strItems [2] );
+            Object [ ] values = new Object [ strItems.length - NB_HEADER_ITEMS];
+
+            for ( int i = 0; i < values.length; i++ )
+            {
+                String strValue = strItems [i + NB_HEADER_ITEMS];
+
+                if ( strValue.charAt( 0 ) == PREFIX_LONG )
+                {
+                    values [i] = Long.valueOf( strValue.substring( 1 ) );
+                }
+                else
+                    if ( strValue.charAt( 0 ) == PREFIX_STRING )
+                    {
+                        values [i] = new BytesRef( Base64.getUrlDecoder( ).decode( strValue.substring( 1 ) ) );
+                    }
+                    else
+                        if ( strValue.charAt( 0 ) == PREFIX_DOUBLE )
+                        {
+                            values [i] = Double.valueOf( strValue.substring( 1 ) );
+                        }
+            }
+
+            return new FieldDoc( nDoc, Float.NaN, values );
+        }
+        catch( IllegalArgumentException | StringIndexOutOfBoundsException e )
+        {
+            AppLogService.debug( "Invalid announce search cursor : " + strToken );
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Number of announces matching a search, by sector, category and tag
+ */
+public class AnnounceSearchFacets
+{
+    private final Map<Integer, Integer> _mapSectorCounts = new HashMap<>( );
+    private final Map<Integer, Integer> _mapCategoryCounts = new HashMap<>( );
+    private final Map<String, Integer> _mapTagCounts = new HashMap<>( );
+
+    /**
+     * Get the number of announces of a sector
+     * 
+     * @param nIdSector
+     *            The id of the sector
+     * @return The number of announces of the sector
+     */
+    public int getSectorCount( int nIdSector )
+    {
+        return _mapSectorCounts.getOrDefault( nIdSector, 0 );
+    }
+
+    /**
+     * Get the number of announces of a category
+     * 
+     * @param nIdCategory
+     *            The id of the category
+     * @return The number of announces of the category
+     */
+    public int getCategoryCount( int nIdCategory )
+    {
+        return _mapCategoryCounts.getOrDefault( nIdCategory, 0 );
+    }
+
+    /**
+     * Get the number of announces of every tag
+     * 
+     * @return The number of announces, indexed by lower case tag
+     */
+    public Map<String, Integer> getTagCounts( )
+    {
+        return _mapTagCounts;
+    }
+
+    /**
+     * Add an announce to the count of a sector
+     * 
+     * @param nIdSector
+     *            The id of the sector
+     */
+    void incrementSector( int nIdSector )
+    {
+        _mapSectorCounts.merge( nIdSector, 1, Integer::sum );
+    }
+
+    /**
+     * Add an announce to the count of a category
+     * 
+     * @param nIdCategory
+     *            The id of the category
+     */
+    void incrementCategory( int nIdCategory )
+    {
+        _mapCategoryCounts.merge( nIdCategory, 1, Integer::sum );
+    }
+
+    /**
+     * Add announces to the count of a tag
+     * 
+     * @param strTag
+     *            The tag
+     * @param nCount
+     *            The number of announces to add
+     */
+    void addTag( String strTag, int nCount )
+    {
+        _mapTagCounts.merge( strTag, nCount, Integer::sum );
+    }
+
+    /**
+     * Add the counts of other facets to these facets
+     * 
+     * @param facets
+     *            The other facets
+     */
+    void addAll( AnnounceSearchFacets facets )
+    {
+        facets._mapSectorCounts.forEach( ( nIdSector, nCount ) -> _mapSectorCounts.merge( nIdSector, nCount, Integer::sum ) );
+        facets._mapCategoryCounts.forEach( ( nIdCategory, nCount ) -> _mapCategoryCounts.merge( nIdCategory, nCount, Integer::sum ) );
+        facets._mapTagCounts.forEach( this::addTag );
+    }
+}
@@ -64,6 +64,96 @@ public class AnnounceSearchItem extends SearchItem
      */
     public static final String FIELD_PRICE = "price";
 
+    /**
+     * Announce creation date, as a number of milliseconds
+     */
+    public static final String FIELD_DATE_CREATION = "date_creation";
+
+    /**
+     * Announce publication time, as a number of milliseconds
+     */
+    public static final String FIELD_PUBLICATION_TIME = "publication_time";
+
+    /**
+     * Announce modification date, as a number of milliseconds
+     */
+    public static final String FIELD_DATE_MODIFICATION = "date_modification";
+
+    /**
+     * Announce price, as a number of cents
+     */
+    public static final String FIELD_PRICE_CENTS = "price_cents";
+
+    /**
+     * Sort key of the title of the announce
+     */
+    public static final String FIELD_SORT_TITLE = "sort_title";
+
+    /**
+     * Sort key of the description of the announce
+     */
+    public static final String FIELD_SORT_DESCRIPTION = "sort_description";
+
+    /**
+     * Sort key of the id of the announce, used to break ties
+     */
+    public static final String FIELD_SORT_ID = "sort_id";
+
+    /**
+     * Facet dimension of the sector of the announce
+     */
+    public static final String FIELD_FACET_SECTOR = "facet_sector";
+
+    /**
+     * Facet dimension of the category of the announce
+     */
+    public static final String FIELD_FACET_CATEGORY = "facet_category";
+
+    /**
+     * Facet dimension of the tags of the announce
+     */
+    public static final String FIELD_FACET_TAGS = "facet_tags";
+
+    /**
+     * Geographic location of the announce, indexed as a point to search by distance or bounding box and as doc values to sort by distance
+     */
+    public static final String FIELD_LOCATION = "location";
+
+    /**
+     * Excerpt of the description of the announce, stored to display lists of announces
+     */
+    public static final String FIELD_DESCRIPTION_EXCERPT = "description_excerpt";
+
+    /**
+     * Name of the user of the announce
+     */
+    public static final String FIELD_USER_NAME = "user_name";
+
+    /**
+     * Last name of the user of the announce
+     */
+    public static final String FIELD_USER_LAST_NAME = "user_last_name";
+
+    /**
+     * Second name of the user of the announce
+     */
+    public static final String FIELD_USER_SECOND_NAME = "user_second_name";
+
+    /**
+     * Id of the response holding the first image of the announce
+     */
+    public static final String FIELD_COVER_IMAGE_ID = "cover_image_id";
+
+    /**
+     * Label of the category of the announce
+     */
+    public static final String FIELD_CATEGORY_LABEL = "category_label";
+
+    /**
+     * Whether the category of the announce displays prices
+     */
+    public static final String FIELD_CATEGORY_DISPLAY_PRICE = "category_display_price";
+
     // Variables declarations
     private String _strCategoryId;
 
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.paris.lutece.plugins.announce.business.Announce;
+import fr.paris.lutece.plugins.announce.business.Category;
+
+/**
+ * Page of announce search results, as kept in the search cache
+ */
+public class AnnounceSearchResult
+{
+    private final List<Announce> _listAnnounces;
+    private final int _nNbResults;
+    private final AnnounceSearchFacets _facets;
+    private final String _strNextToken;
+
+    /**
+     * Creates a new page of results
+     * 
+     * @param listAnnounces
+     *            The announces of the page
+     * @param nNbResults
+     *            The total number of results
+     * @param facets
+     *            The counts of the results, or null if they were not requested
+     * @param strNextToken
+     *            The cursor token of the next page, or null
+     */
+    public AnnounceSearchResult( List<Announce> listAnnounces, int nNbResults, AnnounceSearchFacets facets, String strNextToken )
+    {
+        _listAnnounces = copy( listAnnounces );
+        _nNbResults = nNbResults;
+        _facets = facets;
+        _strNextToken = strNextToken;
+    }
+
+    /**
+     * Get a copy of the announces of the page, that callers are free to modify
+     * 
+     * @return The announces of the page
+     */
+    public List<Announce> getAnnounces( )
+    {
+        return copy( _listAnnounces );
+    }
+
+    /**
+     * Get the total number of results
+     * 
+     * @return The total number of results
+     */
+    public int getNbResults( )
+    {
+        return _nNbResults;
+    }
+
+    /**
+     * Get the counts of the results
+     * 
+     * @return The counts of the results, or null if they were not requested
+     */
+    public AnnounceSearchFacets getFacets( )
+    {
+        return _facets;
+    }
+
+    /**
+     * Get the cursor token of the next page
+     * 
+     * @return The cursor token of the next page, or null
+     */
+    public String getNextToken( )
+    {
+        return _strNextToken;
+    }
+
+    /**
+     * Copy a list of announces
+     * 
+     * @param listAnnounces
+     *            The announces
+     * @return The copy
+     */
+    private static List<Announce> copy( List<Announce> listAnnounces )
+    {
+        List<Announce> listCopy = new ArrayList<>( listAnnounces.size( ) );
+
+        for ( Announce announce : listAnnounces )
+        {
+            listCopy.add( copy( announce ) );
+        }
+
+        return listCopy;
+    }
+
+    /**
+     * Copy an announce, with its own category and lists, so that callers modifying the copy never modify an announce shared between requests
+     * 
+     * @param announce
+     *            The announce
+     * @return The copy
+     */
+    static Announce copy( Announce announce )
+    {
+        Announce announceCopy = (Announce) announce.clone( );
+
+        if ( announce.getCategory( ) != null )
+        {
+            announceCopy.setCategory( (Category) announce.getCategory( ).clone( ) );
+        }
+
+        if ( announce.getListIdImageResponse( ) != null )
+        {
+            announceCopy.setListIdImageResponse( new ArrayList<>( announce.getListIdImageResponse( ) ) );
+        }
+
+        if ( announce.getListResponse( ) != null )
+        {
+            announceCopy.setListResponse( new ArrayList<>( announce.getListResponse( ) ) );
+        }
+
+        return announceCopy;
+    }
+}
@@ -34,14 +34,24 @@
 package fr.paris.lutece.plugins.announce.service.announcesearch;
 
 import java.io.IOException;
-import java.nio.file.Paths;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.miscellaneous.LimitTokenCountAnalyzer;
 import org.apache.lucene.index.DirectoryReader;
@@ -50,18 +60,26 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.index.LogDocMergePolicy;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.LogMergePolicy;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 
 import fr.paris.lutece.plugins.announce.business.Announce;
+import fr.paris.lutece.plugins.announce.business.AnnounceHome;
 import fr.paris.lutece.plugins.announce.business.AnnounceSearchFilter;
 import fr.paris.lutece.plugins.announce.business.AnnounceSort;
 import fr.paris.lutece.plugins.announce.business.IndexerAction;
 import fr.paris.lutece.plugins.announce.business.IndexerActionFilter;
 import fr.paris.lutece.plugins.announce.business.IndexerActionHome;
+import fr.paris.lutece.plugins.announce.business.Sector;
+import fr.paris.lutece.plugins.announce.business.SectorHome;
 import fr.paris.lutece.plugins.announce.service.AnnouncePlugin;
+import fr.paris.lutece.portal.service.message.SiteMessageException;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.plugin.PluginService;
 import fr.paris.lutece.portal.service.search.SearchResult;
@@ -79,29 +97,131 @@ public final class AnnounceSearchService
     private static final String BEAN_SEARCH_ENGINE = "announce.announceSearchEngine";
     private static final String PATH_INDEX = "announce.internalIndexer.lucene.indexPath";
     private static final String PROPERTY_WRITER_MERGE_FACTOR = "announce.internalIndexer.lucene.writer.mergeFactor";
+    private static final String PROPERTY_WRITER_MERGE_POLICY = "announce.internalIndexer.lucene.writer.mergePolicy";
+    private static final String PROPERTY_WRITER_MAX_MERGE_DOCS = "announce.internalIndexer.lucene.writer.maxMergeDocs";
+    private static final String PROPERTY_WRITER_MAX_MERGED_SEGMENT_MB = "announce.internalIndexer.lucene.writer.maxMergedSegmentMB";
+    private static final String PROPERTY_WRITER_FLOOR_SEGMENT_MB = "announce.internalIndexer.lucene.writer.floorSegmentMB";
+    private static final String PROPERTY_WRITER_RAM_BUFFER_SIZE_MB = "announce.internalIndexer.lucene.writer.ramBufferSizeMB";
     private static final String PROPERTY_WRITER_MAX_FIELD_LENGTH = "announce.internalIndexer.lucene.writer.maxSectorLength";
     private static final String PROPERTY_ANALYSER_CLASS_NAME = "announce.internalIndexer.lucene.analyser.className";
     private static final String PROPERTY_INDEXER_PRICE_FORMAT = "announce.indexer.priceFormat";
+    private static final String PROPERTY_SEARCHER_REFRESH_POLICY = "announce.internalIndexer.lucene.searcher.refreshPolicy";
+    private static final String PROPERTY_DIRECTORY_TYPE = "announce.internalIndexer.lucene.directory.type";
+    private static final String PROPERTY_WARMING_ENABLE = "announce.internalIndexer.lucene.warming.enable";
+    private static final String PROPERTY_WARMING_SECTORS = "announce.internalIndexer.lucene.warming.sectors";
+    private static final String PROPERTY_WARMING_KEYWORDS = "announce.internalIndexer.lucene.warming.keywords";
+    private static final String PROPERTY_WARMING_NB_HITS = "announce.internalIndexer.lucene.warming.nbHits";
+    private static final String PROPERTY_SEARCH_PROJECTION_ENABLE = "announce.search.projection.enable";
+    private static final String PROPERTY_SEARCH_COUNT_THRESHOLD = "announce.search.count.threshold";
+    private static final String PROPERTY_OPTIMIZE_MIN_DELETED_RATIO = "announce.indexer.optimize.minDeletedRatio";
+    private static final String PROPERTY_REBUILD_MAX_DOC_COUNT_GAP = "announce.indexer.rebuild.maxDocCountGap";
+    private static final String PROPERTY_SHARDS_ENABLE = "announce.internalIndexer.lucene.shards.enable";
+    private static final String PROPERTY_SHARDS_SEARCH_THREADS = "announce.internalIndexer.lucene.shards.searchThreads";
+    private static final String PROPERTY_PIPELINE_ENABLE = "announce.indexer.pipeline.enable";
+    private static final String PROPERTY_PIPELINE_BATCH_DELAY = "announce.indexer.pipeline.batchDelay";
+    private static final String PROPERTY_PIPELINE_BATCH_SIZE = "announce.indexer.pipeline.batchSize";
+    private static final String PROPERTY_PIPELINE_MAX_PENDING_CHANGES = "announce.indexer.pipeline.maxPendingChanges";
+    private static final String PROPERTY_SUGGEST_ENABLE = "announce.suggest.enable";
+    private static final String PROPERTY_SUGGEST_MIN_PREFIX_CHARS = "announce.suggest.minPrefixChars";
+    private static final String PROPERTY_SUGGEST_MIN_KEYWORDS_LENGTH = "announce.suggest.minKeywordsLength";
+    private static final String PROPERTY_SUGGEST_MAX_RESULTS = "announce.suggest.maxResults";
+    private static final String PROPERTY_SIMILAR_MAX_RESULTS = "announce.similar.maxResults";
+    private static final String PROPERTY_CLUSTERS_GRID_SIZE = "announce.clusters.gridSize";
+    private static final String PROPERTY_CLUSTERS_MAX_TILES = "announce.clusters.maxTiles";
+    private static final String PROPERTY_CLUSTERS_MAX_SAMPLES = "announce.clusters.maxSamples";
+    private static final String PROPERTY_CLUSTERS_MAX_ZOOM = "announce.clusters.maxZoom";
 
     // Constants
     private static final String CONSTANT_BLANK_SPACE = " ";
     private static final String CONSTANT_COMA = ",";
     private static final String CONSTANT_POINT = ".";
     private static final String CONSTANT_EURO = "€";
+    private static final String CACHE_KEY_SEPARATOR = ",";
+    private static final String CACHE_KEY_COUNT = "count";
+    private static final String CACHE_KEY_FACETS = "facets";
+    private static final String VERSION_SEPARATOR = "-";
+    private static final String SHARD_VERSION_SEPARATOR = ":";
+    private static final String SHARDS_SEARCH_THREAD_NAME = "announce-shards-search";
+    private static final String SECTOR_INDEXING_THREAD_NAME = "announce-sector-indexing";
+    private static final int ALL_SECTORS = 0;
+
+    // Deepest zoom level whose tiles can be numbered with integers
+    private static final int MAX_TILE_ZOOM = 30;
+
+    // Searcher refresh policies
+    private static final String REFRESH_POLICY_BLOCKING = "blocking";
+    private static final String REFRESH_POLICY_ASYNC = "async";
+    // Merge policies of the index writers
+    private static final String MERGE_POLICY_LOG = "log";
+    private static final String MERGE_POLICY_TIERED = "tiered";
+
+    // Version of the format of indexed documents. It must be incremented every time the fields of documents change so that existing indexes are rebuilt
+    private static final String INDEX_FORMAT_VERSION = "5";
+    private static final String COMMIT_DATA_INDEX_FORMAT_VERSION = "announce.indexFormatVersion";
+    private static final String COMMIT_DATA_REBUILD_CHECKPOINT = "announce.rebuildCheckpoint";
+
+    // Suffix of the base path of the shard of a sector, followed by the id of the sector
+    private static final String SUFFIX_SECTOR_SHARD = ".sector";
 
     // Default values
     private static final int DEFAULT_WRITER_MERGE_FACTOR = 20;
     private static final int DEFAULT_WRITER_MAX_FIELD_LENGTH = 1000000;
+    private static final int DEFAULT_OPTIMIZE_MIN_DELETED_RATIO = 10;
+    private static final int DEFAULT_REBUILD_MAX_DOC_COUNT_GAP = 1;
+    private static final int DEFAULT_PIPELINE_BATCH_DELAY = 250;
+    private static final int DEFAULT_PIPELINE_BATCH_SIZE = 100;
+    private static final int DEFAULT_PIPELINE_MAX_PENDING_CHANGES = 10000;
+    private static final int DEFAULT_SUGGEST_MIN_PREFIX_CHARS = 4;
+    private static final int DEFAULT_SUGGEST_MIN_KEYWORDS_LENGTH = 2;
+    private static final int DEFAULT_SUGGEST_MAX_RESULTS = 10;
+    private static final int DEFAULT_SIMILAR_MAX_RESULTS = 4;
+    private static final int DEFAULT_WARMING_NB_HITS = 20;
+    private static final int DEFAULT_CLUSTERS_GRID_SIZE = 4;
+    private static final int DEFAULT_CLUSTERS_MAX_TILES = 16;
+    private static final int DEFAULT_CLUSTERS_MAX_SAMPLES = 3;
+    private static final int DEFAULT_CLUSTERS_MAX_ZOOM = 20;
 
     // Constants corresponding to the variables defined in the lutece.properties file
     private static volatile AnnounceSearchService _singleton;
     private static String _strPriceFormat;
     private volatile String _strIndex;
     private Analyzer _analyzer;
+    private AnnounceQueryBuilder _queryBuilder;
     private IAnnounceSearchIndexer _indexer;
+    private IAnnounceTextExtractor _textExtractor;
     private int _nWriterMergeFactor;
+    private String _strWriterMergePolicy;
+    private int _nWriterMaxMergeDocs;
+    private double _dWriterMaxMergedSegmentMB;
+    private double _dWriterFloorSegmentMB;
+    private double _dWriterRamBufferSizeMB;
     private int _nWriterMaxSectorLength;
-    private static volatile IndexWriter _indexWriterInstance;
+    private int _nOptimizeMinDeletedRatio;
+    private final Object _lockIndexing = new Object( );
+    private final Map<Integer, AnnounceIndexShard> _mapShards = new ConcurrentSkipListMap<>( );
+    private boolean _bShardsEnabled;
+    private volatile boolean _bShardsLoaded;
+    private ExecutorService _shardsSearchExecutor;
+    private ExecutorService _sectorIndexingExecutor;
+    private int _nClaimedIdAction = IndexerActionFilter.ALL_INT;
+    private AnnounceIndexingPipeline _indexingPipeline;
+    private String _strSearcherRefreshPolicy;
+    private boolean _bProjectionEnabled;
+    private int _nCountThreshold;
+    private AnnounceDirectoryFactory _directoryFactory;
+    private boolean _bWarmingEnabled;
+    private boolean _bWarmingSectors;
+    private String [ ] _strWarmingKeywords;
+    private int _nWarmingNbHits;
+    private volatile List<Integer> _listWarmingIdSectors;
+    private AnnounceSuggester _suggester;
+    private int _nSuggestMinKeywordsLength;
+    private int _nSuggestMaxResults;
+    private int _nSimilarMaxResults;
+    private int _nClustersGridSize;
+    private int _nClustersMaxTiles;
+    private int _nClustersMaxSamples;
+    private int _nClustersMaxZoom;
 
     /**
      * Creates a new instance of DirectorySearchService
@@ -117,7 +237,27 @@ public final class AnnounceSearchService
         }
 
         _nWriterMergeFactor = AppPropertiesService.getPropertyInt( PROPERTY_WRITER_MERGE_FACTOR, DEFAULT_WRITER_MERGE_FACTOR );
+        _strWriterMergePolicy = AppPropertiesService.getProperty( PROPERTY_WRITER_MERGE_POLICY, MERGE_POLICY_LOG );
+        _nWriterMaxMergeDocs = AppPropertiesService.getPropertyInt( PROPERTY_WRITER_MAX_MERGE_DOCS, LogMergePolicy.DEFAULT_MAX_MERGE_DOCS );
+        _dWriterMaxMergedSegmentMB = NumberUtils.toDouble( AppPropertiesService.getProperty( PROPERTY_WRITER_MAX_MERGED_SEGMENT_MB ), 0d );
+        _dWriterFloorSegmentMB = NumberUtils.toDouble( AppPropertiesService.getProperty( PROPERTY_WRITER_FLOOR_SEGMENT_MB ), 0d );
+        _dWriterRamBufferSizeMB = NumberUtils.toDouble( AppPropertiesService.getProperty( PROPERTY_WRITER_RAM_BUFFER_SIZE_MB ),
+                IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB );
         _nWriterMaxSectorLength = AppPropertiesService.getPropertyInt( PROPERTY_WRITER_MAX_FIELD_LENGTH, DEFAULT_WRITER_MAX_FIELD_LENGTH );
+        _nOptimizeMinDeletedRatio = AppPropertiesService.getPropertyInt( PROPERTY_OPTIMIZE_MIN_DELETED_RATIO, DEFAULT_OPTIMIZE_MIN_DELETED_RATIO );
+        _strSearcherRefreshPolicy = AppPropertiesService.getProperty( PROPERTY_SEARCHER_REFRESH_POLICY, REFRESH_POLICY_BLOCKING );
+        _directoryFactory = new AnnounceDirectoryFactory( AppPropertiesService.getProperty( PROPERTY_DIRECTORY_TYPE, AnnounceDirectoryFactory.TYPE_FS ) );
+        _bWarmingEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_WARMING_ENABLE, false );
+        _bWarmingSectors = AppPropertiesService.getPropertyBoolean( PROPERTY_WARMING_SECTORS, true );
+        _strWarmingKeywords = StringUtils.split( AppPropertiesService.getProperty( PROPERTY_WARMING_KEYWORDS, StringUtils.EMPTY ), CONSTANT_COMA );
+        _nWarmingNbHits = AppPropertiesService.getPropertyInt( PROPERTY_WARMING_NB_HITS, DEFAULT_WARMING_NB_HITS );
+        _bProjectionEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_SEARCH_PROJECTION_ENABLE, false );
+        _nCountThreshold = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_SEARCH_COUNT_THRESHOLD, 0 ) );
+        _nSimilarMaxResults = AppPropertiesService.getPropertyInt( PROPERTY_SIMILAR_MAX_RESULTS, DEFAULT_SIMILAR_MAX_RESULTS );
+        _nClustersGridSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_CLUSTERS_GRID_SIZE, DEFAULT_CLUSTERS_GRID_SIZE ) );
+        _nClustersMaxTiles = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_CLUSTERS_MAX_TILES, DEFAULT_CLUSTERS_MAX_TILES ) );
+        _nClustersMaxSamples = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_CLUSTERS_MAX_SAMPLES, DEFAULT_CLUSTERS_MAX_SAMPLES ) );
+        _nClustersMaxZoom = Math.min( MAX_TILE_ZOOM, AppPropertiesService.getPropertyInt( PROPERTY_CLUSTERS_MAX_ZOOM, DEFAULT_CLUSTERS_MAX_ZOOM ) );
 
         String strAnalyserClassName = AppPropertiesService.getProperty( PROPERTY_ANALYSER_CLASS_NAME );
 
@@ -127,6 +267,7 @@ public final class AnnounceSearchService
         }
 
         _indexer = SpringContextService.getBean( "announce.announceIndexer" );
+        _textExtractor = SpringContextService.getBean( "announce.announceTextExtractor" );
 
         try
         {
@@ -136,6 +277,51 @@ public final class AnnounceSearchService
         {
             throw new AppException( "Failed to load Lucene Analyzer class", e );
         }
+
+        _queryBuilder = new AnnounceQueryBuilder( _analyzer );
+        _bShardsEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_SHARDS_ENABLE, false );
+
+        if ( _bShardsEnabled )
+        {
+            _shardsSearchExecutor = Executors.newFixedThreadPool(
+                    Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_SHARDS_SEARCH_THREADS, Runtime.getRuntime( ).availableProcessors( ) ) ),
+                    runnable -> {
+                        Thread thread = new Thread( runnable, SHARDS_SEARCH_THREAD_NAME );
+                        thread.setDaemon( true );
+
+                        return thread;
+                    } );
+            _sectorIndexingExecutor = Executors.newSingleThreadExecutor( runnable -> {
+                Thread thread = new Thread( runnable, SECTOR_INDEXING_THREAD_NAME );
+                thread.setDaemon( true );
+
+                return thread;
+            } );
+        }
+
+        if ( AppPropertiesService.getPropertyBoolean( PROPERTY_PIPELINE_ENABLE, false ) )
+        {
+            _indexingPipeline = new AnnounceIndexingPipeline( AppPropertiesService.getPropertyInt( PROPERTY_PIPELINE_BATCH_DELAY, DEFAULT_PIPELINE_BATCH_DELAY ),
+                    AppPropertiesService.getPropertyInt( PROPERTY_PIPELINE_BATCH_SIZE, DEFAULT_PIPELINE_BATCH_SIZE ),
+                    AppPropertiesService.getPropertyInt( PROPERTY_PIPELINE_MAX_PENDING_CHANGES, DEFAULT_PIPELINE_MAX_PENDING_CHANGES ) );
+        }
+
+        if ( AppPropertiesService.getPropertyBoolean( PROPERTY_SUGGEST_ENABLE, true ) )
+        {
+            _suggester = new AnnounceSuggester( AppPropertiesService.getPropertyInt( PROPERTY_SUGGEST_MIN_PREFIX_CHARS, DEFAULT_SUGGEST_MIN_PREFIX_CHARS ) );
+            _nSuggestMinKeywordsLength = AppPropertiesService.getPropertyInt( PROPERTY_SUGGEST_MIN_KEYWORDS_LENGTH, DEFAULT_SUGGEST_MIN_KEYWORDS_LENGTH );
+            _nSuggestMaxResults = AppPropertiesService.getPropertyInt( PROPERTY_SUGGEST_MAX_RESULTS, DEFAULT_SUGGEST_MAX_RESULTS );
+        }
+    }
+
+    /**
+     * Get the extractor of the text to index from the content of announces
+     * 
+     * @return The text extractor
+     */
+    public IAnnounceTextExtractor getTextExtractor( )
+    {
+        return _textExtractor;
     }
 
     /**
@@ -194,233 +380,1553 @@ public final class AnnounceSearchService
         return nNbItems;
     }
 
-    public int getSearchResultsBis( AnnounceSearchFilter filter, int nPageNumber, int nItemsPerPage, List<Announce> listAnnouncesResults, AnnounceSort anSort )
+    public int getSearchResultsBis( AnnounceSearchFilter filter, int nPageNumber, int nItemsPerPage, List<Announce> listAnnouncesResults, AnnounceSort anSort,
+            AnnounceSearchFacets facets )
     {
         int nNbItems = 0;
 
         try
         {
+            String strCacheKey = getSearchCacheKey( filter, anSort, nPageNumber + CACHE_KEY_SEPARATOR + nItemsPerPage, facets );
+            AnnounceSearchResult result = getCachedSearchResult( strCacheKey, listAnnouncesResults, facets );
+
+            if ( result != null )
+            {
+                return result.getNbResults( );
+            }
+
+            // Failed searches throw an exception, so that their empty results are not cached
             IAnnounceSearchEngine engine = SpringContextService.getBean( BEAN_SEARCH_ENGINE );
             nNbItems = engine.getSearchResultsBis( filter, PluginService.getPlugin( AnnouncePlugin.PLUGIN_NAME ), listAnnouncesResults, nPageNumber,
-                    nItemsPerPage, anSort );
-
+                    nItemsPerPage, anSort, facets );
+            putSearchResultInCache( strCacheKey, new AnnounceSearchResult( listAnnouncesResults, nNbItems, facets, null ) );
         }
         catch( Exception e )
         {
             AppLogService.error( e.getMessage( ), e );
             // If an error occurred clean result list
             listAnnouncesResults.clear( );
+            nNbItems = 0;
         }
 
         return nNbItems;
     }
 
     /**
-     * return searcher
+     * Return the announces of the page following the position of a cursor
      * 
-     * @return searcher
+     * @param filter
+     *            The search filter
+     * @param nItemsPerPage
+     *            The number of items per page to get
+     * @param listAnnouncesResults
+     *            The list to fill with the announces of the page
+     * @param cursor
+     *            The cursor holding the sort and the position to start from. The token of the next page is set on the cursor
+     * @param facets
+     *            The facets to fill with the counts of all the results, or null to skip counting
+     * @return The total number of items found
      */
-    public IndexSearcher getSearcher( )
+    public int getSearchResultsAfter( AnnounceSearchFilter filter, int nItemsPerPage, List<Announce> listAnnouncesResults, AnnounceSearchCursor cursor,
+            AnnounceSearchFacets facets )
     {
-        IndexSearcher searcher = null;
+        int nNbItems = 0;
 
         try
         {
-            IndexReader ir = DirectoryReader.open( FSDirectory.open( Paths.get( getIndex( ) ) ) );
-            searcher = new IndexSearcher( ir );
+            String strCacheKey = getSearchCacheKey( filter, cursor.getSort( ),
+                    StringUtils.defaultString( cursor.getToken( ) ) + CACHE_KEY_SEPARATOR + nItemsPerPage, facets );
+            AnnounceSearchResult result = getCachedSearchResult( strCacheKey, listAnnouncesResults, facets );
+
+            if ( result != null )
+            {
+                cursor.setNextToken( result.getNextToken( ) );
+
+                return result.getNbResults( );
+            }
+
+            // Failed searches throw an exception, so that their empty results are not cached
+            IAnnounceSearchEngine engine = SpringContextService.getBean( BEAN_SEARCH_ENGINE );
+            nNbItems = engine.getSearchResultsAfter( filter, PluginService.getPlugin( AnnouncePlugin.PLUGIN_NAME ), listAnnouncesResults, nItemsPerPage,
+                    cursor, facets );
+            putSearchResultInCache( strCacheKey, new AnnounceSearchResult( listAnnouncesResults, nNbItems, facets, cursor.getNextToken( ) ) );
         }
-        catch( IOException e )
+        catch( Exception e )
         {
             AppLogService.error( e.getMessage( ), e );
+            // If an error occurred clean result list
+            listAnnouncesResults.clear( );
+            nNbItems = 0;
         }
 
-        return searcher;
+        return nNbItems;
     }
 
     /**
-     * Process indexing
+     * Get the cache key of a page of search results
      * 
-     * @param bCreate
-     *            true for start full indexing false for begin incremental indexing
-     * @return the log
+     * @param filter
+     *            The search filter
+     * @param anSort
+     *            The sort
+     * @param strPageWindow
+     *            The description of the page of results
+     * @param facets
+     *            The facets requested with the results, or null
+     * @return The cache key, or null if the results must not be cached
+     * @throws IOException
+     *             If an IO error occurred
      */
-    public String processIndexing( boolean bCreate )
+    private String getSearchCacheKey( AnnounceSearchFilter filter, AnnounceSort anSort, String strPageWindow, AnnounceSearchFacets facets )
+            throws IOException
     {
-        StringBuffer sbLogs = new StringBuffer( );
-        IndexWriter writer = null;
-        boolean bCreateIndex = bCreate;
+        if ( !AnnounceSearchCacheService.getService( ).isCacheEnable( ) )
+        {
+            return null;
+        }
+
+        IndexSearcher searcher = acquireSearcher( filter.getIdSector( ) );
 
         try
         {
-            sbLogs.append( "\r\nIndexing all contents ...\r\n" );
+            return AnnounceSearchCacheService.getSearchCacheKey( filter, anSort, strPageWindow + CACHE_KEY_SEPARATOR + ( facets != null ),
+                    getIndexVersion( searcher.getIndexReader( ) ) );
+        }
+        finally
+        {
+            releaseSearcher( searcher );
+        }
+    }
 
-            Directory dir = FSDirectory.open( Paths.get( getIndex( ) ) );
-            if ( !DirectoryReader.indexExists( dir ) )
+    /**
+     * Get a page of search results from the cache
+     * 
+     * @param strCacheKey
+     *            The cache key of the page, or null
+     * @param listAnnouncesResults
+     *            The list to fill with the announces of the page
+     * @param facets
+     *            The facets to fill with the cached counts, or null
+     * @return The cached page, or null if the page is not in cache
+     */
+    private static AnnounceSearchResult getCachedSearchResult( String strCacheKey, List<Announce> listAnnouncesResults, AnnounceSearchFacets facets )
+    {
+        if ( strCacheKey == null )
+        {
+            return null;
+        }
+
+        AnnounceSearchResult result = (AnnounceSearchResult) AnnounceSearchCacheService.getService( ).getFromCache( strCacheKey );
+
+        if ( result != null )
+        {
+            listAnnouncesResults.addAll( result.getAnnounces( ) );
+
+            if ( ( facets != null ) && ( result.getFacets( ) != null ) )
             {
-                bCreateIndex = true;
+                facets.addAll( result.getFacets( ) );
             }
+        }
+
+        return result;
+    }
+
+    /**
+     * Put a page of search results in the cache
+     * 
+     * @param strCacheKey
+     *            The cache key of the page, or null
+     * @param result
+     *            The page of results
+     */
+    private static void putSearchResultInCache( String strCacheKey, AnnounceSearchResult result )
+    {
+        if ( strCacheKey != null )
+        {
+            AnnounceSearchCacheService.getService( ).putInCache( strCacheKey, result );
+        }
+    }
+
+    /**
+     * Count the announces matching a search by sector, category and tag. Counts are cached under the version of the index, so that the unfiltered counts
+     * displayed by most pages are only computed once per index change
+     * 
+     * @param filter
+     *            The search filter
+     * @return The counts of the announces matching the search
+     */
+    public AnnounceSearchFacets getSearchFacets( AnnounceSearchFilter filter )
+    {
+        try
+        {
+            String strCacheKey = getSearchCacheKey( filter, AnnounceSort.DEFAULT_SORT, CACHE_KEY_FACETS, null );
+            Object cachedFacets = ( strCacheKey != null ) ? AnnounceSearchCacheService.getService( ).getFromCache( strCacheKey ) : null;
+            AnnounceSearchFacets facets = new AnnounceSearchFacets( );
 
-            writer = getIndexWriterInstance( bCreateIndex );
+            if ( cachedFacets != null )
+            {
+                // Callers get their own copy, the cached counts are never modified
+                facets.addAll( (AnnounceSearchFacets) cachedFacets );
 
-            Date start = new Date( );
+                return facets;
+            }
 
-            sbLogs.append( "\r\n<strong>Indexer : " );
-            sbLogs.append( _indexer.getName( ) );
-            sbLogs.append( " - " );
-            sbLogs.append( _indexer.getDescription( ) );
-            sbLogs.append( "</strong>\r\n" );
-            _indexer.processIndexing( writer, bCreateIndex, sbLogs );
+            IAnnounceSearchEngine engine = SpringContextService.getBean( BEAN_SEARCH_ENGINE );
+            AnnounceSearchFacets searchFacets = engine.getSearchFacets( filter, PluginService.getPlugin( AnnouncePlugin.PLUGIN_NAME ) );
+            facets.addAll( searchFacets );
 
-            Date end = new Date( );
+            if ( strCacheKey != null )
+            {
+                AnnounceSearchCacheService.getService( ).putInCache( strCacheKey, searchFacets );
+            }
 
-            sbLogs.append( "Duration of the treatment : " );
-            sbLogs.append( end.getTime( ) - start.getTime( ) );
-            sbLogs.append( " milliseconds\r\n" );
+            return facets;
         }
         catch( Exception e )
         {
-            sbLogs.append( " caught a " );
-            sbLogs.append( e.getClass( ) );
-            sbLogs.append( "\n with message: " );
-            sbLogs.append( e.getMessage( ) );
-            sbLogs.append( "\r\n" );
-            AppLogService.error( "Indexing error : " + e.getMessage( ), e );
+            AppLogService.error( e.getMessage( ), e );
         }
-        finally
+
+        return new AnnounceSearchFacets( );
+    }
+
+    /**
+     * Count the announces matching a search, without collecting them. Counting stops at the count threshold, if one is configured
+     * 
+     * @param filter
+     *            The search filter
+     * @return The number of announces matching the search. The number is approximate if {@link #isCountApproximate(int)} returns true
+     */
+    public int countSearchResults( AnnounceSearchFilter filter )
+    {
+        try
         {
-            try
+            String strCacheKey = getSearchCacheKey( filter, AnnounceSort.DEFAULT_SORT, CACHE_KEY_COUNT + CACHE_KEY_SEPARATOR + _nCountThreshold, null );
+            Integer nCachedCount = ( strCacheKey != null ) ? (Integer) AnnounceSearchCacheService.getService( ).getFromCache( strCacheKey ) : null;
+
+            if ( nCachedCount != null )
             {
-                closeIndexWriterInstance( );
+                return nCachedCount;
             }
-            catch( IOException e )
+
+            IAnnounceSearchEngine engine = SpringContextService.getBean( BEAN_SEARCH_ENGINE );
+            int nCount = engine.countSearchResults( filter, _nCountThreshold, PluginService.getPlugin( AnnouncePlugin.PLUGIN_NAME ) );
+
+            if ( strCacheKey != null )
             {
-                AppLogService.error( e.getMessage( ), e );
+                AnnounceSearchCacheService.getService( ).putInCache( strCacheKey, nCount );
             }
+
+            return nCount;
+        }
+        catch( Exception e )
+        {
+            AppLogService.error( e.getMessage( ), e );
         }
 
-        return sbLogs.toString( );
+        return 0;
     }
 
     /**
-     * Add Indexer Action to perform on a record
+     * Get the number of results from which the number of results of a search is displayed as approximate
      * 
-     * @param nIdAnnounce
-     *            announce id
-     * @param nIdTask
-     *            the key of the action to do
-     * @param plugin
-     *            the plugin
+     * @return The count threshold, or 0 if numbers of results are always exact
      */
-    public void addIndexerAction( int nIdAnnounce, int nIdTask, Plugin plugin )
+    public int getCountThreshold( )
     {
-        IndexerAction indexerAction = new IndexerAction( );
-        indexerAction.setIdAnnounce( nIdAnnounce );
-        indexerAction.setIdTask( nIdTask );
-        IndexerActionHome.create( indexerAction );
+        return _nCountThreshold;
     }
 
     /**
-     * Remove a Indexer Action
+     * Check if a number of results must be displayed as approximate
      * 
-     * @param nIdAction
-     *            the key of the action to remove
-     * @param plugin
-     *            the plugin
+     * @param nCount
+     *            The number of results
+     * @return True if a count threshold is configured and the number of results reaches it
      */
-    public void removeIndexerAction( int nIdAction, Plugin plugin )
+    public boolean isCountApproximate( int nCount )
     {
-        IndexerActionHome.remove( nIdAction );
+        return ( _nCountThreshold > 0 ) && ( nCount >= _nCountThreshold );
     }
 
     /**
-     * return a list of IndexerAction by task key
+     * Get the titles and tags of announces completing the keywords typed by a user
      * 
-     * @param nIdTask
-     *            the task key
-     * @param plugin
-     *            the plugin
-     * @return a list of IndexerAction
+     * @param strKeywords
+     *            The keywords, the last word being a prefix
+     * @return The suggestions, the most frequent first. The list is empty if suggestions are disabled or if the keywords are too short
      */
-    public List<IndexerAction> getAllIndexerActionByTask( int nIdTask, Plugin plugin )
+    public List<String> getSuggestions( String strKeywords )
     {
-        IndexerActionFilter filter = new IndexerActionFilter( );
-        filter.setIdTask( nIdTask );
+        String strTrimmedKeywords = StringUtils.trimToEmpty( strKeywords );
 
-        return IndexerActionHome.getList( filter );
+        if ( ( _suggester == null ) || ( strTrimmedKeywords.length( ) < _nSuggestMinKeywordsLength ) )
+        {
+            return Collections.emptyList( );
+        }
+
+        try
+        {
+            return _suggester.lookup( strTrimmedKeywords, _nSuggestMaxResults );
+        }
+        catch( Exception e )
+        {
+            AppLogService.error( e.getMessage( ), e );
+        }
+
+        return Collections.emptyList( );
     }
 
     /**
-     * Get the path to the index of the search service
+     * Get the published announces of the same sector that are the most similar to an announce. The ids of the similar announces are cached until the index
+     * of the sector changes. The announces returned are copies that callers are free to modify
      * 
-     * @return The path to the index of the search service
+     * @param announce
+     *            The announce
+     * @return The similar announces, the most similar first. The list is empty if similar announces are disabled
      */
-    private String getIndex( )
+    public List<Announce> getSimilarAnnounces( Announce announce )
     {
-        if ( _strIndex == null )
+        List<Announce> listSimilarAnnounces = new ArrayList<>( );
+
+        if ( _nSimilarMaxResults <= 0 )
         {
-            _strIndex = AppPathService.getPath( PATH_INDEX );
+            return listSimilarAnnounces;
         }
 
-        return _strIndex;
+        String strIndexVersion = null;
+
+        try
+        {
+            strIndexVersion = getCacheIndexVersion( announce.getCategory( ).getIdSector( ) );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( e.getMessage( ), e );
+        }
+
+        List<Integer> listIdSimilarAnnounces = ( strIndexVersion != null )
+                ? AnnounceSearchCacheService.getService( ).getSimilarAnnounces( announce.getId( ), strIndexVersion )
+                : null;
+
+        if ( listIdSimilarAnnounces == null )
+        {
+            IAnnounceSearchEngine engine = SpringContextService.getBean( BEAN_SEARCH_ENGINE );
+            listIdSimilarAnnounces = engine.getSimilarAnnounces( announce, _nSimilarMaxResults, PluginService.getPlugin( AnnouncePlugin.PLUGIN_NAME ) );
+
+            if ( strIndexVersion != null )
+            {
+                AnnounceSearchCacheService.getService( ).putSimilarAnnounces( announce.getId( ), strIndexVersion, listIdSimilarAnnounces );
+            }
+        }
+
+        for ( Integer nIdSimilarAnnounce : listIdSimilarAnnounces )
+        {
+            Announce similarAnnounce = AnnounceHome.findByPrimaryKey( nIdSimilarAnnounce );
+
+            // The announce may have been removed or suspended since the last indexing
+            if ( ( similarAnnounce != null ) && similarAnnounce.getPublished( ) && !similarAnnounce.getSuspended( ) && !similarAnnounce.getSuspendedByUser( ) )
+            {
+                // Announces are shared by the announce cache
+                listSimilarAnnounces.add( AnnounceSearchResult.copy( similarAnnounce ) );
+            }
+        }
+
+        return listSimilarAnnounces;
     }
 
     /**
-     * Get the analyzed of this search service
+     * Group the announces matching a search and located in a bounding box into clusters to display on a map. The box is split into map tiles, each tile
+     * being split into a grid of cells holding at most one cluster. Tiles are taken at a lower zoom level if the box is too large for the requested zoom
+     * level, so that the number of clusters is bounded whatever the size of the box and the number of announces. The clusters of each tile are cached until
+     * the index changes
      * 
-     * @return The analyzer of this search service
+     * @param filter
+     *            The search filter
+     * @param dMinLatitude
+     *            The minimum latitude of the box, in degrees
+     * @param dMaxLatitude
+     *            The maximum latitude of the box, in degrees
+     * @param dMinLongitude
+     *            The minimum longitude of the box, in degrees
+     * @param dMaxLongitude
+     *            The maximum longitude of the box, in degrees. It may be lower than the minimum longitude for boxes crossing the dateline
+     * @param nZoom
+     *            The zoom level of the map
+     * @return The clusters of the box
      */
-    public Analyzer getAnalyzer( )
+    public List<AnnounceCluster> getClusters( AnnounceSearchFilter filter, double dMinLatitude, double dMaxLatitude, double dMinLongitude,
+            double dMaxLongitude, int nZoom )
     {
-        return _analyzer;
+        List<AnnounceCluster> listClusters = new ArrayList<>( );
+
+        try
+        {
+            List<AnnounceMapTile> listTiles = AnnounceMapTile.getTiles( dMinLatitude, dMaxLatitude, dMinLongitude, dMaxLongitude,
+                    Math.min( nZoom, _nClustersMaxZoom ), _nClustersMaxTiles );
+            String strIndexVersion = getCacheIndexVersion( filter.getIdSector( ) );
+            IAnnounceSearchEngine engine = SpringContextService.getBean( BEAN_SEARCH_ENGINE );
+
+            for ( AnnounceMapTile tile : listTiles )
+            {
+                String strCacheKey = ( strIndexVersion != null ) ? AnnounceSearchCacheService.getClustersCacheKey( filter, tile, strIndexVersion ) : null;
+                List<AnnounceCluster> listTileClusters = getCachedClusters( strCacheKey );
+
+                if ( listTileClusters == null )
+                {
+                    listTileClusters = engine.getClusters( filter, tile, _nClustersGridSize, _nClustersMaxSamples,
+                            PluginService.getPlugin( AnnouncePlugin.PLUGIN_NAME ) );
+
+                    if ( strCacheKey != null )
+                    {
+                        AnnounceSearchCacheService.getService( ).putInCache( strCacheKey, listTileClusters );
+                    }
+                }
+
+                listClusters.addAll( listTileClusters );
+            }
+        }
+        catch( Exception e )
+        {
+            AppLogService.error( e.getMessage( ), e );
+            listClusters.clear( );
+        }
+
+        return listClusters;
     }
 
     /**
-     * Format a price for the indexer
+     * Get the clusters of a map tile from the cache
      * 
-     * @param dPrice
-     *            The price to format
-     * @return The formated price
+     * @param strCacheKey
+     *            The cache key of the clusters of the tile, or null
+     * @return The cached clusters, or null if the clusters are not in cache
      */
-    public static String formatPriceForIndexer( double dPrice )
+    @SuppressWarnings( "unchecked" )
+    private static List<AnnounceCluster> getCachedClusters( String strCacheKey )
     {
-        NumberFormat formatter = new DecimalFormat( getPriceFormat( ) );
+        if ( strCacheKey == null )
+        {
+            return null;
+        }
 
-        return formatter.format( dPrice );
+        return (List<AnnounceCluster>) AnnounceSearchCacheService.getService( ).getFromCache( strCacheKey );
     }
 
     /**
-     * Format a numerous string
+     * Get the version of the index the data cached for a sector are computed on
      * 
-     * @param strPrice
-     *            The price
-     * @return The formated price
+     * @param nIdSector
+     *            The id of the sector, or 0 for every sector
+     * @return The version of the index, or null if the data must not be cached
+     * @throws IOException
+     *             If an IO error occurred
      */
-    public static String getFormatedPriceString( String strPrice )
+    private String getCacheIndexVersion( int nIdSector ) throws IOException
     {
-        return strPrice.replace( CONSTANT_BLANK_SPACE, StringUtils.EMPTY ).replace( CONSTANT_COMA, CONSTANT_POINT ).replace( CONSTANT_EURO, StringUtils.EMPTY )
-                .trim( );
+        if ( !AnnounceSearchCacheService.getService( ).isCacheEnable( ) )
+        {
+            return null;
+        }
+
+        IndexSearcher searcher = acquireSearcher( nIdSector );
+
+        try
+        {
+            return getIndexVersion( searcher.getIndexReader( ) );
+        }
+        finally
+        {
+            releaseSearcher( searcher );
+        }
     }
 
     /**
-     * Format a price for the indexer
+     * Check if search results are built from the fields stored in the index instead of being loaded from the database. Announces built from the index only
+     * hold the data needed to display lists of announces
      * 
-     * @param nPrice
-     *            The price to format
-     * @return The formated price
+     * @return True if search results are built from the index, false otherwise
      */
-    public static String formatPriceForIndexer( int nPrice )
+    public boolean isProjectionEnabled( )
     {
-        NumberFormat formatter = new DecimalFormat( getPriceFormat( ) );
+        return _bProjectionEnabled;
+    }
 
-        return formatter.format( nPrice );
+    /**
+     * Check if the index is sharded by sector
+     * 
+     * @return True if each sector has its own index, false if a single index holds every announce
+     */
+    public boolean isShardsEnabled( )
+    {
+        return _bShardsEnabled;
     }
 
     /**
-     * Get the price format to use
+     * Acquire a searcher on the current state of the index. Every searcher acquired with this method must be released with
+     * {@link #releaseSearcher(IndexSearcher)} once the search is done.
      * 
-     * @return the price format to use
+     * @return The searcher
+     * @throws IOException
+     *             If an IO error occurred
      */
-    private static String getPriceFormat( )
+    public IndexSearcher acquireSearcher( ) throws IOException
+    {
+        return acquireSearcher( ALL_SECTORS );
+    }
+
+    /**
+     * Acquire a searcher on the current state of the announces of a sector. When the index is sharded, only the shard of the sector is searched, and
+     * searches of every sector run concurrently on all the shards. Every searcher acquired with this method must be released with
+     * {@link #releaseSearcher(IndexSearcher)} once the search is done.
+     * 
+     * @param nIdSector
+     *            The id of the sector the search is restricted to, or 0 if the search is not restricted to a sector
+     * @return The searcher
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    public IndexSearcher acquireSearcher( int nIdSector ) throws IOException
+    {
+        if ( !_bShardsEnabled )
+        {
+            return getShard( ALL_SECTORS ).acquireSearcher( );
+        }
+
+        Collection<AnnounceIndexShard> listShards = getShards( );
+        AnnounceIndexShard shardSector = _mapShards.get( nIdSector );
+
+        // Shards are not created for the sectors given by searches : unknown sectors are searched in every shard, where they match nothing
+        if ( shardSector != null )
+        {
+            return shardSector.acquireSearcher( );
+        }
+
+        List<IndexSearcher> listSearchers = new ArrayList<>( );
+
+        try
+        {
+            StringBuilder sbVersion = new StringBuilder( );
+
+            for ( AnnounceIndexShard shard : listShards )
+            {
+                IndexSearcher searcher = shard.acquireSearcher( );
+                listSearchers.add( searcher );
+                sbVersion.append( shard.getIdSector( ) ).append( SHARD_VERSION_SEPARATOR ).append( getIndexVersion( searcher.getIndexReader( ) ) );
+                sbVersion.append( VERSION_SEPARATOR );
+            }
+
+            IndexReader [ ] readers = new IndexReader [ listSearchers.size( )];
+
+            for ( int i = 0; i < readers.length; i++ )
+            {
+                readers [i] = listSearchers.get( i ).getIndexReader( );
+            }
+
+            // The segments of the shards are searched concurrently, and their results are merged by the searcher
+            return new IndexSearcher( new ShardsReader( readers, sbVersion.toString( ) ), _shardsSearchExecutor );
+        }
+        finally
+        {
+            // The reader of the shards holds its own reference on the reader of each shard until it is released
+            for ( IndexSearcher searcher : listSearchers )
+            {
+                releaseSearcher( searcher );
+            }
+        }
+    }
+
+    /**
+     * Release a searcher previously acquired with {@link #acquireSearcher()}
+     * 
+     * @param searcher
+     *            The searcher to release. Null values are ignored
+     */
+    public void releaseSearcher( IndexSearcher searcher )
+    {
+        // Searchers are released on their own reader, which may belong to a manager that has been closed since they were acquired
+        if ( searcher != null )
+        {
+            try
+            {
+                searcher.getIndexReader( ).decRef( );
+            }
+            catch( IOException e )
+            {
+                AppLogService.error( e.getMessage( ), e );
+            }
+        }
+    }
+
+    /**
+     * Refresh the shared searchers so that they see the last changes of the index writers. Depending on the refresh policy, the refresh either waits for a
+     * concurrent refresh to complete or is skipped if another thread is already refreshing.
+     */
+    public void refreshSearcher( )
+    {
+        for ( AnnounceIndexShard shard : getShards( ) )
+        {
+            shard.refreshSearcher( !REFRESH_POLICY_ASYNC.equals( _strSearcherRefreshPolicy ) );
+        }
+    }
+
+    /**
+     * Open the searchers of the shards that have not been searched yet, such as every shard after a startup or a rebuilt shard, so that they are warmed
+     * before the first search
+     */
+    private void openSearchers( )
+    {
+        for ( AnnounceIndexShard shard : getShards( ) )
+        {
+            try
+            {
+                releaseSearcher( shard.acquireSearcher( ) );
+            }
+            catch( IOException e )
+            {
+                AppLogService.error( "Unable to open the announce searcher : " + e.getMessage( ), e );
+            }
+        }
+    }
+
+    /**
+     * Get the statistics of the segments of the live index of every shard, as seen by the current searchers
+     * 
+     * @return The statistics, one per shard
+     */
+    public List<AnnounceIndexStatistics> getIndexStatistics( )
+    {
+        List<AnnounceIndexStatistics> listStatistics = new ArrayList<>( );
+
+        for ( AnnounceIndexShard shard : getShards( ) )
+        {
+            IndexSearcher searcher = null;
+
+            try
+            {
+                searcher = shard.acquireSearcher( );
+
+                IndexReader reader = searcher.getIndexReader( );
+                List<LeafReaderContext> listLeaves = reader.leaves( );
+                listStatistics.add( new AnnounceIndexStatistics( shard.getIdSector( ), listLeaves.size( ), reader.numDocs( ), reader.maxDoc( ) ) );
+            }
+            catch( IOException e )
+            {
+                AppLogService.error( "Unable to read the statistics of the announce index : " + e.getMessage( ), e );
+            }
+            finally
+            {
+                releaseSearcher( searcher );
+            }
+        }
+
+        return listStatistics;
+    }
+
+    /**
+     * Get the statistics of the segments of the index as logs
+     * 
+     * @return The logs
+     */
+    public String getIndexStatisticsLogs( )
+    {
+        StringBuilder sbLogs = new StringBuilder( );
+
+        for ( AnnounceIndexStatistics statistics : getIndexStatistics( ) )
+        {
+            sbLogs.append( statistics ).append( "\r\n" );
+        }
+
+        return sbLogs.toString( );
+    }
+
+    /**
+     * Merge away the deleted documents of the shards whose ratio of deleted documents reaches the configured threshold. Merges rewrite whole segments, so
+     * they should be run during off-peak hours
+     * 
+     * @return the log
+     */
+    public String optimizeIndex( )
+    {
+        StringBuilder sbLogs = new StringBuilder( );
+
+        synchronized( _lockIndexing )
+        {
+            for ( AnnounceIndexStatistics statistics : getIndexStatistics( ) )
+            {
+                if ( statistics.getDeletedRatio( ) < _nOptimizeMinDeletedRatio )
+                {
+                    continue;
+                }
+
+                try
+                {
+                    long lStart = System.currentTimeMillis( );
+                    IndexWriter writer = getShard( statistics.getIdSector( ) ).getIndexWriter( );
+
+                    // Changes applied by the indexing pipeline are committed by the next indexing, which also removes their indexer actions
+                    boolean bPendingChanges = writer.hasUncommittedChanges( );
+                    writer.forceMergeDeletes( true );
+
+                    if ( !bPendingChanges )
+                    {
+                        writer.commit( );
+                    }
+
+                    sbLogs.append( "Deleted documents of " ).append( statistics ).append( " merged away in " );
+                    sbLogs.append( System.currentTimeMillis( ) - lStart ).append( " milliseconds\r\n" );
+                }
+                catch( IOException e )
+                {
+                    sbLogs.append( "Unable to optimize the index of sector " ).append( statistics.getIdSector( ) ).append( " : " ).append( e.getMessage( ) );
+                    sbLogs.append( "\r\n" );
+                    AppLogService.error( "Unable to optimize the announce index : " + e.getMessage( ), e );
+                }
+            }
+
+            refreshSearcher( );
+        }
+
+        sbLogs.append( getIndexStatisticsLogs( ) );
+
+        return sbLogs.toString( );
+    }
+
+    /**
+     * Run the warming queries on the first searcher of a shard : the first page of the listing of every sector of the shard, and the configured keywords.
+     * The queries load the postings, doc values and points of the segments, so that the first searches do not pay for it
+     * 
+     * @param searcher
+     *            The searcher
+     * @param nIdSector
+     *            The id of the sector of the announces of the shard, or 0 if the shard holds every announce
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    void warmSearcher( IndexSearcher searcher, int nIdSector ) throws IOException
+    {
+        if ( !_bWarmingEnabled )
+        {
+            return;
+        }
+
+        long lStart = System.currentTimeMillis( );
+        List<AnnounceSearchFilter> listFilters = new ArrayList<>( );
+        listFilters.add( getWarmingFilter( nIdSector, null ) );
+
+        if ( _bWarmingSectors && ( nIdSector == ALL_SECTORS ) )
+        {
+            for ( int nIdWarmingSector : getWarmingIdSectors( ) )
+            {
+                listFilters.add( getWarmingFilter( nIdWarmingSector, null ) );
+            }
+        }
+
+        for ( String strKeywords : _strWarmingKeywords )
+        {
+            listFilters.add( getWarmingFilter( nIdSector, strKeywords.trim( ) ) );
+        }
+
+        for ( AnnounceSearchFilter filter : listFilters )
+        {
+            AnnounceLuceneSearchEngine.warmSearcher( searcher, _queryBuilder.buildQuery( filter ), _nWarmingNbHits );
+        }
+
+        AppLogService.debug( "Announce searcher of sector " + nIdSector + " warmed with " + listFilters.size( ) + " queries in "
+                + ( System.currentTimeMillis( ) - lStart ) + " ms" );
+    }
+
+    /**
+     * Get the ids of the sectors whose listing is warmed. They are loaded once, and again after each rebuild
+     * 
+     * @return The ids of the sectors
+     */
+    private List<Integer> getWarmingIdSectors( )
+    {
+        List<Integer> listIdSectors = _listWarmingIdSectors;
+
+        if ( listIdSectors == null )
+        {
+            listIdSectors = new ArrayList<>( );
+
+            for ( Sector sector : SectorHome.findAll( ) )
+            {
+                listIdSectors.add( sector.getId( ) );
+            }
+
+            _listWarmingIdSectors = listIdSectors;
+        }
+
+        return listIdSectors;
+    }
+
+    /**
+     * Get the filter of a warming query
+     * 
+     * @param nIdSector
+     *            The id of the sector, or 0 for every sector
+     * @param strKeywords
+     *            The keywords, or null
+     * @return The filter
+     */
+    private static AnnounceSearchFilter getWarmingFilter( int nIdSector, String strKeywords )
+    {
+        AnnounceSearchFilter filter = new AnnounceSearchFilter( );
+        filter.setIdSector( nIdSector );
+        filter.setKeywords( strKeywords );
+
+        return filter;
+    }
+
+    /**
+     * Get the factory of the directories of the index
+     * 
+     * @return The directory factory
+     */
+    AnnounceDirectoryFactory getDirectoryFactory( )
+    {
+        return _directoryFactory;
+    }
+
+    /**
+     * Get the version of the state of the index a reader was opened on
+     * 
+     * @param reader
+     *            The reader
+     * @return The version of the index
+     */
+    private static String getIndexVersion( IndexReader reader )
+    {
+        if ( reader instanceof ShardsReader )
+        {
+            return ( (ShardsReader) reader ).getVersion( );
+        }
+
+        return Long.toString( ( (DirectoryReader) reader ).getVersion( ) );
+    }
+
+    /**
+     * Get the shard holding the announces of a sector
+     * 
+     * @param nIdSector
+     *            The id of the sector
+     * @return The shard of the sector, or the whole index if the index is not sharded
+     */
+    private AnnounceIndexShard getShard( int nIdSector )
+    {
+        int nIdShard = _bShardsEnabled ? nIdSector : ALL_SECTORS;
+
+        return _mapShards.computeIfAbsent( nIdShard,
+                nId -> new AnnounceIndexShard( ( nId == ALL_SECTORS ) ? getIndex( ) : ( getIndex( ) + SUFFIX_SECTOR_SHARD + nId ), nId ) );
+    }
+
+    /**
+     * Get the shards of the index. The shards of existing sectors are loaded on the first call, shards of sectors created later on are added by the first
+     * indexing of their announces
+     * 
+     * @return The shards of the index, or the whole index if the index is not sharded
+     */
+    private Collection<AnnounceIndexShard> getShards( )
+    {
+        if ( !_bShardsEnabled )
+        {
+            return Collections.singletonList( getShard( ALL_SECTORS ) );
+        }
+
+        if ( !_bShardsLoaded )
+        {
+            for ( Sector sector : SectorHome.findAll( ) )
+            {
+                getShard( sector.getId( ) );
+            }
+
+            _bShardsLoaded = true;
+        }
+
+        return _mapShards.values( );
+    }
+
+    /**
+     * Get the writers of the live index of the shards
+     * 
+     * @return The writers
+     */
+    private IAnnounceIndexWriters getIndexWriters( )
+    {
+        return new IAnnounceIndexWriters( )
+        {
+            @Override
+            public IndexWriter getIndexWriter( int nIdSector ) throws IOException
+            {
+                return getShard( nIdSector ).getIndexWriter( );
+            }
+
+            @Override
+            public Collection<IndexWriter> getIndexWriters( ) throws IOException
+            {
+                List<IndexWriter> listWriters = new ArrayList<>( );
+
+                for ( AnnounceIndexShard shard : getShards( ) )
+                {
+                    listWriters.add( shard.getIndexWriter( ) );
+                }
+
+                return listWriters;
+            }
+        };
+    }
+
+    /**
+     * Process indexing. Shards that need to be rebuilt are rebuilt first, then the changes of announces are applied to every shard
+     * 
+     * @param bCreate
+     *            true for start full indexing false for begin incremental indexing
+     * @return the log
+     */
+    public String processIndexing( boolean bCreate )
+    {
+        StringBuffer sbLogs = new StringBuffer( );
+
+        synchronized( _lockIndexing )
+        {
+            try
+            {
+                sbLogs.append( "\r\nIndexing all contents ...\r\n" );
+
+                Date start = new Date( );
+
+                sbLogs.append( "\r\n<strong>Indexer : " );
+                sbLogs.append( _indexer.getName( ) );
+                sbLogs.append( " - " );
+                sbLogs.append( _indexer.getDescription( ) );
+                sbLogs.append( "</strong>\r\n" );
+                // Actions created from now on are left for the next indexing
+                _nClaimedIdAction = IndexerActionHome.claim( );
+
+                for ( AnnounceIndexShard shard : getShards( ) )
+                {
+                    if ( isRebuildInterrupted( shard ) )
+                    {
+                        // A previous rebuild was interrupted : it is resumed after its last committed chunk
+                        sbLogs.append( "\r\nThe previous rebuild of the index was interrupted, it is resumed\r\n" );
+                        rebuildShard( shard, true, sbLogs );
+                    }
+                    else
+                        if ( bCreate || isRebuildNeeded( shard, sbLogs ) )
+                        {
+                            rebuildShard( shard, false, sbLogs );
+                        }
+                }
+
+                // Claimed actions are applied to rebuilt shards as well : announces indexed by an interrupted rebuild may have been modified before it resumed
+                IAnnounceIndexWriters indexWriters = getIndexWriters( );
+                List<IndexerAction> listActions = getClaimedIndexerActions( PluginService.getPlugin( AnnouncePlugin.PLUGIN_NAME ) );
+                _indexer.processIndexerActions( indexWriters, listActions, sbLogs );
+
+                for ( IndexWriter writer : indexWriters.getIndexWriters( ) )
+                {
+                    // Runs without any change do not write a new commit
+                    if ( writer.hasUncommittedChanges( ) )
+                    {
+                        writer.commit( );
+                    }
+                }
+
+                refreshSearcher( );
+                openSearchers( );
+                processIndexedAnnounces( listActions );
+                IndexerActionHome.removeClaimed( _nClaimedIdAction );
+
+                Date end = new Date( );
+
+                sbLogs.append( "Duration of the treatment : " );
+                sbLogs.append( end.getTime( ) - start.getTime( ) );
+                sbLogs.append( " milliseconds\r\n" );
+            }
+            catch( Exception e )
+            {
+                logIndexingError( sbLogs, e );
+
+                for ( AnnounceIndexShard shard : getShards( ) )
+                {
+                    shard.rollback( );
+                }
+            }
+            finally
+            {
+                _nClaimedIdAction = IndexerActionFilter.ALL_INT;
+            }
+        }
+
+        return sbLogs.toString( );
+    }
+
+    /**
+     * Rebuild the announces of a sector in the background, on a thread dedicated to the rebuilds of sectors. Rebuilds requested while another one is running
+     * are queued. Nothing is done if the index is not sharded by sector
+     * 
+     * @param nIdSector
+     *            The id of the sector
+     * @return true if the rebuild was submitted, false if the index is not sharded by sector
+     */
+    public boolean submitSectorIndexing( int nIdSector )
+    {
+        if ( _sectorIndexingExecutor == null )
+        {
+            AppLogService.info( "The announces of sector #" + nIdSector + " are not reindexed : the announce index is not sharded by sector" );
+
+            return false;
+        }
+
+        _sectorIndexingExecutor.execute( ( ) -> AppLogService.info( processSectorIndexing( nIdSector ) ) );
+
+        return true;
+    }
+
+    /**
+     * Rebuild the announces of a sector, without changing the index of the other sectors. Changes of announces are not applied : they are left for the
+     * next indexing
+     * 
+     * @param nIdSector
+     *            The id of the sector
+     * @return the log
+     */
+    public String processSectorIndexing( int nIdSector )
+    {
+        if ( !_bShardsEnabled )
+        {
+            // Announces of a sector can not be reindexed apart from the others : a full rebuild has to be requested explicitly
+            return "\r\nThe announces of sector #" + nIdSector + " are not reindexed : the announce index is not sharded by sector\r\n";
+        }
+
+        StringBuffer sbLogs = new StringBuffer( );
+
+        synchronized( _lockIndexing )
+        {
+            AnnounceIndexShard shard = getShard( nIdSector );
+
+            try
+            {
+                sbLogs.append( "\r\nIndexing the announces of sector #" );
+                sbLogs.append( nIdSector );
+                sbLogs.append( " ...\r\n" );
+                rebuildShard( shard, isRebuildInterrupted( shard ), sbLogs );
+            }
+            catch( Exception e )
+            {
+                logIndexingError( sbLogs, e );
+                shard.rollback( );
+            }
+        }
+
+        return sbLogs.toString( );
+    }
+
+    /**
+     * Log an indexing error
+     * 
+     * @param sbLogs
+     *            the buffer logger
+     * @param e
+     *            The error
+     */
+    private static void logIndexingError( StringBuffer sbLogs, Exception e )
+    {
+        sbLogs.append( " caught a " );
+        sbLogs.append( e.getClass( ) );
+        sbLogs.append( "\n with message: " );
+        sbLogs.append( e.getMessage( ) );
+        sbLogs.append( "\r\n" );
+        AppLogService.error( "Indexing error : " + e.getMessage( ), e );
+    }
+
+    /**
+     * Check if the live index of a shard must be rebuilt
+     * 
+     * @param shard
+     *            The shard
+     * @param sbLogs
+     *            the buffer logger
+     * @return True if the live index does not exist yet, or can not be updated
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    private boolean isRebuildNeeded( AnnounceIndexShard shard, StringBuffer sbLogs ) throws IOException
+    {
+        IndexWriter writer = shard.getIndexWriter( );
+
+        if ( !DirectoryReader.indexExists( writer.getDirectory( ) ) )
+        {
+            return true;
+        }
+
+        if ( !INDEX_FORMAT_VERSION.equals( getIndexFormatVersion( writer.getDirectory( ) ) ) )
+        {
+            // Documents indexed with an older format can not be searched with the current queries
+            sbLogs.append( "\r\nThe format of the index is outdated, the index is rebuilt\r\n" );
+
+            return true;
+        }
+
+        if ( getRebuildCheckpoint( writer ) > 0 )
+        {
+            // Rebuilds used to be made in the live index, which may have been left incomplete
+            sbLogs.append( "\r\nThe index was left incomplete by an interrupted rebuild, it is rebuilt\r\n" );
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Rebuild the index of a shard in a separate directory while searches keep using the live index. Changes of announces wait for the indexing lock and
+     * are applied once the rebuild is over. Once every announce is indexed, the number of documents is checked against the number of published announces
+     * and the rebuilt index replaces the live index
+     * 
+     * @param shard
+     *            The shard
+     * @param bResume
+     *            True to resume an interrupted rebuild, false to start a new one
+     * @param sbLogs
+     *            the buffer logger
+     * @return True if the rebuilt index replaced the live index, false if it was rejected
+     * @throws IOException
+     *             If an IO error occurred
+     * @throws InterruptedException
+     *             If the indexing thread was interrupted
+     * @throws SiteMessageException
+     *             occurs when a site message need to be displayed
+     */
+    private boolean rebuildShard( AnnounceIndexShard shard, boolean bResume, StringBuffer sbLogs ) throws IOException, InterruptedException, SiteMessageException
+    {
+        Path pathRebuild = shard.getRebuildIndexPath( );
+        int nNbDocuments;
+
+        // Changes that are not committed when the writer is closed on an error are discarded, so that the rebuild resumes after its last chunk
+        IndexWriterConfig conf = getIndexWriterConfig( bResume ? OpenMode.APPEND : OpenMode.CREATE );
+        conf.setCommitOnClose( false );
+
+        try ( Directory dir = _directoryFactory.open( pathRebuild ); IndexWriter writer = new IndexWriter( dir, conf ) )
+        {
+            if ( !bResume )
+            {
+                writer.setLiveCommitData( Collections.singletonMap( COMMIT_DATA_INDEX_FORMAT_VERSION, INDEX_FORMAT_VERSION ).entrySet( ) );
+            }
+
+            if ( shard.getIdSector( ) == ALL_SECTORS )
+            {
+                _indexer.processIndexing( writer, true, sbLogs );
+            }
+            else
+            {
+                _indexer.processSectorIndexing( writer, shard.getIdSector( ), sbLogs );
+            }
+
+            // The rebuild is complete : its checkpoint is removed with the last commit
+            writer.setLiveCommitData( Collections.singletonMap( COMMIT_DATA_INDEX_FORMAT_VERSION, INDEX_FORMAT_VERSION ).entrySet( ) );
+            writer.commit( );
+
+            try ( DirectoryReader reader = DirectoryReader.open( dir ) )
+            {
+                nNbDocuments = reader.numDocs( );
+            }
+        }
+
+        int nNbPublished = ( shard.getIdSector( ) == ALL_SECTORS ) ? AnnounceHome.countPublished( ) : AnnounceHome.countPublishedInSector( shard.getIdSector( ) );
+        int nMaxGapPercent = AppPropertiesService.getPropertyInt( PROPERTY_REBUILD_MAX_DOC_COUNT_GAP, DEFAULT_REBUILD_MAX_DOC_COUNT_GAP );
+
+        // Announces published or removed while the index was rebuilt make the counts differ slightly, even for shards of less than 100 announces
+        int nMaxGap = Math.max( 1, (int) Math.ceil( ( nNbPublished * nMaxGapPercent ) / 100d ) );
+
+        if ( Math.abs( nNbDocuments - nNbPublished ) > nMaxGap )
+        {
+            String strError = "The rebuilt index holds " + nNbDocuments + " announces instead of " + nNbPublished + " : it is discarded";
+            sbLogs.append( strError );
+            sbLogs.append( "\r\n" );
+            AppLogService.error( strError );
+            _directoryFactory.delete( pathRebuild );
+
+            return false;
+        }
+
+        _listWarmingIdSectors = null;
+        shard.switchLiveIndex( );
+
+        // The versions of the rebuilt index are unrelated to the versions of the previous index, which are part of the keys of the cached results
+        AnnounceSearchCacheService.getService( ).resetCache( );
+
+        if ( _suggester != null )
+        {
+            _suggester.invalidate( );
+        }
+
+        sbLogs.append( "The rebuilt index holds " );
+        sbLogs.append( nNbDocuments );
+        sbLogs.append( " announces, it replaces the live index\r\n" );
+
+        return true;
+    }
+
+    /**
+     * Check if a rebuild of the index of a shard was interrupted before its end
+     * 
+     * @param shard
+     *            The shard
+     * @return True if an interrupted rebuild can be resumed
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    private boolean isRebuildInterrupted( AnnounceIndexShard shard ) throws IOException
+    {
+        Path pathRebuild = shard.getRebuildIndexPath( );
+
+        if ( !_directoryFactory.exists( pathRebuild ) )
+        {
+            return false;
+        }
+
+        try ( Directory dir = _directoryFactory.open( pathRebuild ) )
+        {
+            if ( !DirectoryReader.indexExists( dir ) )
+            {
+                return false;
+            }
+
+            Map<String, String> commitData = SegmentInfos.readLatestCommit( dir ).getUserData( );
+
+            return INDEX_FORMAT_VERSION.equals( commitData.get( COMMIT_DATA_INDEX_FORMAT_VERSION ) ) && commitData.containsKey( COMMIT_DATA_REBUILD_CHECKPOINT );
+        }
+    }
+
+    /**
+     * Close the index of announces if it has been opened. Pending changes are committed before the writer is closed.
+     */
+    public static void shutdown( )
+    {
+        AnnounceSearchService service = _singleton;
+
+        if ( service != null )
+        {
+            if ( service._indexingPipeline != null )
+            {
+                service._indexingPipeline.shutdown( );
+            }
+
+            if ( service._shardsSearchExecutor != null )
+            {
+                service._shardsSearchExecutor.shutdown( );
+            }
+
+            if ( service._sectorIndexingExecutor != null )
+            {
+                service._sectorIndexingExecutor.shutdownNow( );
+            }
+
+            for ( AnnounceIndexShard shard : service._mapShards.values( ) )
+            {
+                shard.close( );
+            }
+        }
+    }
+
+    /**
+     * Get the checkpoint of the rebuild of the index in progress
+     * 
+     * @param writer
+     *            The index writer
+     * @return The id of the last announce committed by the rebuild, or 0 if no rebuild is in progress
+     */
+    public static int getRebuildCheckpoint( IndexWriter writer )
+    {
+        Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData( );
+
+        if ( commitData != null )
+        {
+            for ( Map.Entry<String, String> entry : commitData )
+            {
+                if ( COMMIT_DATA_REBUILD_CHECKPOINT.equals( entry.getKey( ) ) )
+                {
+                    return NumberUtils.toInt( entry.getValue( ), 0 );
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Commit the documents added by the rebuild of the index, with the id of the last indexed announce as checkpoint. The checkpoint is written in the same
+     * commit as the documents, so that a rebuild interrupted later on resumes exactly after them
+     * 
+     * @param writer
+     *            The index writer
+     * @param nIdAnnounce
+     *            The id of the last announce indexed by the rebuild
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    public static void commitRebuildCheckpoint( IndexWriter writer, int nIdAnnounce ) throws IOException
+    {
+        Map<String, String> commitData = new HashMap<>( );
+        commitData.put( COMMIT_DATA_INDEX_FORMAT_VERSION, INDEX_FORMAT_VERSION );
+        commitData.put( COMMIT_DATA_REBUILD_CHECKPOINT, Integer.toString( nIdAnnounce ) );
+        writer.setLiveCommitData( commitData.entrySet( ) );
+        writer.commit( );
+    }
+
+    /**
+     * Get the format version of the documents of an index
+     * 
+     * @param dir
+     *            The directory of the index
+     * @return The format version recorded with the last commit of the index, or null if the index was created before format versions were recorded
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    private static String getIndexFormatVersion( Directory dir ) throws IOException
+    {
+        return SegmentInfos.readLatestCommit( dir ).getUserData( ).get( COMMIT_DATA_INDEX_FORMAT_VERSION );
+    }
+
+    /**
+     * Add Indexer Action to perform on a record
+     * 
+     * @param nIdAnnounce
+     *            announce id
+     * @param nIdTask
+     *            the key of the action to do
+     * @param plugin
+     *            the plugin
+     */
+    public void addIndexerAction( int nIdAnnounce, int nIdTask, Plugin plugin )
+    {
+        IndexerAction indexerAction = new IndexerAction( );
+        indexerAction.setIdAnnounce( nIdAnnounce );
+        indexerAction.setIdTask( nIdTask );
+        IndexerActionHome.create( indexerAction );
+
+        if ( _indexingPipeline != null )
+        {
+            _indexingPipeline.notifyChange( nIdAnnounce, nIdTask );
+        }
+    }
+
+    /**
+     * Apply indexer actions to the index and refresh the searchers so that the changes are visible, without committing them. The actions are not removed :
+     * they are committed by the next incremental indexing
+     * 
+     * @param listActions
+     *            The indexer actions, in the order they were created
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    public void applyIndexerActions( List<IndexerAction> listActions ) throws IOException
+    {
+        synchronized( _lockIndexing )
+        {
+            IAnnounceIndexWriters indexWriters = getIndexWriters( );
+
+            for ( IndexWriter writer : indexWriters.getIndexWriters( ) )
+            {
+                // The index is built by the first indexing, which also reads the new announces
+                if ( !DirectoryReader.indexExists( writer.getDirectory( ) ) )
+                {
+                    return;
+                }
+            }
+
+            _indexer.processIndexerActions( indexWriters, listActions, new StringBuffer( ) );
+            refreshSearcher( );
+            processIndexedAnnounces( listActions );
+        }
+    }
+
+    /**
+     * Update the data derived from the index with the announces changed by indexer actions, once the searchers see the changes
+     * 
+     * @param listActions
+     *            The indexer actions applied to the index
+     */
+    private void processIndexedAnnounces( List<IndexerAction> listActions )
+    {
+        if ( listActions.isEmpty( ) )
+        {
+            return;
+        }
+
+        Set<Integer> setIdAnnounces = new HashSet<>( );
+
+        for ( IndexerAction action : listActions )
+        {
+            setIdAnnounces.add( action.getIdAnnounce( ) );
+        }
+
+        updateSuggestions( setIdAnnounces );
+    }
+
+    /**
+     * Update the suggestions with changed announces. Errors are logged and the suggestions are discarded, so that they are built again from the index by the
+     * next lookup
+     * 
+     * @param setIdAnnounces
+     *            The ids of the changed announces
+     */
+    private void updateSuggestions( Set<Integer> setIdAnnounces )
+    {
+        if ( _suggester == null )
+        {
+            return;
+        }
+
+        try
+        {
+            if ( REFRESH_POLICY_ASYNC.equals( _strSearcherRefreshPolicy ) )
+            {
+                // The new state of the announces is read from the searchers, which may not have been refreshed by an asynchronous refresh
+                for ( AnnounceIndexShard shard : getShards( ) )
+                {
+                    shard.refreshSearcher( true );
+                }
+            }
+
+            _suggester.update( setIdAnnounces );
+        }
+        catch( Exception e )
+        {
+            AppLogService.error( "Unable to update announce suggestions : " + e.getMessage( ), e );
+            _suggester.invalidate( );
+        }
+    }
+
+    /**
+     * Remove a Indexer Action
+     * 
+     * @param nIdAction
+     *            the key of the action to remove
+     * @param plugin
+     *            the plugin
+     */
+    public void removeIndexerAction( int nIdAction, Plugin plugin )
+    {
+        IndexerActionHome.remove( nIdAction );
+    }
+
+    /**
+     * return a list of IndexerAction by task key
+     * 
+     * @param nIdTask
+     *            the task key
+     * @param plugin
+     *            the plugin
+     * @return a list of IndexerAction
+     */
+    public List<IndexerAction> getAllIndexerActionByTask( int nIdTask, Plugin plugin )
+    {
+        IndexerActionFilter filter = new IndexerActionFilter( );
+        filter.setIdTask( nIdTask );
+
+        return IndexerActionHome.getList( filter );
+    }
+
+    /**
+     * return the list of the IndexerAction claimed by the indexing in progress, in the order they were created. Claimed actions are removed once the changes
+     * of the indexing have been committed
+     * 
+     * @param plugin
+     *            the plugin
+     * @return List of IndexerAction
+     */
+    public List<IndexerAction> getClaimedIndexerActions( Plugin plugin )
+    {
+        IndexerActionFilter filter = new IndexerActionFilter( );
+        filter.setMaxIdAction( _nClaimedIdAction );
+
+        return IndexerActionHome.getList( filter );
+    }
+
+    /**
+     * Get the path to the index of the search service
+     * 
+     * @return The path to the index of the search service
+     */
+    private String getIndex( )
+    {
+        if ( _strIndex == null )
+        {
+            _strIndex = AppPathService.getPath( PATH_INDEX );
+        }
+
+        return _strIndex;
+    }
+
+    /**
+     * Get the analyzed of this search service
+     * 
+     * @return The analyzer of this search service
+     */
+    public Analyzer getAnalyzer( )
+    {
+        return _analyzer;
+    }
+
+    /**
+     * Get the builder of the queries of this search service
+     * 
+     * @return The query builder
+     */
+    public AnnounceQueryBuilder getQueryBuilder( )
+    {
+        return _queryBuilder;
+    }
+
+    /**
+     * Format a price for the indexer
+     * 
+     * @param dPrice
+     *            The price to format
+     * @return The formated price
+     */
+    public static String formatPriceForIndexer( double dPrice )
+    {
+        NumberFormat formatter = new DecimalFormat( getPriceFormat( ) );
+
+        return formatter.format( dPrice );
+    }
+
+    /**
+     * Format a numerous string
+     * 
+     * @param strPrice
+     *            The price
+     * @return The formated price
+     */
+    public static String getFormatedPriceString( String strPrice )
+    {
+        return strPrice.replace( CONSTANT_BLANK_SPACE, StringUtils.EMPTY ).replace( CONSTANT_COMA, CONSTANT_POINT ).replace( CONSTANT_EURO, StringUtils.EMPTY )
+                .trim( );
+    }
+
+    /**
+     * Format a price for the indexer
+     * 
+     * @param nPrice
+     *            The price to format
+     * @return The formated price
+     */
+    public static String formatPriceForIndexer( int nPrice )
+    {
+        NumberFormat formatter = new DecimalFormat( getPriceFormat( ) );
+
+        return formatter.format( nPrice );
+    }
+
+    /**
+     * Get the price format to use
+     * 
+     * @return the price format to use
+     */
+    private static String getPriceFormat( )
     {
         if ( _strPriceFormat == null )
         {
@@ -430,35 +1936,94 @@ public final class AnnounceSearchService
         return _strPriceFormat;
     }
 
-    private synchronized IndexWriter getIndexWriterInstance( boolean bCreateIndex ) throws IOException
+    /**
+     * Get the configuration of the writers of the index
+     * 
+     * @param openMode
+     *            The open mode of the writer
+     * @return The configuration
+     */
+    IndexWriterConfig getIndexWriterConfig( OpenMode openMode )
+    {
+        IndexWriterConfig conf = new IndexWriterConfig( new LimitTokenCountAnalyzer( _analyzer, _nWriterMaxSectorLength ) );
+        conf.setMergePolicy( getMergePolicy( ) );
+        conf.setRAMBufferSizeMB( _dWriterRamBufferSizeMB );
+        conf.setOpenMode( openMode );
+
+        return conf;
+    }
+
+    /**
+     * Get the merge policy of the writers of the index. The log policy merges segments of similar document counts, the tiered policy merges segments of
+     * similar sizes and favors merges that reclaim deleted documents
+     * 
+     * @return The merge policy
+     */
+    private MergePolicy getMergePolicy( )
     {
-        if ( _indexWriterInstance == null )
+        if ( MERGE_POLICY_TIERED.equals( _strWriterMergePolicy ) )
         {
-            Directory dir = FSDirectory.open(Paths.get( getIndex( ) ) );
-            IndexWriterConfig conf = new IndexWriterConfig( new LimitTokenCountAnalyzer( _analyzer, _nWriterMaxSectorLength ) );
-            LogMergePolicy mergePolicy = new LogDocMergePolicy( );
-            mergePolicy.setMergeFactor( _nWriterMergeFactor );
-            conf.setMergePolicy(mergePolicy);
-            if (bCreateIndex)
+            TieredMergePolicy mergePolicy = new TieredMergePolicy( );
+            mergePolicy.setMaxMergeAtOnce( _nWriterMergeFactor );
+            mergePolicy.setSegmentsPerTier( _nWriterMergeFactor );
+            mergePolicy.setForceMergeDeletesPctAllowed( _nOptimizeMinDeletedRatio );
+
+            if ( _dWriterMaxMergedSegmentMB > 0 )
             {
-                conf.setOpenMode( OpenMode.CREATE );
+                mergePolicy.setMaxMergedSegmentMB( _dWriterMaxMergedSegmentMB );
             }
-            else
+
+            if ( _dWriterFloorSegmentMB > 0 )
             {
-                conf.setOpenMode( OpenMode.APPEND );
+                mergePolicy.setFloorSegmentMB( _dWriterFloorSegmentMB );
             }
 
-            _indexWriterInstance = new IndexWriter( dir, conf );
+            return mergePolicy;
+        }
+
+        if ( !MERGE_POLICY_LOG.equals( _strWriterMergePolicy ) )
+        {
+            AppLogService.error( "Unknown announce index merge policy " + _strWriterMergePolicy + ", the log merge policy is used" );
         }
-        return _indexWriterInstance;
+
+        LogMergePolicy mergePolicy = new LogDocMergePolicy( );
+        mergePolicy.setMergeFactor( _nWriterMergeFactor );
+        mergePolicy.setMaxMergeDocs( _nWriterMaxMergeDocs );
+
+        return mergePolicy;
     }
 
-    private synchronized void closeIndexWriterInstance( ) throws IOException
+    /**
+     * Reader of the live indexes of every shard
+     */
+    private static final class ShardsReader extends MultiReader
     {
-        if ( _indexWriterInstance != null )
+        private final String _strVersion;
+
+        /**
+         * Creates a new reader
+         * 
+         * @param readers
+         *            The readers of the shards. The reader holds a reference on each of them until it is closed
+         * @param strVersion
+         *            The version of the state of the shards
+         * @throws IOException
+         *             If an IO error occurred
+         */
+        ShardsReader( IndexReader [ ] readers, String strVersion ) throws IOException
+        {
+            super( readers, false );
+            _strVersion = strVersion;
+        }
+
+        /**
+         * Get the version of the state of the shards this reader was opened on
+         * 
+         * @return The version
+         */
+        String getVersion( )
         {
-            _indexWriterInstance.close( );
-            _indexWriterInstance = null;
+            return _strVersion;
         }
     }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherFactory;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Factory of the searchers of a shard. The first searcher of a live index, on startup or after a rebuild, runs the warming queries before it is published,
+ * so that the first searches do not pay the loading of its data structures. Reopened searchers share most of their segments with the previous searcher
+ * and are not warmed, so that incremental updates stay cheap
+ */
+class AnnounceSearcherFactory extends SearcherFactory
+{
+    private final int _nIdSector;
+
+    /**
+     * Creates a new factory
+     * 
+     * @param nIdSector
+     *            The id of the sector of the announces of the shard, or 0 if the shard holds every announce
+     */
+    AnnounceSearcherFactory( int nIdSector )
+    {
+        _nIdSector = nIdSector;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IndexSearcher newSearcher( IndexReader reader, IndexReader previousReader ) throws IOException
+    {
+        IndexSearcher searcher = super.newSearcher( reader, previousReader );
+
+        if ( previousReader != null )
+        {
+            return searcher;
+        }
+
+        try
+        {
+            AnnounceSearchService.getInstance( ).warmSearcher( searcher, _nIdSector );
+        }
+        catch( IOException | RuntimeException e )
+        {
+            // A failed warming only makes the first searches slower
+            AppLogService.error( "Unable to warm the announce searcher : " + e.getMessage( ), e );
+        }
+
+        return searcher;
+    }
+}
@@ -0,0 +1,535 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+
+import fr.paris.lutece.portal.service.search.SearchItem;
+
+/**
+ * Type-ahead suggestions of the titles and tags of the announces of the index. Suggestions are held in memory by an infix suggester, which is built from
+ * the live index on the first lookup and then updated by the indexer with the announces it changes, so that lookups never read the index. Each suggestion
+ * is weighted by the number of announces it is found in
+ */
+public class AnnounceSuggester
+{
+    private static final Set<String> FIELDS_TO_LOAD = new HashSet<>( Arrays.asList( AnnounceSearchItem.FIELD_ID_ANNOUNCE, SearchItem.FIELD_TITLE,
+            AnnounceSearchItem.FIELD_TAGS ) );
+
+    private final int _nMinPrefixChars;
+    private final Map<Integer, Set<String>> _mapAnnounceKeys = new HashMap<>( );
+    private final Map<String, Suggestion> _mapSuggestions = new HashMap<>( );
+    private volatile InfixSuggester _suggester;
+
+    /**
+     * Creates a new suggester
+     * 
+     * @param nMinPrefixChars
+     *            The minimum number of characters of the prefixes indexed for the last word of the keywords. Shorter prefixes are looked up with a slower
+     *            prefix query
+     */
+    public AnnounceSuggester( int nMinPrefixChars )
+    {
+        _nMinPrefixChars = nMinPrefixChars;
+    }
+
+    /**
+     * Get the suggestions completing some keywords. Every word of the keywords must be found in a suggestion, the last one being a prefix
+     * 
+     * @param strKeywords
+     *            The keywords
+     * @param nMaxResults
+     *            The maximum number of suggestions
+     * @return The suggestions, the most frequent first
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    public List<String> lookup( String strKeywords, int nMaxResults ) throws IOException
+    {
+        InfixSuggester suggester = acquire( );
+        List<String> listSuggestions = new ArrayList<>( );
+
+        try
+        {
+            for ( LookupResult result : suggester.lookup( strKeywords, false, nMaxResults ) )
+            {
+                listSuggestions.add( result.key.toString( ) );
+            }
+        }
+        finally
+        {
+            suggester.decRef( );
+        }
+
+        return listSuggestions;
+    }
+
+    /**
+     * Get the current suggester for a lookup, building it if needed. The suggester must be released with {@link InfixSuggester#decRef()}
+     * 
+     * @return The suggester
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    private InfixSuggester acquire( ) throws IOException
+    {
+        while ( true )
+        {
+            InfixSuggester suggester = _suggester;
+
+            if ( suggester == null )
+            {
+                suggester = load( );
+            }
+
+            if ( suggester.tryIncRef( ) )
+            {
+                return suggester;
+            }
+
+            // The suggester has been discarded and closed in the meantime : the next one is used
+        }
+    }
+
+    /**
+     * Update the suggestions with the current state of some announces in the index. Nothing is done if the suggestions have not been built yet : they are
+     * built with the current state of the index by the next lookup
+     * 
+     * @param collectionIdAnnounces
+     *            The ids of the announces that have been indexed or removed from the index
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    public synchronized void update( Collection<Integer> collectionIdAnnounces ) throws IOException
+    {
+        InfixSuggester suggester = _suggester;
+
+        if ( suggester == null )
+        {
+            return;
+        }
+
+        Set<String> setChangedKeys = new HashSet<>( );
+
+        for ( Integer nIdAnnounce : collectionIdAnnounces )
+        {
+            removeAnnounce( nIdAnnounce, setChangedKeys );
+        }
+
+        AnnounceSearchService service = AnnounceSearchService.getInstance( );
+        IndexSearcher searcher = service.acquireSearcher( );
+
+        try
+        {
+            for ( Integer nIdAnnounce : collectionIdAnnounces )
+            {
+                TopDocs topDocs = searcher.search( new TermQuery( new Term( AnnounceSearchItem.FIELD_ID_ANNOUNCE, nIdAnnounce.toString( ) ) ), 1 );
+
+                // Announces that are no longer published have been removed from the index
+                if ( topDocs.scoreDocs.length > 0 )
+                {
+                    addAnnounce( nIdAnnounce, searcher.doc( topDocs.scoreDocs [0].doc, FIELDS_TO_LOAD ), setChangedKeys );
+                }
+            }
+        }
+        finally
+        {
+            service.releaseSearcher( searcher );
+        }
+
+        for ( String strKey : setChangedKeys )
+        {
+            Suggestion suggestion = _mapSuggestions.get( strKey );
+
+            if ( suggestion._nCount == 0 )
+            {
+                _mapSuggestions.remove( strKey );
+                suggester.delete( suggestion._strText );
+            }
+            else
+            {
+                suggester.update( new BytesRef( suggestion._strText ), null, suggestion._nCount, null );
+            }
+        }
+
+        suggester.refresh( );
+    }
+
+    /**
+     * Discard the suggestions. They are built again from the live index by the next lookup
+     */
+    public synchronized void invalidate( )
+    {
+        InfixSuggester suggester = _suggester;
+        _suggester = null;
+        _mapAnnounceKeys.clear( );
+        _mapSuggestions.clear( );
+
+        if ( suggester != null )
+        {
+            // The previous suggester is closed once the lookups in progress have released it
+            suggester.decRef( );
+        }
+    }
+
+    /**
+     * Build the suggestions from the live index, unless another thread built them first
+     * 
+     * @return The suggester
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    private synchronized InfixSuggester load( ) throws IOException
+    {
+        if ( _suggester != null )
+        {
+            return _suggester;
+        }
+
+        _mapAnnounceKeys.clear( );
+        _mapSuggestions.clear( );
+
+        Set<String> setKeys = new HashSet<>( );
+        AnnounceSearchService service = AnnounceSearchService.getInstance( );
+        IndexSearcher searcher = service.acquireSearcher( );
+
+        try
+        {
+            for ( LeafReaderContext context : searcher.getIndexReader( ).leaves( ) )
+            {
+                LeafReader reader = context.reader( );
+                Bits liveDocs = reader.getLiveDocs( );
+
+                for ( int nDoc = 0; nDoc < reader.maxDoc( ); nDoc++ )
+                {
+                    if ( ( liveDocs == null ) || liveDocs.get( nDoc ) )
+                    {
+                        Document document = reader.document( nDoc, FIELDS_TO_LOAD );
+                        addAnnounce( NumberUtils.toInt( document.get( AnnounceSearchItem.FIELD_ID_ANNOUNCE ) ), document, setKeys );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            service.releaseSearcher( searcher );
+        }
+
+        InfixSuggester suggester = new InfixSuggester( _nMinPrefixChars );
+        suggester.build( new SuggestionIterator( _mapSuggestions.values( ).iterator( ) ) );
+        _suggester = suggester;
+
+        return suggester;
+    }
+
+    /**
+     * Count the title and the tags of an indexed announce
+     * 
+     * @param nIdAnnounce
+     *            The id of the announce
+     * @param document
+     *            The document of the announce
+     * @param setChangedKeys
+     *            The set to add the keys of the changed suggestions to
+     */
+    private void addAnnounce( int nIdAnnounce, Document document, Set<String> setChangedKeys )
+    {
+        Set<String> setKeys = new HashSet<>( );
+        addText( document.get( SearchItem.FIELD_TITLE ), setKeys, setChangedKeys );
+
+        for ( String strTag : StringUtils.split( StringUtils.lowerCase( StringUtils.defaultString( document.get( AnnounceSearchItem.FIELD_TAGS ) ) ),
+                DefaultAnnounceIndexer.TAGS_SEPARATORS ) )
+        {
+            addText( strTag, setKeys, setChangedKeys );
+        }
+
+        _mapAnnounceKeys.put( nIdAnnounce, setKeys );
+    }
+
+    /**
+     * Count a text of an announce
+     * 
+     * @param strText
+     *            The text
+     * @param setKeys
+     *            The keys of the texts of the announce, so that a text found twice in an announce is counted once
+     * @param setChangedKeys
+     *            The set to add the key of the suggestion to
+     */
+    private void addText( String strText, Set<String> setKeys, Set<String> setChangedKeys )
+    {
+        String strSuggestion = StringUtils.normalizeSpace( strText );
+
+        if ( StringUtils.isEmpty( strSuggestion ) )
+        {
+            return;
+        }
+
+        String strKey = strSuggestion.toLowerCase( );
+
+        if ( setKeys.add( strKey ) )
+        {
+            _mapSuggestions.computeIfAbsent( strKey, key -> new Suggestion( strSuggestion ) )._nCount++;
+            setChangedKeys.add( strKey );
+        }
+    }
+
+    /**
+     * Remove the counts of the title and the tags of an announce
+     * 
+     * @param nIdAnnounce
+     *            The id of the announce
+     * @param setChangedKeys
+     *            The set to add the keys of the changed suggestions to
+     */
+    private void removeAnnounce( int nIdAnnounce, Set<String> setChangedKeys )
+    {
+        Set<String> setKeys = _mapAnnounceKeys.remove( nIdAnnounce );
+
+        if ( setKeys != null )
+        {
+            for ( String strKey : setKeys )
+            {
+                // Suggestions that are no longer counted are removed once the new state of the announces has been counted
+                _mapSuggestions.get( strKey )._nCount--;
+                setChangedKeys.add( strKey );
+            }
+        }
+    }
+
+    /**
+     * A suggestion and the number of announces it is found in
+     */
+    private static final class Suggestion
+    {
+        private final String _strText;
+        private int _nCount;
+
+        /**
+         * Creates a new suggestion
+         * 
+         * @param strText
+         *            The text of the suggestion
+         */
+        Suggestion( String strText )
+        {
+            _strText = strText;
+        }
+    }
+
+    /**
+     * Iterator over the suggestions, used to build the suggester
+     */
+    private static final class SuggestionIterator implements InputIterator
+    {
+        private final Iterator<Suggestion> _iterator;
+        private Suggestion _current;
+
+        /**
+         * Creates a new iterator
+         * 
+         * @param iterator
+         *            The iterator over the suggestions
+         */
+        SuggestionIterator( Iterator<Suggestion> iterator )
+        {
+            _iterator = iterator;
+        }
+
+        @Override
+        public BytesRef next( )
+        {
+            if ( !_iterator.hasNext( ) )
+            {
+                return null;
+            }
+
+            _current = _iterator.next( );
+
+            return new BytesRef( _current._strText );
+        }
+
+        @Override
+        public long weight( )
+        {
+            return _current._nCount;
+        }
+
+        @Override
+        public BytesRef payload( )
+        {
+            return null;
+        }
+
+        @Override
+        public boolean hasPayloads( )
+        {
+            return false;
+        }
+
+        @Override
+        public Set<BytesRef> contexts( )
+        {
+            return null;
+        }
+
+        @Override
+        public boolean hasContexts( )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Infix suggester held in memory, which can remove suggestions
+     */
+    private static final class InfixSuggester extends AnalyzingInfixSuggester
+    {
+        // The suggester is referenced by the announce suggester until it is discarded, and by every lookup in progress
+        private final AtomicInteger _nRefCount = new AtomicInteger( 1 );
+
+        /**
+         * Creates a new suggester
+         * 
+         * @param nMinPrefixChars
+         *            The minimum number of characters of the indexed prefixes
+         * @throws IOException
+         *             If an IO error occurred
+         */
+        InfixSuggester( int nMinPrefixChars ) throws IOException
+        {
+            // The writer is kept open after the build so that suggestions can be updated
+            super( new ByteBuffersDirectory( ), new SuggestAnalyzer( ), new SuggestAnalyzer( ), nMinPrefixChars, false, true, false, false );
+        }
+
+        /**
+         * Remove a suggestion. The removal is visible after the next refresh
+         * 
+         * @param strText
+         *            The text of the suggestion
+         * @throws IOException
+         *             If an IO error occurred
+         */
+        void delete( String strText ) throws IOException
+        {
+            if ( writer != null )
+            {
+                writer.deleteDocuments( new Term( EXACT_TEXT_FIELD_NAME, strText ) );
+            }
+        }
+
+        /**
+         * Reference the suggester, unless it has already been closed
+         * 
+         * @return true if the suggester has been referenced, false if it has been closed
+         */
+        boolean tryIncRef( )
+        {
+            int nRefCount;
+
+            do
+            {
+                nRefCount = _nRefCount.get( );
+
+                if ( nRefCount <= 0 )
+                {
+                    return false;
+                }
+            }
+            while ( !_nRefCount.compareAndSet( nRefCount, nRefCount + 1 ) );
+
+            return true;
+        }
+
+        /**
+         * Release a reference to the suggester. The suggester, with its writer, its searchers and its in-memory directory, is closed when the last reference
+         * is released
+         */
+        void decRef( )
+        {
+            if ( _nRefCount.decrementAndGet( ) == 0 )
+            {
+                IOUtils.closeWhileHandlingException( this );
+            }
+        }
+    }
+
+    /**
+     * Analyzer of the suggestions. Words are not stemmed, so that the prefix typed by users matches the words of the suggestions
+     */
+    private static final class SuggestAnalyzer extends Analyzer
+    {
+        @Override
+        protected TokenStreamComponents createComponents( String strFieldName )
+        {
+            Tokenizer source = new StandardTokenizer( );
+            TokenStream result = new ASCIIFoldingFilter( new LowerCaseFilter( source ) );
+
+            return new TokenStreamComponents( source, result );
+        }
+    }
+}
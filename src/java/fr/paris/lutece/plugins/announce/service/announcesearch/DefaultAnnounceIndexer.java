@@ -33,34 +33,43 @@
  */
 package fr.paris.lutece.plugins.announce.service.announcesearch;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LatLonDocValuesField;
+import org.apache.lucene.document.LatLonPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
-import org.apache.tika.exception.TikaException;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.ParseContext;
-import org.apache.tika.parser.html.HtmlParser;
-import org.apache.tika.sax.BodyContentHandler;
-import org.xml.sax.ContentHandler;
-import org.xml.sax.SAXException;
+import org.apache.lucene.util.BytesRef;
 
 import fr.paris.lutece.plugins.announce.business.Announce;
 import fr.paris.lutece.plugins.announce.business.AnnounceHome;
+import fr.paris.lutece.plugins.announce.business.AnnounceResponse;
 import fr.paris.lutece.plugins.announce.business.AnnounceSort;
 import fr.paris.lutece.plugins.announce.business.IndexerAction;
 import fr.paris.lutece.plugins.announce.service.AnnouncePlugin;
@@ -73,6 +82,7 @@ import fr.paris.lutece.portal.service.plugin.PluginService;
 import fr.paris.lutece.portal.service.search.IndexationService;
 import fr.paris.lutece.portal.service.search.SearchItem;
 import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppLogService;
 import fr.paris.lutece.portal.service.util.AppPathService;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
 import fr.paris.lutece.util.url.UrlItem;
@@ -88,7 +98,19 @@ public class DefaultAnnounceIndexer implements IAnnounceSearchIndexer
     private static final String PROPERTY_INDEXER_DESCRIPTION = "announce.indexer.description";
     private static final String PROPERTY_INDEXER_VERSION = "announce.indexer.version";
     private static final String PROPERTY_INDEXER_ENABLE = "announce.indexer.enable";
+    private static final String PROPERTY_INDEXER_THREADS = "announce.indexer.full.threads";
+    private static final String PROPERTY_INDEXER_CHUNK_SIZE = "announce.indexer.full.chunkSize";
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final int ALL_SECTORS = 0;
     private static final String BLANK_SPACE = " ";
+    private static final int SORT_DESCRIPTION_LENGTH = 100;
+    static final String TAGS_SEPARATORS = " ,;";
+    private static final int DESCRIPTION_EXCERPT_LENGTH = 300;
+    private static final String ENTRY_TYPE_GEOLOCATION = "announce.entryTypeGeolocation";
+    private static final String FIELD_GEOLOCATION_LATITUDE = "X";
+    private static final String FIELD_GEOLOCATION_LONGITUDE = "Y";
+    private static final double MAX_LATITUDE = 90d;
+    private static final double MAX_LONGITUDE = 180d;
 
     /**
      * {@inheritDoc}
@@ -100,10 +122,11 @@ public class DefaultAnnounceIndexer implements IAnnounceSearchIndexer
     }
 
     /**
-     * Index given list of record
+     * Index given list of record. Documents of the announces replace their previous version in the index of their sector, and are deleted from the others
+     * in case the category of the announce was moved. Documents of announces that do not exist anymore are deleted
      * 
-     * @param indexWriter
-     *            the indexWriter
+     * @param indexWriters
+     *            the index writers
      * @param listIdAnounce
      *            The list of id announce
      * @param plugin
@@ -111,105 +134,362 @@ public class DefaultAnnounceIndexer implements IAnnounceSearchIndexer
      * @throws IOException
      *             If an IO Exception occurred
      */
-    private void indexListAnnounce( IndexWriter indexWriter, List<Integer> listIdAnounce, Plugin plugin ) throws IOException
+    private void indexListAnnounce( IAnnounceIndexWriters indexWriters, List<Integer> listIdAnounce, Plugin plugin ) throws IOException
     {
         String strPortalUrl = AppPathService.getPortalUrl( );
-        Iterator<Integer> it = listIdAnounce.iterator( );
+        Set<Integer> setIdRemovedAnnounces = new HashSet<>( listIdAnounce );
 
-        while ( it.hasNext( ) )
+        for ( Announce announce : findListAnnounceWithResponses( listIdAnounce ) )
         {
-            Integer nAnnounceId = it.next( );
-            Announce announce = AnnounceHome.findByPrimaryKey( nAnnounceId );
-            
-            List<Response> listResponses = AnnounceHome.findListResponse( nAnnounceId, false );
-            announce.setListResponse(listResponses);
+            setIdRemovedAnnounces.remove( announce.getId( ) );
 
-            UrlItem urlAnnounce = new UrlItem( strPortalUrl );
-            urlAnnounce.addParameter( XPageAppService.PARAM_XPAGE_APP, AppPropertiesService.getProperty( AnnounceUtils.PARAMETER_PAGE_ANNOUNCE ) ); // FIXME
-            urlAnnounce.addParameter( PARAMETER_ANNOUNCE_ID, announce.getId( ) );
+            Term termId = getIdTerm( announce.getId( ) );
+            IndexWriter indexWriter = indexWriters.getIndexWriter( announce.getCategory( ).getIdSector( ) );
+            indexWriter.updateDocument( termId, getDocument( announce, getAnnounceUrl( strPortalUrl, announce ), plugin ) );
 
-            indexWriter.addDocument( getDocument( announce, urlAnnounce.getUrl( ), plugin ) );
+            for ( IndexWriter otherIndexWriter : indexWriters.getIndexWriters( ) )
+            {
+                if ( otherIndexWriter != indexWriter )
+                {
+                    otherIndexWriter.deleteDocuments( termId );
+                }
+            }
+        }
+
+        for ( Integer nIdAnnounce : setIdRemovedAnnounces )
+        {
+            deleteDocuments( indexWriters, nIdAnnounce );
         }
     }
 
     /**
-     * {@inheritDoc}
+     * Delete the document of an announce from every index writer
+     * 
+     * @param indexWriters
+     *            the index writers
+     * @param nIdAnnounce
+     *            The id of the announce
+     * @throws IOException
+     *             If an IO Exception occurred
      */
-    @Override
-    public synchronized void processIndexing( IndexWriter indexWriter, boolean bCreate, StringBuffer sbLogs )
-            throws IOException, InterruptedException, SiteMessageException
+    private static void deleteDocuments( IAnnounceIndexWriters indexWriters, int nIdAnnounce ) throws IOException
     {
-        Plugin plugin = PluginService.getPlugin( AnnouncePlugin.PLUGIN_NAME );
-        List<Integer> listIdAnnounce = new ArrayList<>( );
+        for ( IndexWriter indexWriter : indexWriters.getIndexWriters( ) )
+        {
+            indexWriter.deleteDocuments( getIdTerm( nIdAnnounce ) );
+        }
+    }
 
-        if ( !bCreate )
+    /**
+     * Coalesce the indexer actions of each announce into the one operation giving the same final index. A deletion following other actions of an announce
+     * replaces them : it is always applied, since a creation action is also created when an announce that is already indexed is published or enabled
+     * again. Any other sequence of actions updates the document of the announce once
+     * 
+     * @param listActions
+     *            The indexer actions, in the order they were created
+     * @return The task to perform for each announce, by id of announce
+     */
+    static Map<Integer, Integer> coalesceIndexerActions( List<IndexerAction> listActions )
+    {
+        Map<Integer, Integer> mapFirstTasks = new HashMap<>( );
+        Map<Integer, Integer> mapTasks = new LinkedHashMap<>( );
+
+        for ( IndexerAction action : listActions )
         {
-            // incremental indexing
-            // delete all record which must be deleted
-            for ( IndexerAction action : AnnounceSearchService.getInstance( ).getAllIndexerActionByTask( IndexerAction.TASK_DELETE, plugin ) )
+            mapFirstTasks.putIfAbsent( action.getIdAnnounce( ), action.getIdTask( ) );
+            mapTasks.put( action.getIdAnnounce( ), action.getIdTask( ) );
+        }
+
+        for ( Map.Entry<Integer, Integer> entry : mapTasks.entrySet( ) )
+        {
+            if ( entry.getValue( ) != IndexerAction.TASK_DELETE )
             {
-                sbLogAnnounce( sbLogs, action.getIdAnnounce( ), IndexerAction.TASK_DELETE );
+                boolean bCreated = mapFirstTasks.get( entry.getKey( ) ) == IndexerAction.TASK_CREATE;
+                entry.setValue( bCreated ? IndexerAction.TASK_CREATE : IndexerAction.TASK_MODIFY );
+            }
+        }
 
-                Term term = new Term( AnnounceSearchItem.FIELD_ID_ANNOUNCE, Integer.toString( action.getIdAnnounce( ) ) );
-                Term [ ] terms = {
-                        term
-                };
+        return mapTasks;
+    }
 
-                indexWriter.deleteDocuments( terms );
-                AnnounceSearchService.getInstance( ).removeIndexerAction( action.getIdAction( ), plugin );
-            }
+    /**
+     * Get the term identifying the document of an announce
+     * 
+     * @param nIdAnnounce
+     *            The id of the announce
+     * @return The term
+     */
+    private static Term getIdTerm( int nIdAnnounce )
+    {
+        return new Term( AnnounceSearchItem.FIELD_ID_ANNOUNCE, Integer.toString( nIdAnnounce ) );
+    }
 
-            // Update all record which must be updated
-            for ( IndexerAction action : AnnounceSearchService.getInstance( ).getAllIndexerActionByTask( IndexerAction.TASK_MODIFY, plugin ) )
-            {
-                sbLogAnnounce( sbLogs, action.getIdAnnounce( ), IndexerAction.TASK_MODIFY );
+    /**
+     * Get the url of the page of an announce
+     * 
+     * @param strPortalUrl
+     *            The url of the portal
+     * @param announce
+     *            The announce
+     * @return The url of the page of the announce
+     */
+    private static String getAnnounceUrl( String strPortalUrl, Announce announce )
+    {
+        UrlItem urlAnnounce = new UrlItem( strPortalUrl );
+        urlAnnounce.addParameter( XPageAppService.PARAM_XPAGE_APP, AppPropertiesService.getProperty( AnnounceUtils.PARAMETER_PAGE_ANNOUNCE ) ); // FIXME
+        urlAnnounce.addParameter( PARAMETER_ANNOUNCE_ID, announce.getId( ) );
 
-                Term term = new Term( AnnounceSearchItem.FIELD_ID_ANNOUNCE, Integer.toString( action.getIdAnnounce( ) ) );
-                Term [ ] terms = {
-                        term
-                };
+        return urlAnnounce.getUrl( );
+    }
 
-                indexWriter.deleteDocuments( terms );
+    /**
+     * Load a list of announces with their responses. Announces and responses are loaded in bulk rather than one by one. Announces that have been removed
+     * since their id was read are ignored
+     * 
+     * @param listIdAnounce
+     *            The list of id announce
+     * @return The list of announces
+     */
+    private static List<Announce> findListAnnounceWithResponses( List<Integer> listIdAnounce )
+    {
+        List<Announce> listAnnounces = AnnounceHome.findByListId( listIdAnounce, AnnounceSort.DEFAULT_SORT );
+        Map<Integer, List<Response>> mapResponses = AnnounceHome.findListResponseByAnnounce( listIdAnounce );
 
-                listIdAnnounce.add( action.getIdAnnounce( ) );
+        for ( Announce announce : listAnnounces )
+        {
+            List<Response> listResponses = mapResponses.get( announce.getId( ) );
+            announce.setListResponse( ( listResponses != null ) ? listResponses : new ArrayList<>( ) );
+        }
 
-                AnnounceSearchService.getInstance( ).removeIndexerAction( action.getIdAction( ), plugin );
-            }
+        return listAnnounces;
+    }
 
-            this.indexListAnnounce( indexWriter, listIdAnnounce, plugin );
+    /**
+     * Index every published announce on a pool of threads. Announces are read chunk by chunk in the order of their ids, and each chunk is committed with
+     * its last id as checkpoint, so that an interrupted indexing resumes after the last committed chunk
+     * 
+     * @param indexWriter
+     *            the indexWriter
+     * @param nIdSector
+     *            The id of the sector of the announces to index, or {@link #ALL_SECTORS} to index the announces of every sector
+     * @param plugin
+     *            the plugin
+     * @param sbLogs
+     *            the buffer logger
+     * @throws IOException
+     *             If an IO Exception occurred
+     * @throws InterruptedException
+     *             If the indexing thread was interrupted
+     */
+    private void indexAllAnnounces( IndexWriter indexWriter, int nIdSector, Plugin plugin, StringBuffer sbLogs ) throws IOException, InterruptedException
+    {
+        String strPortalUrl = AppPathService.getPortalUrl( );
+        int nThreads = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_INDEXER_THREADS, Runtime.getRuntime( ).availableProcessors( ) ) );
+        int nChunkSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_INDEXER_CHUNK_SIZE, DEFAULT_CHUNK_SIZE ) );
+        int nLastIdAnnounce = AnnounceSearchService.getRebuildCheckpoint( indexWriter );
+        int nNbAnnounces = 0;
 
-            listIdAnnounce = new ArrayList<>( );
+        if ( nLastIdAnnounce > 0 )
+        {
+            sbLogs.append( "Resuming indexing after announce #" );
+            sbLogs.append( nLastIdAnnounce );
+            sbLogs.append( "\r\n" );
+        }
 
-            // add all record which must be added
-            for ( IndexerAction action : AnnounceSearchService.getInstance( ).getAllIndexerActionByTask( IndexerAction.TASK_CREATE, plugin ) )
+        ExecutorService executor = Executors.newFixedThreadPool( nThreads );
+        long lStart = System.currentTimeMillis( );
+
+        try
+        {
+            List<Integer> listIdAnnounce = findPublishedIdAfter( nIdSector, nLastIdAnnounce, nChunkSize );
+
+            while ( !listIdAnnounce.isEmpty( ) )
             {
-                sbLogAnnounce( sbLogs, action.getIdAnnounce( ), IndexerAction.TASK_CREATE );
-                listIdAnnounce.add( action.getIdAnnounce( ) );
+                indexListAnnounceConcurrently( executor, indexWriter, listIdAnnounce, strPortalUrl, plugin );
+
+                nLastIdAnnounce = listIdAnnounce.get( listIdAnnounce.size( ) - 1 );
+                nNbAnnounces += listIdAnnounce.size( );
+                AnnounceSearchService.commitRebuildCheckpoint( indexWriter, nLastIdAnnounce );
+
+                sbLogs.append( "Indexed announces up to #" );
+                sbLogs.append( nLastIdAnnounce );
+                sbLogs.append( "\r\n" );
 
-                AnnounceSearchService.getInstance( ).removeIndexerAction( action.getIdAction( ), plugin );
+                listIdAnnounce = findPublishedIdAfter( nIdSector, nLastIdAnnounce, nChunkSize );
             }
+        }
+        finally
+        {
+            executor.shutdownNow( );
+        }
 
-            this.indexListAnnounce( indexWriter, listIdAnnounce, plugin );
+        long lDuration = Math.max( 1L, System.currentTimeMillis( ) - lStart );
+        String strReport = "Indexed " + nNbAnnounces + " announces with " + nThreads + " threads in " + lDuration + " milliseconds ("
+                + ( ( nNbAnnounces * 1000L ) / lDuration ) + " documents/sec)";
+        sbLogs.append( strReport );
+        sbLogs.append( "\r\n" );
+        AppLogService.info( strReport );
+    }
+
+    /**
+     * Load the id of the published announces following a given announce
+     * 
+     * @param nIdSector
+     *            The id of the sector of the announces, or {@link #ALL_SECTORS} to load the announces of every sector
+     * @param nIdAnnounce
+     *            The id of the announce to start after, or 0 to start from the first announce
+     * @param nLimit
+     *            The maximum number of ids to load
+     * @return the list of id of the published announces following the given announce
+     */
+    private static List<Integer> findPublishedIdAfter( int nIdSector, int nIdAnnounce, int nLimit )
+    {
+        if ( nIdSector == ALL_SECTORS )
+        {
+            return AnnounceHome.findPublishedIdAfter( nIdAnnounce, nLimit );
         }
-        else
+
+        return AnnounceHome.findPublishedIdInSectorAfter( nIdSector, nIdAnnounce, nLimit );
+    }
+
+    /**
+     * Index given list of record on a pool of threads. Documents are built and added to the index writer concurrently
+     * 
+     * @param executor
+     *            the pool of threads
+     * @param indexWriter
+     *            the indexWriter
+     * @param listIdAnounce
+     *            The list of id announce
+     * @param strPortalUrl
+     *            The url of the portal
+     * @param plugin
+     *            the plugin
+     * @throws IOException
+     *             If an IO Exception occurred
+     * @throws InterruptedException
+     *             If the indexing thread was interrupted
+     */
+    private static void indexListAnnounceConcurrently( ExecutorService executor, IndexWriter indexWriter, List<Integer> listIdAnounce, String strPortalUrl,
+            Plugin plugin ) throws IOException, InterruptedException
+    {
+        List<Future<Void>> listFutures = new ArrayList<>( listIdAnounce.size( ) );
+
+        for ( Announce announce : findListAnnounceWithResponses( listIdAnounce ) )
         {
-            for ( Announce announce : AnnounceHome.findAllPublished( AnnounceSort.DEFAULT_SORT ) )
-            {
-                if ( !announce.getSuspended( ) && !announce.getSuspendedByUser( ) )
-                {
-                    sbLogs.append( "Indexing Announce" );
-                    sbLogs.append( "\r\n" );
+            listFutures.add( executor.submit( ( ) -> {
+                indexAnnounce( indexWriter, announce, strPortalUrl, plugin );
 
-                    sbLogAnnounce( sbLogs, announce.getId( ), IndexerAction.TASK_CREATE );
+                return null;
+            } ) );
+        }
 
-                    listIdAnnounce.add( announce.getId( ) );
-                }
+        for ( Future<Void> future : listFutures )
+        {
+            waitForIndexing( future );
+        }
+    }
+
+    /**
+     * Wait for the indexing of an announce to complete
+     * 
+     * @param future
+     *            The indexing task of the announce
+     * @throws IOException
+     *             If an IO Exception occurred while indexing the announce
+     * @throws InterruptedException
+     *             If the indexing thread was interrupted
+     */
+    private static void waitForIndexing( Future<Void> future ) throws IOException, InterruptedException
+    {
+        try
+        {
+            future.get( );
+        }
+        catch( ExecutionException e )
+        {
+            if ( e.getCause( ) instanceof IOException )
+            {
+                throw (IOException) e.getCause( );
             }
 
-            this.indexListAnnounce( indexWriter, listIdAnnounce, plugin );
+            throw new AppException( "Error during announce indexing : " + e.getCause( ).getMessage( ), e.getCause( ) );
+        }
+    }
+
+    /**
+     * Build the document of an announce and add it to the index writer
+     * 
+     * @param indexWriter
+     *            the indexWriter
+     * @param announce
+     *            The announce, with its responses
+     * @param strPortalUrl
+     *            The url of the portal
+     * @param plugin
+     *            the plugin
+     * @throws IOException
+     *             If an IO Exception occurred
+     */
+    private static void indexAnnounce( IndexWriter indexWriter, Announce announce, String strPortalUrl, Plugin plugin ) throws IOException
+    {
+        indexWriter.addDocument( getDocument( announce, getAnnounceUrl( strPortalUrl, announce ), plugin ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void processIndexing( IndexWriter indexWriter, boolean bCreate, StringBuffer sbLogs )
+            throws IOException, InterruptedException, SiteMessageException
+    {
+        Plugin plugin = PluginService.getPlugin( AnnouncePlugin.PLUGIN_NAME );
+
+        if ( !bCreate )
+        {
+            // incremental indexing
+            processIndexerActions( IAnnounceIndexWriters.of( indexWriter ), AnnounceSearchService.getInstance( ).getClaimedIndexerActions( plugin ), sbLogs );
+        }
+        else
+        {
+            this.indexAllAnnounces( indexWriter, ALL_SECTORS, plugin, sbLogs );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void processSectorIndexing( IndexWriter indexWriter, int nIdSector, StringBuffer sbLogs ) throws IOException, InterruptedException
+    {
+        this.indexAllAnnounces( indexWriter, nIdSector, PluginService.getPlugin( AnnouncePlugin.PLUGIN_NAME ), sbLogs );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void processIndexerActions( IAnnounceIndexWriters indexWriters, List<IndexerAction> listActions, StringBuffer sbLogs ) throws IOException
+    {
+        Plugin plugin = PluginService.getPlugin( AnnouncePlugin.PLUGIN_NAME );
+        List<Integer> listIdAnnounce = new ArrayList<>( );
+
+        // The actions of each announce are applied at once
+        for ( Map.Entry<Integer, Integer> entry : coalesceIndexerActions( listActions ).entrySet( ) )
+        {
+            sbLogAnnounce( sbLogs, entry.getKey( ), entry.getValue( ) );
+
+            if ( entry.getValue( ) == IndexerAction.TASK_DELETE )
+            {
+                deleteDocuments( indexWriters, entry.getKey( ) );
+            }
+            else
+            {
+                listIdAnnounce.add( entry.getKey( ) );
+            }
         }
 
-        indexWriter.commit( );
+        this.indexListAnnounce( indexWriters, listIdAnnounce, plugin );
     }
 
     /**
@@ -224,27 +504,42 @@ public class DefaultAnnounceIndexer implements IAnnounceSearchIndexer
     public static List<Document> getDocuments( String strDocument ) throws IOException
     {
         List<org.apache.lucene.document.Document> listDocs = new ArrayList<>( );
+        writeDocuments( listDocs );
+
+        return listDocs;
+    }
+
+    /**
+     * Write the documents of every published announce to the global index. Announces are read chunk by chunk, so that they are not all loaded at once
+     * 
+     * @param listDocs
+     *            The list to add written documents to, or null if written documents must not be kept
+     * @throws IOException
+     *             If an IO Exception occurred
+     */
+    public static void writeDocuments( List<Document> listDocs ) throws IOException
+    {
         String strPortalUrl = AppPathService.getPortalUrl( );
         Plugin plugin = PluginService.getPlugin( AnnouncePlugin.PLUGIN_NAME );
+        int nChunkSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_INDEXER_CHUNK_SIZE, DEFAULT_CHUNK_SIZE ) );
+        List<Integer> listIdAnnounce = AnnounceHome.findPublishedIdAfter( 0, nChunkSize );
 
-        for ( Announce announce : AnnounceHome.findAllPublished( AnnounceSort.DEFAULT_SORT ) )
+        while ( !listIdAnnounce.isEmpty( ) )
         {
-            if ( !announce.getSuspended( ) && !announce.getSuspendedByUser( ) )
+            for ( Announce announce : findListAnnounceWithResponses( listIdAnnounce ) )
             {
-                UrlItem urlAnnounce = new UrlItem( strPortalUrl );
-                urlAnnounce.addParameter( XPageAppService.PARAM_XPAGE_APP, AppPropertiesService.getProperty( AnnounceUtils.PARAMETER_PAGE_ANNOUNCE ) ); // FIXME
-                urlAnnounce.addParameter( PARAMETER_ANNOUNCE_ID, announce.getId( ) );
+                org.apache.lucene.document.Document docAnnounce = getDocument( announce, getAnnounceUrl( strPortalUrl, announce ), plugin );
 
-                org.apache.lucene.document.Document docAnnounce = getDocument( announce, urlAnnounce.getUrl( ), plugin );
-                listDocs.add( docAnnounce );
-                if ( docAnnounce != null )
+                if ( listDocs != null )
                 {
-                    IndexationService.write( docAnnounce );
+                    listDocs.add( docAnnounce );
                 }
+
+                IndexationService.write( docAnnounce );
             }
-        }
 
-        return listDocs;
+            listIdAnnounce = AnnounceHome.findPublishedIdAfter( listIdAnnounce.get( listIdAnnounce.size( ) - 1 ), nChunkSize );
+        }
     }
 
     /**
@@ -281,37 +576,27 @@ public class DefaultAnnounceIndexer implements IAnnounceSearchIndexer
         String strIdAnnounce = String.valueOf( announce.getId( ) );
         doc.add( new Field( SearchItem.FIELD_UID, strIdAnnounce, TextField.TYPE_STORED ) );
 
-        // Add the last modified date of the file a field named "modified".
-        // Use a field that is indexed (i.e. searchable), but don't tokenize
-        // the field into words.
+        // Add the publication date of the announce, or its creation date if it has not been published, as a field named "date".
+        // The field is only stored : dates are searched with the points of the creation date and of the publication time.
         String strDate = DateTools.dateToString(
                 ( announce.getTimePublication( ) > 0 ) ? new Timestamp( announce.getTimePublication( ) ) : announce.getDateCreation( ),
                 DateTools.Resolution.DAY );
-        doc.add( new Field( SearchItem.FIELD_DATE, strDate, TextField.TYPE_STORED ) );
+        doc.add( new StoredField( SearchItem.FIELD_DATE, strDate ) );
 
         if ( announce.getPrice( ) != 0.0 )
         {
             double dPrice = announce.getPrice( );
-            // Add the price of the announce
-            doc.add( new Field( AnnounceSearchItem.FIELD_PRICE, AnnounceSearchService.formatPriceForIndexer( dPrice ), TextField.TYPE_STORED ) );
+            // Add the price of the announce. Prices are searched with the points of the price in cents
+            doc.add( new StoredField( AnnounceSearchItem.FIELD_PRICE, AnnounceSearchService.formatPriceForIndexer( dPrice ) ) );
+            doc.add( new LongPoint( AnnounceSearchItem.FIELD_PRICE_CENTS, getPriceInCents( announce ) ) );
         }
 
-        String strContentToIndex = getContentToIndex( announce );
-
-        // NOUVEAU
-        ContentHandler handler = new BodyContentHandler( );
-        Metadata metadata = new Metadata( );
+        doc.add( new LongPoint( AnnounceSearchItem.FIELD_DATE_CREATION, getDateCreationTime( announce ) ) );
+        doc.add( new LongPoint( AnnounceSearchItem.FIELD_PUBLICATION_TIME, announce.getTimePublication( ) ) );
 
-        try
-        {
-            new HtmlParser( ).parse( new ByteArrayInputStream( strContentToIndex.getBytes( ) ), handler, metadata, new ParseContext( ) );
-        }
-        catch( SAXException | TikaException e )
-        {
-            throw new AppException( "Error during announce parsing." );
-        }
+        String strContentToIndex = getContentToIndex( announce );
 
-        String strContent = handler.toString( );
+        String strContent = AnnounceSearchService.getInstance( ).getTextExtractor( ).getText( strContentToIndex );
 
         // Add the tag-stripped contents as a Reader-valued Text field so it will
         // get tokenized and indexed.
@@ -323,10 +608,176 @@ public class DefaultAnnounceIndexer implements IAnnounceSearchIndexer
 
         doc.add( new Field( SearchItem.FIELD_TYPE, AnnouncePlugin.PLUGIN_NAME, StringField.TYPE_STORED ) );
 
+        addSortFields( doc, announce );
+        addFacetFields( doc, announce );
+        addProjectionFields( doc, announce );
+        addLocationFields( doc, announce );
+
         // return the document
         return doc;
     }
 
+    /**
+     * Add to a document the location of the announce, read from the coordinates of its first geolocation response. Announces without valid coordinates are
+     * not found by geographic searches
+     * 
+     * @param doc
+     *            The document
+     * @param announce
+     *            The announce
+     */
+    private static void addLocationFields( org.apache.lucene.document.Document doc, Announce announce )
+    {
+        if ( CollectionUtils.isEmpty( announce.getListResponse( ) ) )
+        {
+            return;
+        }
+
+        int nIdEntry = 0;
+        double dLatitude = Double.NaN;
+        double dLongitude = Double.NaN;
+
+        for ( Response response : announce.getListResponse( ) )
+        {
+            if ( ( response.getEntry( ) == null ) || ( response.getEntry( ).getEntryType( ) == null ) || ( response.getField( ) == null )
+                    || !ENTRY_TYPE_GEOLOCATION.equals( response.getEntry( ).getEntryType( ).getBeanName( ) ) )
+            {
+                continue;
+            }
+
+            // Only the coordinates of the first geolocation entry are indexed
+            if ( nIdEntry == 0 )
+            {
+                nIdEntry = response.getEntry( ).getIdEntry( );
+            }
+
+            if ( response.getEntry( ).getIdEntry( ) == nIdEntry )
+            {
+                if ( FIELD_GEOLOCATION_LATITUDE.equals( response.getField( ).getTitle( ) ) )
+                {
+                    dLatitude = NumberUtils.toDouble( response.getResponseValue( ), Double.NaN );
+                }
+                else
+                    if ( FIELD_GEOLOCATION_LONGITUDE.equals( response.getField( ).getTitle( ) ) )
+                    {
+                        dLongitude = NumberUtils.toDouble( response.getResponseValue( ), Double.NaN );
+                    }
+            }
+        }
+
+        // Comparisons with NaN are false : missing coordinates are rejected as well
+        if ( ( Math.abs( dLatitude ) <= MAX_LATITUDE ) && ( Math.abs( dLongitude ) <= MAX_LONGITUDE ) )
+        {
+            doc.add( new LatLonPoint( AnnounceSearchItem.FIELD_LOCATION, dLatitude, dLongitude ) );
+            doc.add( new LatLonDocValuesField( AnnounceSearchItem.FIELD_LOCATION, dLatitude, dLongitude ) );
+        }
+    }
+
+    /**
+     * Add to a document the doc values used to sort announces on every column of {@link AnnounceSort}
+     * 
+     * @param doc
+     *            The document
+     * @param announce
+     *            The announce
+     */
+    private static void addSortFields( org.apache.lucene.document.Document doc, Announce announce )
+    {
+        doc.add( new NumericDocValuesField( AnnounceSearchItem.FIELD_DATE_CREATION, getDateCreationTime( announce ) ) );
+        doc.add( new NumericDocValuesField( AnnounceSearchItem.FIELD_PUBLICATION_TIME, announce.getTimePublication( ) ) );
+        doc.add( new NumericDocValuesField( AnnounceSearchItem.FIELD_DATE_MODIFICATION,
+                ( announce.getDateModification( ) != null ) ? announce.getDateModification( ).getTime( ) : 0L ) );
+        doc.add( new NumericDocValuesField( AnnounceSearchItem.FIELD_PRICE_CENTS, getPriceInCents( announce ) ) );
+        doc.add( new SortedDocValuesField( AnnounceSearchItem.FIELD_SORT_TITLE, new BytesRef( StringUtils.lowerCase( StringUtils.defaultString( announce.getTitle( ) ) ) ) ) );
+        doc.add( new SortedDocValuesField( AnnounceSearchItem.FIELD_SORT_DESCRIPTION,
+                new BytesRef( StringUtils.lowerCase( StringUtils.left( StringUtils.defaultString( announce.getDescription( ) ), SORT_DESCRIPTION_LENGTH ) ) ) ) );
+        doc.add( new NumericDocValuesField( AnnounceSearchItem.FIELD_SORT_ID, announce.getId( ) ) );
+    }
+
+    /**
+     * Add to a document the doc values used to count announces by sector, category and tag
+     * 
+     * @param doc
+     *            The document
+     * @param announce
+     *            The announce
+     */
+    private static void addFacetFields( org.apache.lucene.document.Document doc, Announce announce )
+    {
+        doc.add( new NumericDocValuesField( AnnounceSearchItem.FIELD_FACET_SECTOR, announce.getCategory( ).getIdSector( ) ) );
+        doc.add( new NumericDocValuesField( AnnounceSearchItem.FIELD_FACET_CATEGORY, announce.getCategory( ).getId( ) ) );
+
+        Set<String> setTags = new HashSet<>( );
+
+        for ( String strTag : StringUtils.split( StringUtils.lowerCase( StringUtils.defaultString( announce.getTags( ) ) ), TAGS_SEPARATORS ) )
+        {
+            if ( setTags.add( strTag ) )
+            {
+                doc.add( new SortedSetDocValuesField( AnnounceSearchItem.FIELD_FACET_TAGS, new BytesRef( strTag ) ) );
+            }
+        }
+    }
+
+    /**
+     * Add to a document the stored fields needed to display the announce in a list of search results without reading the database
+     * 
+     * @param doc
+     *            The document
+     * @param announce
+     *            The announce
+     */
+    private static void addProjectionFields( org.apache.lucene.document.Document doc, Announce announce )
+    {
+        doc.add( new StoredField( AnnounceSearchItem.FIELD_DATE_CREATION, getDateCreationTime( announce ) ) );
+        doc.add( new StoredField( AnnounceSearchItem.FIELD_PUBLICATION_TIME, announce.getTimePublication( ) ) );
+        doc.add( new StoredField( AnnounceSearchItem.FIELD_PRICE_CENTS, getPriceInCents( announce ) ) );
+        doc.add( new StoredField( AnnounceSearchItem.FIELD_DESCRIPTION_EXCERPT,
+                StringUtils.abbreviate( StringUtils.defaultString( announce.getDescription( ) ), DESCRIPTION_EXCERPT_LENGTH ) ) );
+        doc.add( new StoredField( AnnounceSearchItem.FIELD_USER_NAME, StringUtils.defaultString( announce.getUserName( ) ) ) );
+        doc.add( new StoredField( AnnounceSearchItem.FIELD_USER_LAST_NAME, StringUtils.defaultString( announce.getUserLastName( ) ) ) );
+        doc.add( new StoredField( AnnounceSearchItem.FIELD_USER_SECOND_NAME, StringUtils.defaultString( announce.getUserSecondName( ) ) ) );
+        doc.add( new StoredField( AnnounceSearchItem.FIELD_CATEGORY_LABEL, StringUtils.defaultString( announce.getCategory( ).getLabel( ) ) ) );
+        doc.add( new StoredField( AnnounceSearchItem.FIELD_CATEGORY_DISPLAY_PRICE, announce.getCategory( ).getDisplayPrice( ) ? 1 : 0 ) );
+
+        if ( announce.getHasPictures( ) && ( announce.getListResponse( ) != null ) )
+        {
+            // The responses are loaded in bulk with the announce, along with their image flag
+            for ( Response response : announce.getListResponse( ) )
+            {
+                if ( ( response instanceof AnnounceResponse ) && ( (AnnounceResponse) response ).isImage( ) )
+                {
+                    doc.add( new StoredField( AnnounceSearchItem.FIELD_COVER_IMAGE_ID, response.getIdResponse( ) ) );
+
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the creation date of an announce as a number of milliseconds
+     * 
+     * @param announce
+     *            The announce
+     * @return The creation date, or 0 if the announce has no creation date
+     */
+    private static long getDateCreationTime( Announce announce )
+    {
+        return ( announce.getDateCreation( ) != null ) ? announce.getDateCreation( ).getTime( ) : 0L;
+    }
+
+    /**
+     * Get the price of an announce as a number of cents
+     * 
+     * @param announce
+     *            The announce
+     * @return The price in cents, or 0 if the announce has no price
+     */
+    private static long getPriceInCents( Announce announce )
+    {
+        return ( announce.getPrice( ) != null ) ? Math.round( announce.getPrice( ) * 100 ) : 0L;
+    }
+
     /**
      * Set the Content to index
      * 
@@ -338,7 +789,7 @@ public class DefaultAnnounceIndexer implements IAnnounceSearchIndexer
      */
     private static String getContentToIndex( Announce announce )
     {
-        StringBuffer sbContentToIndex = new StringBuffer( );
+        StringBuilder sbContentToIndex = new StringBuilder( );
         // Do not index question here
         sbContentToIndex.append( announce.getTitle( ) );
         sbContentToIndex.append( BLANK_SPACE );
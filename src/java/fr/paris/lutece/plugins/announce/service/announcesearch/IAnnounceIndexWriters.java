@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.lucene.index.IndexWriter;
+
+/**
+ * Writers of the announce index. When the index is sharded by sector, each sector has its own writer, otherwise a single writer holds every announce
+ */
+public interface IAnnounceIndexWriters
+{
+    /**
+     * Get the writer of the announces of a sector
+     * 
+     * @param nIdSector
+     *            The id of the sector
+     * @return The writer of the announces of the sector
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    IndexWriter getIndexWriter( int nIdSector ) throws IOException;
+
+    /**
+     * Get every writer of the index. Documents of announces that may be held by any writer, like removed announces or announces moved to another sector,
+     * are deleted from all of them
+     * 
+     * @return The writers of the index
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    Collection<IndexWriter> getIndexWriters( ) throws IOException;
+
+    /**
+     * Get the writers of an index that is not sharded
+     * 
+     * @param indexWriter
+     *            The writer of every announce
+     * @return The writers of the index
+     */
+    static IAnnounceIndexWriters of( IndexWriter indexWriter )
+    {
+        return new IAnnounceIndexWriters( )
+        {
+            @Override
+            public IndexWriter getIndexWriter( int nIdSector )
+            {
+                return indexWriter;
+            }
+
+            @Override
+            public Collection<IndexWriter> getIndexWriters( )
+            {
+                return Collections.singletonList( indexWriter );
+            }
+        };
+    }
+}
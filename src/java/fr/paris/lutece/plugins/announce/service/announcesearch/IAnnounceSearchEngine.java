@@ -39,6 +39,7 @@ import fr.paris.lutece.plugins.announce.business.AnnounceSort;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.search.SearchResult;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -63,5 +64,107 @@ public interface IAnnounceSearchEngine
      */
     int getSearchResults( AnnounceSearchFilter filter, Plugin plugin, List<SearchResult> listSearchResult, int nPage, int nItemsPerPage );
 
-    int getSearchResultsBis( AnnounceSearchFilter filter, Plugin plugin, List<Announce> listSearchResult, int nPage, int nItemsPerPage, AnnounceSort anSort );
+    /**
+     * Get the announces of the current page of a search, sorted by the index
+     * 
+     * @param filter
+     *            The search filter
+     * @param plugin
+     *            the plugin
+     * @param listSearchResult
+     *            The list to fill with the announces of the current page
+     * @param nPage
+     *            The number of the current page
+     * @param nItemsPerPage
+     *            The number of items per page. 0 to ignore the pagination
+     * @param anSort
+     *            The sort
+     * @param facets
+     *            The facets to fill with the counts of all the results, or null to skip counting
+     * @return The total number of results found
+     * @throws IOException
+     *             If the search failed
+     */
+    int getSearchResultsBis( AnnounceSearchFilter filter, Plugin plugin, List<Announce> listSearchResult, int nPage, int nItemsPerPage, AnnounceSort anSort,
+            AnnounceSearchFacets facets ) throws IOException;
+
+    /**
+     * Get the announces of the page following the position of a cursor, sorted by the index. The cost of a page does not depend on its position in the
+     * results.
+     * 
+     * @param filter
+     *            The search filter
+     * @param plugin
+     *            the plugin
+     * @param listSearchResult
+     *            The list to fill with the announces of the page
+     * @param nItemsPerPage
+     *            The number of items per page
+     * @param cursor
+     *            The cursor holding the sort and the position to start from. The token of the next page is set on the cursor
+     * @param facets
+     *            The facets to fill with the counts of all the results, or null to skip counting
+     * @return The total number of results found
+     * @throws IOException
+     *             If the search failed
+     */
+    int getSearchResultsAfter( AnnounceSearchFilter filter, Plugin plugin, List<Announce> listSearchResult, int nItemsPerPage, AnnounceSearchCursor cursor,
+            AnnounceSearchFacets facets ) throws IOException;
+
+    /**
+     * Count the announces matching a search by sector, category and tag
+     * 
+     * @param filter
+     *            The search filter
+     * @param plugin
+     *            the plugin
+     * @return The counts of the announces matching the search
+     * @throws IOException
+     *             If the search failed
+     */
+    AnnounceSearchFacets getSearchFacets( AnnounceSearchFilter filter, Plugin plugin ) throws IOException;
+
+    /**
+     * Count the announces matching a search, without collecting them
+     * 
+     * @param filter
+     *            The search filter
+     * @param nMaxCount
+     *            The number from which counting stops, or 0 to count every matching announce
+     * @param plugin
+     *            the plugin
+     * @return The number of announces matching the search, or the maximum count if at least this number of announces match the search
+     */
+    int countSearchResults( AnnounceSearchFilter filter, int nMaxCount, Plugin plugin );
+
+    /**
+     * Get the published announces of the same sector that are the most similar to an announce
+     * 
+     * @param announce
+     *            The announce
+     * @param nMaxResults
+     *            The maximum number of announces to get
+     * @param plugin
+     *            the plugin
+     * @return The ids of the similar announces, the most similar first
+     */
+    List<Integer> getSimilarAnnounces( Announce announce, int nMaxResults, Plugin plugin );
+
+    /**
+     * Group the announces matching a search and located in a map tile into clusters. The tile is split into a grid of cells, each cell holding at most one
+     * cluster
+     * 
+     * @param filter
+     *            The search filter
+     * @param tile
+     *            The tile
+     * @param nGridSize
+     *            The number of cells per side of the tile
+     * @param nMaxSamples
+     *            The maximum number of announce ids kept by cluster
+     * @param plugin
+     *            the plugin
+     * @return The clusters of the tile
+     */
+    List<AnnounceCluster> getClusters( AnnounceSearchFilter filter, AnnounceMapTile tile, int nGridSize, int nMaxSamples, Plugin plugin );
 }
@@ -33,11 +33,13 @@
  */
 package fr.paris.lutece.plugins.announce.service.announcesearch;
 
+import fr.paris.lutece.plugins.announce.business.IndexerAction;
 import fr.paris.lutece.portal.service.message.SiteMessageException;
 
 import org.apache.lucene.index.IndexWriter;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  *
@@ -47,12 +49,16 @@ import java.io.IOException;
 public interface IAnnounceSearchIndexer
 {
     /**
-     * add to the index writer the document associate to the key specified in parameter
+     * add to the index writer the document associate to the key specified in parameter. Changes are committed by the caller, except during a full indexing
+     * which commits its progress with {@link AnnounceSearchService#commitRebuildCheckpoint(IndexWriter, int)}
      * 
      * @param indexWriter
      *            lucene index writer
      * @param bCreate
-     *            true for indexing all directory false for use incremental indexing
+     *            true for indexing all directory false for use incremental indexing. When true, the index writer has already been emptied, or holds the
+     *            announces indexed until {@link AnnounceSearchService#getRebuildCheckpoint(IndexWriter)} if an interrupted indexing is resumed. When false,
+     *            the actions to apply are given by {@link AnnounceSearchService#getClaimedIndexerActions(fr.paris.lutece.portal.service.plugin.Plugin)}
+     *            and must not be removed : they are removed by the caller once the changes are committed
      * @param sbLog
      *            the buffer logger
      * @throws IOException
@@ -64,6 +70,39 @@ public interface IAnnounceSearchIndexer
      */
     void processIndexing( IndexWriter indexWriter, boolean bCreate, StringBuffer sbLog ) throws IOException, InterruptedException, SiteMessageException;
 
+    /**
+     * Add to the index writer the documents of the published announces of a sector. The index writer has already been emptied, or holds the announces
+     * indexed until {@link AnnounceSearchService#getRebuildCheckpoint(IndexWriter)} if an interrupted indexing is resumed. Progress is committed with
+     * {@link AnnounceSearchService#commitRebuildCheckpoint(IndexWriter, int)}
+     * 
+     * @param indexWriter
+     *            lucene index writer of the shard of the sector
+     * @param nIdSector
+     *            the id of the sector
+     * @param sbLog
+     *            the buffer logger
+     * @throws IOException
+     *             If an IO error occured
+     * @throws InterruptedException
+     *             If a thread error occured
+     */
+    void processSectorIndexing( IndexWriter indexWriter, int nIdSector, StringBuffer sbLog ) throws IOException, InterruptedException;
+
+    /**
+     * Apply indexer actions to the index writers. The document of each announce is written by the writer of its sector and deleted from the others. The
+     * actions are not removed, and changes are committed by the caller
+     * 
+     * @param indexWriters
+     *            lucene index writers
+     * @param listActions
+     *            the indexer actions, in the order they were created
+     * @param sbLog
+     *            the buffer logger
+     * @throws IOException
+     *             If an IO error occured
+     */
+    void processIndexerActions( IAnnounceIndexWriters indexWriters, List<IndexerAction> listActions, StringBuffer sbLog ) throws IOException;
+
     /**
      * Returns the indexer service name
      * 
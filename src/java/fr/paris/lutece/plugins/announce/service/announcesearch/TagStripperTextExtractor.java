@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.lang.Entities;
+
+/**
+ * Text extractor removing the tags of an HTML content in a single pass over its characters. Contents of script and style elements and comments are
+ * removed, entities are decoded and block tags are replaced by a space so that words of different blocks are not merged. This extractor is stateless
+ */
+public class TagStripperTextExtractor implements IAnnounceTextExtractor
+{
+    private static final String COMMENT_START = "<!--";
+    private static final String COMMENT_END = "-->";
+    private static final String [ ] RAW_TEXT_ELEMENTS = {
+            "script", "style"
+    };
+    private static final Set<String> INLINE_ELEMENTS = new HashSet<>( Arrays.asList( "a", "abbr", "b", "big", "em", "font", "i", "small", "span",
+            "strong", "sub", "sup", "u" ) );
+    private static final String ENTITY_APOS = "apos";
+    private static final int MAX_ENTITY_LENGTH = 10;
+    private static final int RADIX_DECIMAL = 10;
+    private static final int RADIX_HEXADECIMAL = 16;
+    private static final char SPACE = ' ';
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getText( String strHtml )
+    {
+        if ( strHtml == null )
+        {
+            return "";
+        }
+
+        int nLength = strHtml.length( );
+        StringBuilder sbText = new StringBuilder( nLength );
+        int nIndex = 0;
+
+        while ( nIndex < nLength )
+        {
+            char c = strHtml.charAt( nIndex );
+
+            if ( ( c == '<' ) && isMarkupStart( strHtml, nIndex + 1 ) )
+            {
+                nIndex = skipMarkup( strHtml, nIndex, sbText );
+            }
+            else
+                if ( c == '&' )
+                {
+                    nIndex = appendEntity( strHtml, nIndex, sbText );
+                }
+                else
+                {
+                    sbText.append( c );
+                    nIndex++;
+                }
+        }
+
+        return sbText.toString( );
+    }
+
+    /**
+     * Check if a less-than sign opens a tag, a comment or a declaration, rather than being a character of the text
+     * 
+     * @param strHtml
+     *            The HTML content
+     * @param nIndex
+     *            The index of the character following the less-than sign
+     * @return true if the less-than sign opens markup
+     */
+    private static boolean isMarkupStart( String strHtml, int nIndex )
+    {
+        if ( nIndex >= strHtml.length( ) )
+        {
+            return false;
+        }
+
+        char c = strHtml.charAt( nIndex );
+
+        return Character.isLetter( c ) || ( c == '/' ) || ( c == '!' ) || ( c == '?' );
+    }
+
+    /**
+     * Skip a tag, a comment or a declaration
+     * 
+     * @param strHtml
+     *            The HTML content
+     * @param nStart
+     *            The index of the less-than sign opening the markup
+     * @param sbText
+     *            The text extracted so far
+     * @return The index of the first character following the markup
+     */
+    private static int skipMarkup( String strHtml, int nStart, StringBuilder sbText )
+    {
+        if ( strHtml.startsWith( COMMENT_START, nStart ) )
+        {
+            int nEnd = strHtml.indexOf( COMMENT_END, nStart + COMMENT_START.length( ) );
+
+            return ( nEnd < 0 ) ? strHtml.length( ) : ( nEnd + COMMENT_END.length( ) );
+        }
+
+        int nEnd = strHtml.indexOf( '>', nStart );
+
+        if ( nEnd < 0 )
+        {
+            // Unterminated tags are dropped like browsers do
+            return strHtml.length( );
+        }
+
+        boolean bClosing = strHtml.charAt( nStart + 1 ) == '/';
+        int nNameStart = bClosing ? ( nStart + 2 ) : ( nStart + 1 );
+        int nNameEnd = nNameStart;
+
+        while ( ( nNameEnd < nEnd ) && Character.isLetterOrDigit( strHtml.charAt( nNameEnd ) ) )
+        {
+            nNameEnd++;
+        }
+
+        if ( !bClosing )
+        {
+            for ( String strElement : RAW_TEXT_ELEMENTS )
+            {
+                if ( ( nNameEnd - nNameStart == strElement.length( ) ) && strHtml.regionMatches( true, nNameStart, strElement, 0, strElement.length( ) ) )
+                {
+                    return skipRawText( strHtml, nEnd + 1, strElement, sbText );
+                }
+            }
+        }
+
+        if ( !INLINE_ELEMENTS.contains( strHtml.substring( nNameStart, nNameEnd ).toLowerCase( ) ) )
+        {
+            appendSeparator( sbText );
+        }
+
+        return nEnd + 1;
+    }
+
+    /**
+     * Skip the content of an element whose content is not text, like a script
+     * 
+     * @param strHtml
+     *            The HTML content
+     * @param nStart
+     *            The index of the first character of the content of the element
+     * @param strElement
+     *            The name of the element
+     * @param sbText
+     *            The text extracted so far
+     * @return The index of the first character following the closing tag of the element
+     */
+    private static int skipRawText( String strHtml, int nStart, String strElement, StringBuilder sbText )
+    {
+        appendSeparator( sbText );
+
+        int nLength = strHtml.length( );
+
+        for ( int nIndex = nStart; nIndex < nLength - 1; nIndex++ )
+        {
+            if ( ( strHtml.charAt( nIndex ) == '<' ) && ( strHtml.charAt( nIndex + 1 ) == '/' )
+                    && strHtml.regionMatches( true, nIndex + 2, strElement, 0, strElement.length( ) ) )
+            {
+                int nEnd = strHtml.indexOf( '>', nIndex );
+
+                return ( nEnd < 0 ) ? nLength : ( nEnd + 1 );
+            }
+        }
+
+        return nLength;
+    }
+
+    /**
+     * Append the character of an entity to the text. Unknown entities are kept as they are
+     * 
+     * @param strHtml
+     *            The HTML content
+     * @param nStart
+     *            The index of the ampersand opening the entity
+     * @param sbText
+     *            The text extracted so far
+     * @return The index of the first character following the entity
+     */
+    private static int appendEntity( String strHtml, int nStart, StringBuilder sbText )
+    {
+        int nEnd = strHtml.indexOf( ';', nStart + 1 );
+
+        if ( ( nEnd > nStart + 1 ) && ( nEnd - nStart <= MAX_ENTITY_LENGTH ) )
+        {
+            String strEntity = strHtml.substring( nStart + 1, nEnd );
+            int nCodePoint = getCodePoint( strEntity );
+
+            if ( nCodePoint >= 0 )
+            {
+                sbText.appendCodePoint( nCodePoint );
+
+                return nEnd + 1;
+            }
+        }
+
+        sbText.append( '&' );
+
+        return nStart + 1;
+    }
+
+    /**
+     * Get the code point of an entity
+     * 
+     * @param strEntity
+     *            The entity, without its ampersand and its semicolon
+     * @return The code point, or -1 if the entity is unknown
+     */
+    private static int getCodePoint( String strEntity )
+    {
+        if ( strEntity.charAt( 0 ) != '#' )
+        {
+            // The apostrophe entity is not an HTML 4 entity, but is commonly used
+            return ENTITY_APOS.equals( strEntity ) ? '\'' : Entities.HTML40.entityValue( strEntity );
+        }
+
+        try
+        {
+            int nCodePoint = ( ( strEntity.length( ) > 1 ) && ( Character.toLowerCase( strEntity.charAt( 1 ) ) == 'x' ) )
+                    ? Integer.parseInt( strEntity.substring( 2 ), RADIX_HEXADECIMAL )
+                    : Integer.parseInt( strEntity.substring( 1 ), RADIX_DECIMAL );
+
+            return Character.isValidCodePoint( nCodePoint ) ? nCodePoint : -1;
+        }
+        catch( NumberFormatException e )
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Append a space to the text, unless it is empty or already ends with a whitespace
+     * 
+     * @param sbText
+     *            The text extracted so far
+     */
+    private static void appendSeparator( StringBuilder sbText )
+    {
+        int nLength = sbText.length( );
+
+        if ( ( nLength > 0 ) && !Character.isWhitespace( sbText.charAt( nLength - 1 ) ) )
+        {
+            sbText.append( SPACE );
+        }
+    }
+}
@@ -74,7 +74,7 @@ public class AnnounceIndexer implements SearchIndexer
     public void indexDocuments( ) throws IOException, InterruptedException, SiteMessageException
     {
         AnnounceSearchService.getInstance( ).processIndexing( true );
-        DefaultAnnounceIndexer.getDocuments( "" );
+        DefaultAnnounceIndexer.writeDocuments( null );
     }
 
     /**
@@ -49,6 +49,7 @@ import javax.validation.constraints.NotNull;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 
 import fr.paris.lutece.plugins.announce.business.Announce;
 import fr.paris.lutece.plugins.announce.business.AnnounceDTO;
@@ -62,13 +63,15 @@ import fr.paris.lutece.plugins.announce.business.Sector;
 import fr.paris.lutece.plugins.announce.business.SectorHome;
 import fr.paris.lutece.plugins.announce.service.AnnounceService;
 import fr.paris.lutece.plugins.announce.service.AnnounceSubscriptionProvider;
+import fr.paris.lutece.plugins.announce.service.announcesearch.AnnounceCluster;
+import fr.paris.lutece.plugins.announce.service.announcesearch.AnnounceSearchCursor;
+import fr.paris.lutece.plugins.announce.service.announcesearch.AnnounceSearchFacets;
 import fr.paris.lutece.plugins.announce.service.announcesearch.AnnounceSearchService;
 import fr.paris.lutece.plugins.announce.service.upload.AnnounceAsynchronousUploadHandler;
 import fr.paris.lutece.plugins.announce.utils.AnnounceUtils;
 import fr.paris.lutece.plugins.genericattributes.business.Entry;
 import fr.paris.lutece.plugins.genericattributes.business.EntryFilter;
 import fr.paris.lutece.plugins.genericattributes.business.EntryHome;
-import fr.paris.lutece.plugins.genericattributes.business.Field;
 import fr.paris.lutece.plugins.genericattributes.business.GenericAttributeError;
 import fr.paris.lutece.plugins.genericattributes.business.Response;
 import fr.paris.lutece.plugins.genericattributes.business.ResponseHome;
@@ -106,6 +109,8 @@ import fr.paris.lutece.util.file.FileUtil;
 import fr.paris.lutece.util.html.AbstractPaginator;
 import fr.paris.lutece.util.html.HtmlTemplate;
 import fr.paris.lutece.util.html.Paginator;
+import fr.paris.lutece.util.json.JsonResponse;
+import fr.paris.lutece.util.json.JsonUtil;
 import fr.paris.lutece.util.url.UrlItem;
 
 /**
@@ -152,6 +157,15 @@ public class AnnounceApp extends MVCApplication
     private static final String PARAMETER_HAS_FILTER = "hasFilter";
     private static final String PARAMETER_ID_FILTER = "id_filter";
     private static final String PARAMETER_SORT_BY = "sortBy";
+    private static final String PARAMETER_CURSOR = "cursor";
+    private static final String PARAMETER_LATITUDE = "latitude";
+    private static final String PARAMETER_LONGITUDE = "longitude";
+    private static final String PARAMETER_RADIUS = "radius";
+    private static final String PARAMETER_MIN_LATITUDE = "min_latitude";
+    private static final String PARAMETER_MAX_LATITUDE = "max_latitude";
+    private static final String PARAMETER_MIN_LONGITUDE = "min_longitude";
+    private static final String PARAMETER_MAX_LONGITUDE = "max_longitude";
+    private static final String PARAMETER_ZOOM = "zoom";
 
     // Actions
     private static final String ACTION_VIEW_ANNOUNCE = "view_announce";
@@ -164,6 +178,9 @@ public class AnnounceApp extends MVCApplication
     private static final String ACTION_VIEW_SUBSCRIPTIONS = "view_subscriptions";
     private static final String ACTION_SEARCH = "search";
     private static final String ACTION_ADDNEW = "addnew";
+    private static final String ACTION_SUGGEST = "suggest";
+    private static final String ACTION_CLUSTERS = "clusters";
+    private static final String ACTION_COUNT = "count";
 
     // Views
     private static final String VIEW_DEFAULT_PAGE = "viewDefaultPage";
@@ -226,11 +243,16 @@ public class AnnounceApp extends MVCApplication
     private static final String MARK_USER_IS_AUTHOR = "user_is_author";
     private static final String MARK_PAGINATOR = "paginator";
     private static final String MARK_NB_ITEMS_PER_PAGE = "nb_items_per_page";
+    private static final String MARK_NEXT_CURSOR = "next_cursor";
+    private static final String MARK_NB_ITEMS_APPROXIMATE = "nbItemApproximate";
+    private static final String MARK_COUNT = "count";
+    private static final String MARK_APPROXIMATE = "approximate";
     private static final String MARK_MODERATED = "moderated";
     private static final String MARK_PROD_URL = "prod_url";
     private static final String MARK_FORM_HTML = "form_html";
     private static final String MARK_LIST_ERRORS = "list_errors";
     private static final String MARK_IS_EXTEND_INSTALLED = "isExtendInstalled";
+    private static final String MARK_LIST_SIMILAR_ANNOUNCES = "list_similar_announces";
     private static final String MARK_CAPTCHA = "captcha";
     private static final String MARK_LIST_SECTORS = "list_sectors";
     private static final String MARK_LIST_CATEGORIES = "list_sector_categories";
@@ -324,23 +346,58 @@ public class AnnounceApp extends MVCApplication
             anSort = AnnounceSort.getAnnounceSort( AnnounceSort.SORT_DESCRIPTION, true );
             strUrl = getUrlSearchAnnounceSort( request, 4 );
         }
+        if ( ( strSort.compareTo( AnnounceSort.SORT_DISTANCE ) == 0 ) && filter.hasGeoDistance( ) )
+        {
+            anSort = AnnounceSort.DISTANCE_SORT;
+            strUrl = getUrlSearchAnnounceSort( request, 6 );
+        }
 
-        int nNbItems = AnnounceSearchService.getInstance( ).getSearchResultsBis( filter, nCurrentPageIndex, _nItemsPerPage, listAnnouncesResults, anSort );
+        // The first page and the pages reached with a cursor are searched after the last announce of the previous page. Other pages are reached by
+        // their number.
+        AnnounceSearchCursor cursor = new AnnounceSearchCursor( request.getParameter( PARAMETER_CURSOR ), anSort );
+        AnnounceSearchFacets facets = new AnnounceSearchFacets( );
+        int nNbItems;
+
+        if ( cursor.hasPosition( ) || ( nCurrentPageIndex == 1 ) )
+        {
+            nNbItems = AnnounceSearchService.getInstance( ).getSearchResultsAfter( filter, _nItemsPerPage, listAnnouncesResults, cursor, facets );
+        }
+        else
+        {
+            nNbItems = AnnounceSearchService.getInstance( ).getSearchResultsBis( filter, nCurrentPageIndex, _nItemsPerPage, listAnnouncesResults, anSort,
+                    facets );
+        }
 
         // --------------------------END SORT----------------------------------
 
+        // Beyond the count threshold, the number of results is displayed as approximate and the paginator stops at the threshold : the following pages are
+        // reached with the cursor of the next page
+        boolean bNbItemsApproximate = AnnounceSearchService.getInstance( ).isCountApproximate( nNbItems );
+
+        if ( bNbItemsApproximate )
+        {
+            nNbItems = AnnounceSearchService.getInstance( ).getCountThreshold( );
+        }
+
         LocalizedDelegatePaginator<Announce> paginator = new LocalizedDelegatePaginator<>( listAnnouncesResults, _nItemsPerPage, strUrl, PARAMETER_PAGE_INDEX,
                 _strCurrentPageIndex, nNbItems, request.getLocale( ) );
 
+        // The navigation menu shows the number of announces matching the current search
+        Collection<Sector> listSectors = getSectorList( facets );
+
         Map<String, Object> model = new HashMap<>( );
         model.put( MARK_NB_ITEMS_PER_PAGE, Integer.toString( _nItemsPerPage ) );
         model.put( MARK_PAGINATOR, paginator );
-        model.put( MARK_LIST_FIELDS, getSectorList( ) );
+        model.put( MARK_LIST_FIELDS, listSectors );
         model.put( MARK_LOCALE, request.getLocale( ) );
 
-        for ( Announce announce : paginator.getPageItems( ) )
+        // Announces built from the index already hold the id of their cover image
+        if ( !AnnounceSearchService.getInstance( ).isProjectionEnabled( ) )
         {
-            announce.setListIdImageResponse( AnnounceHome.findListIdImageResponse( announce.getId( ) ) );
+            for ( Announce announce : paginator.getPageItems( ) )
+            {
+                announce.setListIdImageResponse( AnnounceHome.findListIdImageResponse( announce.getId( ) ) );
+            }
         }
 
         model.put( MARK_ANNOUNCES_LIST, paginator.getPageItems( ) );
@@ -354,12 +411,14 @@ public class AnnounceApp extends MVCApplication
         // useful if you want to work with Portal.jsp and RunStandaloneApp.jsp
         model.put( FULL_URL, request.getRequestURL( ) );
 
-        model.put( MARK_LIST_SECTORS, AnnounceApp.getSectorList( ) );
+        model.put( MARK_LIST_SECTORS, listSectors );
         int nIdSector = ( request.getParameter( PARAMETER_SECTOR_ID ) == null ? 0 : Integer.parseInt( request.getParameter( PARAMETER_SECTOR_ID ) ) );
         model.put( MARK_LIST_CATEGORIES, AnnounceApp.getCategoryList( nIdSector ) );
         model.put( "sortArg", anSort.getSortColumn( ) );
         model.put( PARAMETER_PAGE_INDEX, _strCurrentPageIndex );
+        model.put( MARK_NEXT_CURSOR, cursor.getNextToken( ) );
         model.put( "nbItem", nNbItems );
+        model.put( MARK_NB_ITEMS_APPROXIMATE, bNbItemsApproximate );
         if ( SecurityService.isAuthenticationEnable( ) )
         {
             model.put( MARK_USER, SecurityService.getInstance( ).getRegisteredUser( request ) );
@@ -385,9 +444,10 @@ public class AnnounceApp extends MVCApplication
     public static String getAnnounceListById( HttpServletRequest request, List<Integer> listIdAnnounces, AnnounceSort announceSort )
     {
         List<Announce> listAnnounces = AnnounceHome.findByListId( listIdAnnounces, announceSort );
+        Collection<Sector> listSectors = getSectorList( );
 
         Map<String, Object> model = new HashMap<>( );
-        model.put( MARK_LIST_FIELDS, getSectorList( ) );
+        model.put( MARK_LIST_FIELDS, listSectors );
         model.put( MARK_LOCALE, request.getLocale( ) );
 
         for ( Announce announce : listAnnounces )
@@ -403,7 +463,7 @@ public class AnnounceApp extends MVCApplication
         // useful if you want to work with Portal.jsp and RunStandaloneApp.jsp
         model.put( FULL_URL, request.getRequestURL( ) );
 
-        model.put( MARK_LIST_SECTORS, AnnounceApp.getSectorList( ) );
+        model.put( MARK_LIST_SECTORS, listSectors );
 
         if ( SecurityService.isAuthenticationEnable( ) )
         {
@@ -706,40 +766,8 @@ public class AnnounceApp extends MVCApplication
 
         if ( bAllowAccess )
         {
-            Collection<Response> listResponses = AnnounceHome.findListResponse( announce.getId( ), false );
-            Collection<Entry> listGeolocalisation = new ArrayList<>( );
-
-            for ( Response response : listResponses )
-            {
-                if ( response.getEntry( ) != null && response.getEntry( ).getEntryType( ) != null
-                        && "announce.entryTypeGeolocation".equals( response.getEntry( ).getEntryType( ).getBeanName( ) ) )
-                {
-                    Entry entry = EntryHome.findByPrimaryKey( response.getEntry( ).getIdEntry( ) );
-                    for ( Field filed : entry.getFields( ) )
-                    {
-
-                        if ( response.getField( ) != null && filed.getIdField( ) == response.getField( ).getIdField( ) )
-                        {
-                            response.setField( filed );
-                        }
-                    }
-
-                    boolean bool = true;
-
-                    for ( Entry ent : listGeolocalisation )
-                    {
-                        if ( ent.getIdEntry( ) == ( entry.getIdEntry( ) ) )
-                        {
-                            bool = false;
-                        }
-                    }
-                    if ( bool )
-                    {
-                        listGeolocalisation.add( entry );
-                    }
-                }
-
-            }
+            Collection<Response> listResponses = AnnounceHome.findListResponse( announce.getId( ) );
+            Collection<Entry> listGeolocalisation = _announceService.getGeolocationEntries( listResponses );
 
             model.put( MARK_ENTRY_LIST_GEOLOCATION, listGeolocalisation );
             model.put( MARK_USER_IS_AUTHOR, bUserIsAuthor );
@@ -753,6 +781,7 @@ public class AnnounceApp extends MVCApplication
 
             Category category = CategoryHome.findByPrimaryKey( announce.getCategory( ).getId( ) );
             announce.setCategory( category );
+            model.put( MARK_LIST_SIMILAR_ANNOUNCES, AnnounceSearchService.getInstance( ).getSimilarAnnounces( announce ) );
         }
 
         XPage xpage = getXPage( TEMPLATE_VIEW_ANNOUNCE, request.getLocale( ), model );
@@ -761,6 +790,66 @@ public class AnnounceApp extends MVCApplication
         return xpage;
     }
 
+    /**
+     * Get the titles and tags of announces completing the keywords typed in the search form
+     * 
+     * @param request
+     *            The request
+     * @return The suggestions as JSON
+     */
+    @Action( ACTION_SUGGEST )
+    public XPage getSuggestions( HttpServletRequest request )
+    {
+        List<String> listSuggestions = AnnounceSearchService.getInstance( ).getSuggestions( request.getParameter( PARAMETER_KEYWORDS ) );
+
+        return responseJSON( JsonUtil.buildJsonResponse( new JsonResponse( listSuggestions ) ) );
+    }
+
+    /**
+     * Count the announces matching the search criteria of a request, for example to display the number of results while the search form is filled in
+     * 
+     * @param request
+     *            The request
+     * @return The number of announces as JSON, and whether it is approximate
+     */
+    @Action( ACTION_COUNT )
+    public XPage getCount( HttpServletRequest request )
+    {
+        int nCount = AnnounceSearchService.getInstance( ).countSearchResults( getAnnounceFilterFromRequest( request, false ) );
+        Map<String, Object> mapCount = new HashMap<>( );
+        mapCount.put( MARK_COUNT, nCount );
+        mapCount.put( MARK_APPROXIMATE, AnnounceSearchService.getInstance( ).isCountApproximate( nCount ) );
+
+        return responseJSON( JsonUtil.buildJsonResponse( new JsonResponse( mapCount ) ) );
+    }
+
+    /**
+     * Get the clusters of the announces of the current search located in the bounding box of a map
+     * 
+     * @param request
+     *            The request
+     * @return The clusters as JSON. The list is empty if the bounding box is missing or invalid
+     */
+    @Action( ACTION_CLUSTERS )
+    public XPage getClusters( HttpServletRequest request )
+    {
+        double dMinLatitude = NumberUtils.toDouble( request.getParameter( PARAMETER_MIN_LATITUDE ), Double.NaN );
+        double dMaxLatitude = NumberUtils.toDouble( request.getParameter( PARAMETER_MAX_LATITUDE ), Double.NaN );
+        double dMinLongitude = NumberUtils.toDouble( request.getParameter( PARAMETER_MIN_LONGITUDE ), Double.NaN );
+        double dMaxLongitude = NumberUtils.toDouble( request.getParameter( PARAMETER_MAX_LONGITUDE ), Double.NaN );
+        List<AnnounceCluster> listClusters = new ArrayList<>( );
+
+        if ( isValidLatitude( dMinLatitude ) && isValidLatitude( dMaxLatitude ) && ( dMinLatitude <= dMaxLatitude ) && isValidLongitude( dMinLongitude )
+                && isValidLongitude( dMaxLongitude ) )
+        {
+            AnnounceSearchFilter filter = (AnnounceSearchFilter) request.getSession( ).getAttribute( SESSION_KEY_ANNOUNCE_FILTER );
+            listClusters = AnnounceSearchService.getInstance( ).getClusters( ( filter != null ) ? filter : new AnnounceSearchFilter( ), dMinLatitude,
+                    dMaxLatitude, dMinLongitude, dMaxLongitude, NumberUtils.toInt( request.getParameter( PARAMETER_ZOOM ), 0 ) );
+        }
+
+        return responseJSON( JsonUtil.buildJsonResponse( new JsonResponse( listClusters ) ) );
+    }
+
     /**
      * Gets template in order to view all the user's announces
      * 
@@ -1406,21 +1495,32 @@ public class AnnounceApp extends MVCApplication
      * @return The list of sectors
      */
     public static Collection<Sector> getSectorList( )
+    {
+        return getSectorList( AnnounceSearchService.getInstance( ).getSearchFacets( new AnnounceSearchFilter( ) ) );
+    }
+
+    /**
+     * Get the list of sectors to be displayed in the navigation menu, with the number of announces of every sector and category read from search facets
+     * 
+     * @param facets
+     *            The facets of the search to display the numbers of announces of
+     * @return The list of sectors
+     */
+    public static Collection<Sector> getSectorList( AnnounceSearchFacets facets )
     {
         Collection<Sector> listSectors = SectorHome.findAll( );
 
         for ( Sector sector : listSectors )
         {
-            int nNumberAnnounces = 0;
             Collection<Category> categoryList = CategoryHome.findCategoriesForSector( sector );
             sector.setListCategories( categoryList );
 
             for ( Category category : categoryList )
             {
-                nNumberAnnounces += CategoryHome.countPublishedAnnouncesForCategory( category );
+                category.setNumberAnnounces( facets.getCategoryCount( category.getId( ) ) );
             }
 
-            sector.setNumberAnnounces( nNumberAnnounces );
+            sector.setNumberAnnounces( facets.getSectorCount( sector.getId( ) ) );
         }
 
         return listSectors;
@@ -1449,6 +1549,20 @@ public class AnnounceApp extends MVCApplication
      * @return The search filter. If the request contains no filter data, then the returned search filter is empty but never null.
      */
     public static AnnounceSearchFilter getAnnounceFilterFromRequest( HttpServletRequest request )
+    {
+        return getAnnounceFilterFromRequest( request, true );
+    }
+
+    /**
+     * Get the announce search filter with data contained in an HTTP request
+     * 
+     * @param request
+     *            The request
+     * @param bSaveInSession
+     *            True to make the filter of the request the current search filter of the session
+     * @return The search filter. If the request contains no filter data, then the returned search filter is empty but never null.
+     */
+    private static AnnounceSearchFilter getAnnounceFilterFromRequest( HttpServletRequest request, boolean bSaveInSession )
     {
         if ( request == null )
         {
@@ -1461,7 +1575,11 @@ public class AnnounceApp extends MVCApplication
         {
             int nIdFilter = Integer.parseInt( strIdFilter );
             AnnounceSearchFilter filter = AnnounceSearchFilterHome.findByPrimaryKey( nIdFilter );
-            request.getSession( ).setAttribute( SESSION_KEY_ANNOUNCE_FILTER, filter );
+
+            if ( bSaveInSession )
+            {
+                request.getSession( ).setAttribute( SESSION_KEY_ANNOUNCE_FILTER, filter );
+            }
 
             return filter;
         }
@@ -1562,7 +1680,12 @@ public class AnnounceApp extends MVCApplication
                 }
             }
 
-            request.getSession( ).setAttribute( SESSION_KEY_ANNOUNCE_FILTER, filter );
+            setGeoCriteria( request, filter );
+
+            if ( bSaveInSession )
+            {
+                request.getSession( ).setAttribute( SESSION_KEY_ANNOUNCE_FILTER, filter );
+            }
 
             return filter;
         }
@@ -1577,6 +1700,62 @@ public class AnnounceApp extends MVCApplication
         return filter;
     }
 
+    /**
+     * Set the geographic criteria of a search filter : a centre and a radius in meters, and a bounding box. Criteria with missing or invalid coordinates are
+     * ignored
+     * 
+     * @param request
+     *            The request
+     * @param filter
+     *            The search filter
+     */
+    private static void setGeoCriteria( HttpServletRequest request, AnnounceSearchFilter filter )
+    {
+        double dLatitude = NumberUtils.toDouble( request.getParameter( PARAMETER_LATITUDE ), Double.NaN );
+        double dLongitude = NumberUtils.toDouble( request.getParameter( PARAMETER_LONGITUDE ), Double.NaN );
+        double dRadius = NumberUtils.toDouble( request.getParameter( PARAMETER_RADIUS ), 0d );
+
+        if ( ( dRadius > 0 ) && isValidLatitude( dLatitude ) && isValidLongitude( dLongitude ) )
+        {
+            filter.setGeoDistance( dLatitude, dLongitude, dRadius );
+        }
+
+        double dMinLatitude = NumberUtils.toDouble( request.getParameter( PARAMETER_MIN_LATITUDE ), Double.NaN );
+        double dMaxLatitude = NumberUtils.toDouble( request.getParameter( PARAMETER_MAX_LATITUDE ), Double.NaN );
+        double dMinLongitude = NumberUtils.toDouble( request.getParameter( PARAMETER_MIN_LONGITUDE ), Double.NaN );
+        double dMaxLongitude = NumberUtils.toDouble( request.getParameter( PARAMETER_MAX_LONGITUDE ), Double.NaN );
+
+        if ( isValidLatitude( dMinLatitude ) && isValidLatitude( dMaxLatitude ) && ( dMinLatitude <= dMaxLatitude ) && isValidLongitude( dMinLongitude )
+                && isValidLongitude( dMaxLongitude ) )
+        {
+            filter.setBoundingBox( dMinLatitude, dMaxLatitude, dMinLongitude, dMaxLongitude );
+        }
+    }
+
+    /**
+     * Check if a latitude is valid
+     * 
+     * @param dLatitude
+     *            The latitude, in degrees
+     * @return True if the latitude is a number between -90 and 90
+     */
+    private static boolean isValidLatitude( double dLatitude )
+    {
+        return Math.abs( dLatitude ) <= 90d;
+    }
+
+    /**
+     * Check if a longitude is valid
+     * 
+     * @param dLongitude
+     *            The longitude, in degrees
+     * @return True if the longitude is a number between -180 and 180
+     */
+    private static boolean isValidLongitude( double dLongitude )
+    {
+        return Math.abs( dLongitude ) <= 180d;
+    }
+
     /**
      * Get the URL to search for announces
      * 
@@ -1632,6 +1811,10 @@ public class AnnounceApp extends MVCApplication
         {
             urlItem.addParameter( PARAMETER_SORT_BY, "date_publication" );
         }
+        if ( nSort == 6 )
+        {
+            urlItem.addParameter( PARAMETER_SORT_BY, AnnounceSort.SORT_DISTANCE );
+        }
 
         return urlItem.getUrl( );
     }
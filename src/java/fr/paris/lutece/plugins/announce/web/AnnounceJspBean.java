@@ -34,7 +34,6 @@
 package fr.paris.lutece.plugins.announce.web;
 
 import java.sql.Timestamp;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.HashMap;
@@ -54,10 +53,9 @@ import fr.paris.lutece.plugins.announce.business.AnnounceSort;
 import fr.paris.lutece.plugins.announce.business.Category;
 import fr.paris.lutece.plugins.announce.business.CategoryHome;
 import fr.paris.lutece.plugins.announce.service.AnnounceResourceIdService;
+import fr.paris.lutece.plugins.announce.service.AnnounceService;
 import fr.paris.lutece.plugins.announce.utils.AnnounceUtils;
 import fr.paris.lutece.plugins.genericattributes.business.Entry;
-import fr.paris.lutece.plugins.genericattributes.business.EntryHome;
-import fr.paris.lutece.plugins.genericattributes.business.Field;
 import fr.paris.lutece.plugins.genericattributes.business.Response;
 import fr.paris.lutece.portal.business.rbac.RBAC;
 import fr.paris.lutece.portal.service.admin.AccessDeniedException;
@@ -65,6 +63,7 @@ import fr.paris.lutece.portal.service.message.AdminMessage;
 import fr.paris.lutece.portal.service.message.AdminMessageService;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.rbac.RBACService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.template.AppTemplateService;
 import fr.paris.lutece.portal.service.util.AppPathService;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
@@ -123,6 +122,7 @@ public class AnnounceJspBean extends PluginAdminPageJspBean
     private static final String MARK_ENTRY_LIST_GEOLOCATION = "admList_entryTypeGeolocation";
 
     /* Variables */
+    private AnnounceService _announceService = SpringContextService.getBean( AnnounceService.BEAN_NAME );
     private int _nDefaultItemsPerPage;
     private String _strCurrentPageIndex;
     private int _nItemsPerPage;
@@ -243,42 +243,10 @@ public class AnnounceJspBean extends PluginAdminPageJspBean
 
         int nIdAnnounce = Integer.parseInt( request.getParameter( PARAMETER_ANNOUNCE_ID ) );
         Announce announce = AnnounceHome.findByPrimaryKey( nIdAnnounce );
-        Collection<Entry> listGeolocalisation = new ArrayList<>( );
         User user = getUser( );
 
-        Collection<Response> listResponses = AnnounceHome.findListResponse( announce.getId( ), false );
-        for ( Response response : listResponses )
-        {
-
-            if ( response.getEntry( ) != null && response.getEntry( ).getEntryType( ) != null
-                    && "announce.entryTypeGeolocation".equals( response.getEntry( ).getEntryType( ).getBeanName( ) ) )
-            {
-                Entry entry = EntryHome.findByPrimaryKey( response.getEntry( ).getIdEntry( ) );
-                for ( Field filed : entry.getFields( ) )
-                {
-
-                    if ( response.getField( ) != null && filed.getIdField( ) == response.getField( ).getIdField( ) )
-                    {
-                        response.setField( filed );
-                    }
-                }
-
-                boolean bool = true;
-
-                for ( Entry ent : listGeolocalisation )
-                {
-                    if ( ent.getIdEntry( ) == ( entry.getIdEntry( ) ) )
-                    {
-                        bool = false;
-                    }
-                }
-                if ( bool )
-                {
-                    listGeolocalisation.add( entry );
-                }
-            }
-
-        }
+        Collection<Response> listResponses = AnnounceHome.findListResponse( announce.getId( ) );
+        Collection<Entry> listGeolocalisation = _announceService.getGeolocationEntries( listResponses );
 
         HashMap<String, Object> model = new HashMap<>( );
         model.put( MARK_ENTRY_LIST_GEOLOCATION, listGeolocalisation );
@@ -46,6 +46,7 @@ import fr.paris.lutece.api.user.User;
 import fr.paris.lutece.plugins.announce.business.Sector;
 import fr.paris.lutece.plugins.announce.business.SectorHome;
 import fr.paris.lutece.plugins.announce.service.SectorResourceIdService;
+import fr.paris.lutece.plugins.announce.service.announcesearch.AnnounceSearchService;
 import fr.paris.lutece.plugins.announce.utils.AnnounceUtils;
 import fr.paris.lutece.portal.business.rbac.RBAC;
 import fr.paris.lutece.portal.service.admin.AccessDeniedException;
@@ -104,6 +105,8 @@ public class SectorJspBean extends PluginAdminPageJspBean
     /* Messages */
     private static final String MESSAGE_CONFIRM_REMOVE_FIELD = "announce.message.confirmRemoveSector";
     private static final String MESSAGE_CANNOT_REMOVE_FIELD = "announce.message.cannotRemoveSector";
+    private static final String MESSAGE_SECTOR_REINDEXING_STARTED = "announce.message.sectorReindexingStarted";
+    private static final String MESSAGE_SECTOR_REINDEXING_UNAVAILABLE = "announce.message.sectorReindexingUnavailable";
 
     /* Markers */
     private static final String MARK_FIELD = "sector";
@@ -111,6 +114,8 @@ public class SectorJspBean extends PluginAdminPageJspBean
     private static final String MARK_PAGINATOR = "paginator";
     private static final String MARK_NB_ITEMS_PER_PAGE = "nb_items_per_page";
     private static final String MARK_FIELD_ORDER_LIST = "sector_order_list";
+    private static final String MARK_SHARDED_INDEX = "sharded_index";
+    private static final String MARK_INDEX_STATISTICS = "index_statistics";
 
     /* Misc */
     private static final String REGEX_ID = "^[\\d]+$";
@@ -160,6 +165,8 @@ public class SectorJspBean extends PluginAdminPageJspBean
         model.put( MARK_PAGINATOR, paginator );
         model.put( MARK_LIST_FIELDS, paginator.getPageItems( ) );
         model.put( MARK_FIELD_ORDER_LIST, getSectorOrderList( ) );
+        model.put( MARK_SHARDED_INDEX, AnnounceSearchService.getInstance( ).isShardsEnabled( ) );
+        model.put( MARK_INDEX_STATISTICS, AnnounceSearchService.getInstance( ).getIndexStatistics( ) );
 
         HtmlTemplate templateList = AppTemplateService.getTemplate( TEMPLATE_MANAGE_FIELDS, getLocale( ), model );
 
@@ -360,6 +367,29 @@ public class SectorJspBean extends PluginAdminPageJspBean
         return JSP_REDIRECT_TO_MANAGE_FIELDS;
     }
 
+    /**
+     * Rebuilds the index of the announces of a sector in the background, without changing the index of the other sectors. The rebuild is rejected if the
+     * index is not sharded by sector
+     * 
+     * @param request
+     *            The Http request
+     * @return The Jsp URL of the process result
+     * @throws fr.paris.lutece.portal.service.admin.AccessDeniedException
+     *             access denied exception
+     */
+    public String doReindexSector( HttpServletRequest request ) throws AccessDeniedException
+    {
+        Sector sector = getAuthorizedSector( request, SectorResourceIdService.PERMISSION_MODIFY );
+
+        if ( !AnnounceSearchService.getInstance( ).submitSectorIndexing( sector.getId( ) ) )
+        {
+            // Without shards, only a full rebuild of the index can reindex the announces of a sector
+            return AdminMessageService.getMessageUrl( request, MESSAGE_SECTOR_REINDEXING_UNAVAILABLE, JSP_MANAGE_FIELDS, AdminMessage.TYPE_STOP );
+        }
+
+        return AdminMessageService.getMessageUrl( request, MESSAGE_SECTOR_REINDEXING_STARTED, JSP_MANAGE_FIELDS, AdminMessage.TYPE_INFO );
+    }
+
     /**
      * Modifies the order in the list of contactLists
      *
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.LatLonDocValuesField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Checks the tiles covering a bounding box computed by {@link AnnounceMapTile}, and the cells of the clusters computed by
+ * {@link AnnounceClustersCollector}
+ */
+public class AnnounceMapTileTest extends LuteceTestCase
+{
+    private static final int MAX_TILES = 16;
+    private static final int GRID_SIZE = 2;
+    private static final int MAX_SAMPLES = 3;
+
+    /**
+     * A box crossing the dateline is covered by the tiles of both sides of the dateline only
+     */
+    public void testBoxCrossingDateline( )
+    {
+        List<AnnounceMapTile> listTiles = AnnounceMapTile.getTiles( -10d, 10d, 170d, -170d, 2, MAX_TILES );
+        Set<Integer> setX = new HashSet<>( );
+        Set<Integer> setY = new HashSet<>( );
+
+        for ( AnnounceMapTile tile : listTiles )
+        {
+            assertEquals( 2, tile.getZoom( ) );
+            setX.add( tile.getX( ) );
+            setY.add( tile.getY( ) );
+        }
+
+        assertEquals( 4, listTiles.size( ) );
+        assertEquals( new HashSet<>( Arrays.asList( 3, 0 ) ), setX );
+        assertEquals( new HashSet<>( Arrays.asList( 1, 2 ) ), setY );
+    }
+
+    /**
+     * A box crossing the dateline whose edges are in the same column is covered by every column
+     */
+    public void testBoxCrossingDatelineInSameColumn( )
+    {
+        List<AnnounceMapTile> listTiles = AnnounceMapTile.getTiles( -10d, 10d, 10d, 5d, 1, MAX_TILES );
+
+        assertEquals( 4, listTiles.size( ) );
+    }
+
+    /**
+     * A box covering more than the maximum number of tiles is covered by the tiles of a lower zoom level
+     */
+    public void testBoxOverMaxTiles( )
+    {
+        // At zoom level 2, the box covers 4 columns and 2 rows
+        List<AnnounceMapTile> listTiles = AnnounceMapTile.getTiles( -60d, 60d, -170d, 170d, 10, 4 );
+
+        assertEquals( 4, listTiles.size( ) );
+
+        for ( AnnounceMapTile tile : listTiles )
+        {
+            assertEquals( 1, tile.getZoom( ) );
+        }
+
+        // The world is a single tile at zoom level 0, whatever the maximum number of tiles
+        listTiles = AnnounceMapTile.getTiles( -90d, 90d, -180d, 180d, 3, 0 );
+
+        assertEquals( 1, listTiles.size( ) );
+        assertEquals( "0/0/0", listTiles.get( 0 ).getKey( ) );
+    }
+
+    /**
+     * The edges of the world, beyond the latitudes of the Web Mercator projection, are clamped to the border tiles
+     */
+    public void testWorldEdges( )
+    {
+        List<AnnounceMapTile> listTiles = AnnounceMapTile.getTiles( -90d, 90d, -180d, 180d, 1, MAX_TILES );
+
+        assertEquals( 4, listTiles.size( ) );
+
+        for ( AnnounceMapTile tile : listTiles )
+        {
+            assertTrue( ( tile.getX( ) >= 0 ) && ( tile.getX( ) <= 1 ) );
+            assertTrue( ( tile.getY( ) >= 0 ) && ( tile.getY( ) <= 1 ) );
+        }
+    }
+
+    /**
+     * An announce exactly on the corner of tiles belongs to the tile of which it is the north west corner only
+     * 
+     * @throws Exception
+     *             If an error occurs
+     */
+    public void testAnnounceOnTileEdge( ) throws Exception
+    {
+        try ( Directory directory = new ByteBuffersDirectory( ) )
+        {
+            try ( IndexWriter writer = new IndexWriter( directory, new IndexWriterConfig( ) ) )
+            {
+                writer.addDocument( getDocument( 1, 0d, 0d ) );
+                writer.addDocument( getDocument( 2, 10d, -10d ) );
+            }
+
+            try ( DirectoryReader reader = DirectoryReader.open( directory ) )
+            {
+                IndexSearcher searcher = new IndexSearcher( reader );
+
+                // The announce on the edge is on the east and south edges of the north west tile
+                List<AnnounceCluster> listClusters = getClusters( searcher, new AnnounceMapTile( 1, 0, 0 ) );
+                assertEquals( 1, listClusters.size( ) );
+                assertEquals( 1, listClusters.get( 0 ).getCount( ) );
+                assertEquals( Integer.valueOf( 2 ), listClusters.get( 0 ).getIdAnnounces( ).get( 0 ) );
+
+                // It is on the west and north edges of the south east tile
+                listClusters = getClusters( searcher, new AnnounceMapTile( 1, 1, 1 ) );
+                assertEquals( 1, listClusters.size( ) );
+                assertEquals( 1, listClusters.get( 0 ).getCount( ) );
+                assertEquals( Integer.valueOf( 1 ), listClusters.get( 0 ).getIdAnnounces( ).get( 0 ) );
+
+                assertTrue( getClusters( searcher, new AnnounceMapTile( 1, 1, 0 ) ).isEmpty( ) );
+                assertTrue( getClusters( searcher, new AnnounceMapTile( 1, 0, 1 ) ).isEmpty( ) );
+            }
+        }
+    }
+
+    /**
+     * Get the clusters of a tile
+     * 
+     * @param searcher
+     *            The searcher
+     * @param tile
+     *            The tile
+     * @return The clusters of the tile
+     * @throws Exception
+     *             If an error occurs
+     */
+    private static List<AnnounceCluster> getClusters( IndexSearcher searcher, AnnounceMapTile tile ) throws Exception
+    {
+        AnnounceClustersCollector collector = new AnnounceClustersCollector( tile, GRID_SIZE, MAX_SAMPLES );
+        searcher.search( new MatchAllDocsQuery( ), collector );
+
+        return collector.getClusters( );
+    }
+
+    /**
+     * Create the document of a located announce
+     * 
+     * @param nIdAnnounce
+     *            The id of the announce
+     * @param dLatitude
+     *            The latitude
+     * @param dLongitude
+     *            The longitude
+     * @return The document
+     */
+    private static Document getDocument( int nIdAnnounce, double dLatitude, double dLongitude )
+    {
+        Document doc = new Document( );
+        doc.add( new LatLonDocValuesField( AnnounceSearchItem.FIELD_LOCATION, dLatitude, dLongitude ) );
+        doc.add( new NumericDocValuesField( AnnounceSearchItem.FIELD_SORT_ID, nIdAnnounce ) );
+
+        return doc;
+    }
+}
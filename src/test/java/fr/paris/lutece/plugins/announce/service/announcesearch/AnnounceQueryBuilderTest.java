@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+
+import fr.paris.lutece.plugins.announce.business.Announce;
+import fr.paris.lutece.plugins.announce.business.AnnounceSearchFilter;
+import fr.paris.lutece.plugins.announce.business.Category;
+import fr.paris.lutece.plugins.announce.service.AnnouncePlugin;
+import fr.paris.lutece.portal.service.search.SearchItem;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Checks that queries built by {@link AnnounceQueryBuilder} return the same announces as the queries previously parsed by the MultiFieldQueryParser, and
+ * that range criteria match the expected announces
+ */
+public class AnnounceQueryBuilderTest extends LuteceTestCase
+{
+    private static final String URL = "jsp/site/Portal.jsp?page=announce";
+    private static final int ID_SECTOR_HOUSING = 1;
+    private static final int ID_SECTOR_VEHICLES = 2;
+    private static final int ID_CATEGORY_FLATS = 11;
+    private static final int ID_CATEGORY_HOUSES = 12;
+    private static final int ID_CATEGORY_CARS = 21;
+
+    private Directory _directory;
+    private DirectoryReader _reader;
+    private IndexSearcher _searcher;
+    private Analyzer _analyzer;
+    private AnnounceQueryBuilder _queryBuilder;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp( ) throws Exception
+    {
+        super.setUp( );
+        _analyzer = AnnounceSearchService.getInstance( ).getAnalyzer( );
+        _queryBuilder = new AnnounceQueryBuilder( _analyzer );
+        _directory = new ByteBuffersDirectory( );
+
+        try ( IndexWriter writer = new IndexWriter( _directory, new IndexWriterConfig( _analyzer ) ) )
+        {
+            writer.addDocument( getDocument( 1, ID_SECTOR_HOUSING, ID_CATEGORY_FLATS, "Appartement lumineux", "Trois pièces proche du métro", 850, -10 ) );
+            writer.addDocument( getDocument( 2, ID_SECTOR_HOUSING, ID_CATEGORY_FLATS, "Studio meublé", "Idéal pour étudiant, proche du métro", 540.5, -40 ) );
+            writer.addDocument( getDocument( 3, ID_SECTOR_HOUSING, ID_CATEGORY_HOUSES, "Maison avec jardin", "Grande maison familiale", 1500, -3 ) );
+            writer.addDocument( getDocument( 4, ID_SECTOR_VEHICLES, ID_CATEGORY_CARS, "Voiture citadine", "Petite voiture économique", 4200, -20 ) );
+            writer.addDocument( getDocument( 5, ID_SECTOR_VEHICLES, ID_CATEGORY_CARS, "Vélo de ville", "Vélo en bon état, sans prix", 0, -1 ) );
+        }
+
+        _reader = DirectoryReader.open( _directory );
+        _searcher = new IndexSearcher( _reader );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown( ) throws Exception
+    {
+        _reader.close( );
+        _directory.close( );
+        super.tearDown( );
+    }
+
+    /**
+     * Test an empty filter
+     * 
+     * @throws Exception
+     *             If an error occurs
+     */
+    public void testEmptyFilter( ) throws Exception
+    {
+        assertParity( new AnnounceSearchFilter( ), 5 );
+    }
+
+    /**
+     * Test filters on sectors and categories
+     * 
+     * @throws Exception
+     *             If an error occurs
+     */
+    public void testSectorAndCategory( ) throws Exception
+    {
+        AnnounceSearchFilter filter = new AnnounceSearchFilter( );
+        filter.setIdSector( ID_SECTOR_HOUSING );
+        assertParity( filter, 3 );
+
+        filter.setIdCategory( ID_CATEGORY_FLATS );
+        assertParity( filter, 2 );
+
+        filter = new AnnounceSearchFilter( );
+        filter.setIdCategory( ID_CATEGORY_CARS );
+        assertParity( filter, 2 );
+    }
+
+    /**
+     * Test filters on keywords
+     * 
+     * @throws Exception
+     *             If an error occurs
+     */
+    public void testKeywords( ) throws Exception
+    {
+        AnnounceSearchFilter filter = new AnnounceSearchFilter( );
+        filter.setKeywords( "métro" );
+        assertParity( filter, 2 );
+
+        filter.setKeywords( "proche du métro" );
+        assertParity( filter, 2 );
+
+        filter.setKeywords( "voiture" );
+        filter.setIdSector( ID_SECTOR_VEHICLES );
+        assertParity( filter, 1 );
+
+        filter.setKeywords( "sous-marin" );
+        assertParity( filter, 0 );
+    }
+
+    /**
+     * Test filters on dates and prices. Dates and prices are searched with points, that legacy queries do not use
+     * 
+     * @throws Exception
+     *             If an error occurs
+     */
+    public void testDateAndPriceRanges( ) throws Exception
+    {
+        AnnounceSearchFilter filter = new AnnounceSearchFilter( );
+        filter.setDateMin( getDate( -15 ) );
+        assertHits( filter, 3 );
+
+        filter.setDateMax( getDate( -2 ) );
+        assertHits( filter, 2 );
+
+        filter = new AnnounceSearchFilter( );
+        filter.setPriceMin( 600 );
+        assertHits( filter, 3 );
+
+        filter.setPriceMax( 1500 );
+        assertHits( filter, 2 );
+
+        filter = new AnnounceSearchFilter( );
+        filter.setPriceMax( 900 );
+        filter.setIdSector( ID_SECTOR_HOUSING );
+        assertHits( filter, 2 );
+    }
+
+    /**
+     * Check the number of announces matching a filter
+     * 
+     * @param filter
+     *            The filter
+     * @param nExpectedHits
+     *            The expected number of hits
+     * @throws Exception
+     *             If an error occurs
+     */
+    private void assertHits( AnnounceSearchFilter filter, int nExpectedHits ) throws Exception
+    {
+        assertEquals( nExpectedHits, search( _queryBuilder.buildQuery( filter ) ).size( ) );
+    }
+
+    /**
+     * Check that the query builder and the legacy parsed query return the same announces
+     * 
+     * @param filter
+     *            The filter
+     * @param nExpectedHits
+     *            The expected number of hits
+     * @throws Exception
+     *             If an error occurs
+     */
+    private void assertParity( AnnounceSearchFilter filter, int nExpectedHits ) throws Exception
+    {
+        Set<String> setLegacyIds = search( getLegacyQuery( filter ) );
+        Set<String> setIds = search( _queryBuilder.buildQuery( filter ) );
+
+        assertEquals( setLegacyIds, setIds );
+        assertEquals( nExpectedHits, setIds.size( ) );
+    }
+
+    /**
+     * Get the ids of announces matching a query
+     * 
+     * @param query
+     *            The query
+     * @return The ids of announces
+     * @throws Exception
+     *             If an error occurs
+     */
+    private Set<String> search( Query query ) throws Exception
+    {
+        Set<String> setIds = new HashSet<>( );
+
+        for ( ScoreDoc scoreDoc : _searcher.search( query, 100 ).scoreDocs )
+        {
+            setIds.add( _searcher.doc( scoreDoc.doc ).get( AnnounceSearchItem.FIELD_ID_ANNOUNCE ) );
+        }
+
+        return setIds;
+    }
+
+    /**
+     * Build the query of a filter the way it was built before the query builder : queries are converted to strings and parsed again
+     * 
+     * @param filter
+     *            The filter
+     * @return The query
+     * @throws Exception
+     *             If an error occurs
+     */
+    private Query getLegacyQuery( AnnounceSearchFilter filter ) throws Exception
+    {
+        Collection<String> queries = new ArrayList<>( );
+        Collection<String> sectors = new ArrayList<>( );
+        Collection<BooleanClause.Occur> flags = new ArrayList<>( );
+
+        if ( filter.getIdCategory( ) != 0 )
+        {
+            queries.add( new TermQuery( new Term( AnnounceSearchItem.FIELD_CATEGORY_ID, String.valueOf( filter.getIdCategory( ) ) ) ).toString( ) );
+            sectors.add( AnnounceSearchItem.FIELD_CATEGORY_ID );
+            flags.add( BooleanClause.Occur.MUST );
+        }
+
+        if ( filter.getIdSector( ) != 0 )
+        {
+            queries.add( new TermQuery( new Term( AnnounceSearchItem.FIELD_SECTOR_ID, String.valueOf( filter.getIdSector( ) ) ) ).toString( ) );
+            sectors.add( AnnounceSearchItem.FIELD_SECTOR_ID );
+            flags.add( BooleanClause.Occur.MUST );
+        }
+
+        PhraseQuery.Builder queryTypeBuilder = new PhraseQuery.Builder( );
+        queryTypeBuilder.add( new Term( SearchItem.FIELD_TYPE, AnnouncePlugin.PLUGIN_NAME + "e" ) );
+        queries.add( queryTypeBuilder.build( ).toString( ) );
+        sectors.add( SearchItem.FIELD_TYPE );
+        flags.add( BooleanClause.Occur.MUST );
+
+        if ( StringUtils.isNotBlank( filter.getKeywords( ) ) )
+        {
+            PhraseQuery.Builder queryContentBuilder = new PhraseQuery.Builder( );
+            queryContentBuilder.add( new Term( SearchItem.FIELD_CONTENTS, filter.getKeywords( ) ) );
+            queries.add( queryContentBuilder.build( ).toString( ) );
+            sectors.add( SearchItem.FIELD_CONTENTS );
+            flags.add( BooleanClause.Occur.MUST );
+        }
+
+        return MultiFieldQueryParser.parse( queries.toArray( new String [ queries.size( )] ), sectors.toArray( new String [ sectors.size( )] ),
+                flags.toArray( new BooleanClause.Occur [ flags.size( )] ), _analyzer );
+    }
+
+    /**
+     * Build the Lucene document of an announce
+     * 
+     * @param nIdAnnounce
+     *            The id of the announce
+     * @param nIdSector
+     *            The id of the sector
+     * @param nIdCategory
+     *            The id of the category
+     * @param strTitle
+     *            The title
+     * @param strDescription
+     *            The description
+     * @param dPrice
+     *            The price
+     * @param nDaysFromNow
+     *            The number of days between now and the publication of the announce
+     * @return The document
+     * @throws Exception
+     *             If an error occurs
+     */
+    private org.apache.lucene.document.Document getDocument( int nIdAnnounce, int nIdSector, int nIdCategory, String strTitle, String strDescription,
+            double dPrice, int nDaysFromNow ) throws Exception
+    {
+        Category category = new Category( );
+        category.setId( nIdCategory );
+        category.setIdSector( nIdSector );
+
+        Announce announce = new Announce( );
+        announce.setId( nIdAnnounce );
+        announce.setCategory( category );
+        announce.setTitle( strTitle );
+        announce.setDescription( strDescription );
+        announce.setTags( StringUtils.EMPTY );
+        announce.setPrice( dPrice );
+        announce.setDateCreation( new Timestamp( getDate( nDaysFromNow ).getTime( ) ) );
+        announce.setTimePublication( getDate( nDaysFromNow ).getTime( ) );
+
+        return DefaultAnnounceIndexer.getDocument( announce, URL, null );
+    }
+
+    /**
+     * Get a date relative to now
+     * 
+     * @param nDaysFromNow
+     *            The number of days to add to the current date
+     * @return The date
+     */
+    private Date getDate( int nDaysFromNow )
+    {
+        Calendar calendar = Calendar.getInstance( );
+        calendar.add( Calendar.DATE, nDaysFromNow );
+
+        return calendar.getTime( );
+    }
+}
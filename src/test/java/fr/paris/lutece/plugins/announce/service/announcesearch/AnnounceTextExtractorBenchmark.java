@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the throughput of the text extractors on the content indexed for an announce : its title, its description, its tags and the values of its
+ * responses. Run it with the main method from the test classpath
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@Threads( 4 )
+public class AnnounceTextExtractorBenchmark
+{
+    private static final String CONTENT = "Appartement lumineux 3 pièces <p>Bel appartement de <strong>65 m&sup2;</strong> au 4<sup>e</sup> étage avec ascenseur, "
+            + "proche du m&eacute;tro et des commerces.</p><ul><li>Cuisine équipée</li><li>Deux chambres &amp; une salle d'eau</li>"
+            + "<li>Cave &amp; parking</li></ul><p>Loyer charges comprises : 1&nbsp;250 &euro;. Disponible immédiatement.<br/>"
+            + "Visites le samedi, contact par <a href=\"mailto:contact@example.com\">email</a>.</p> appartement,location;paris 75011 Paris 3 2 "
+            + "Dernier étage Non meublé";
+
+    private final IAnnounceTextExtractor _tagStripper = new TagStripperTextExtractor( );
+    private final IAnnounceTextExtractor _tika = new TikaTextExtractor( );
+
+    /**
+     * Extract the text with the tag stripper
+     * 
+     * @return The text
+     */
+    @Benchmark
+    public String tagStripper( )
+    {
+        return _tagStripper.getText( CONTENT );
+    }
+
+    /**
+     * Extract the text with Tika
+     * 
+     * @return The text
+     */
+    @Benchmark
+    public String tika( )
+    {
+        return _tika.getText( CONTENT );
+    }
+
+    /**
+     * Run the benchmark
+     * 
+     * @param args
+     *            The arguments of the command line
+     * @throws RunnerException
+     *             If the benchmark failed
+     */
+    public static void main( String [ ] args ) throws RunnerException
+    {
+        new Runner( new OptionsBuilder( ).include( AnnounceTextExtractorBenchmark.class.getSimpleName( ) ).build( ) ).run( );
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import fr.paris.lutece.plugins.announce.business.IndexerAction;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Checks the coalescing of the indexer actions by the {@link DefaultAnnounceIndexer}
+ */
+public class DefaultAnnounceIndexerTest extends LuteceTestCase
+{
+    /**
+     * Each announce gets one task giving the same final index as its actions
+     */
+    public void testCoalesceIndexerActions( )
+    {
+        List<IndexerAction> listActions = new ArrayList<>( );
+        // Created then deleted : the creation may be the publication of an announce that is already indexed
+        listActions.add( getAction( 1, IndexerAction.TASK_CREATE ) );
+        listActions.add( getAction( 1, IndexerAction.TASK_MODIFY ) );
+        listActions.add( getAction( 1, IndexerAction.TASK_DELETE ) );
+        // Modified several times
+        listActions.add( getAction( 2, IndexerAction.TASK_MODIFY ) );
+        listActions.add( getAction( 2, IndexerAction.TASK_MODIFY ) );
+        // Created then modified
+        listActions.add( getAction( 3, IndexerAction.TASK_CREATE ) );
+        listActions.add( getAction( 3, IndexerAction.TASK_MODIFY ) );
+        // Modified then deleted
+        listActions.add( getAction( 4, IndexerAction.TASK_MODIFY ) );
+        listActions.add( getAction( 4, IndexerAction.TASK_DELETE ) );
+        // Deleted then created again
+        listActions.add( getAction( 5, IndexerAction.TASK_DELETE ) );
+        listActions.add( getAction( 5, IndexerAction.TASK_CREATE ) );
+
+        Map<Integer, Integer> mapTasks = DefaultAnnounceIndexer.coalesceIndexerActions( listActions );
+
+        assertEquals( 5, mapTasks.size( ) );
+        assertEquals( IndexerAction.TASK_DELETE, mapTasks.get( 1 ).intValue( ) );
+        assertEquals( IndexerAction.TASK_MODIFY, mapTasks.get( 2 ).intValue( ) );
+        assertEquals( IndexerAction.TASK_CREATE, mapTasks.get( 3 ).intValue( ) );
+        assertEquals( IndexerAction.TASK_DELETE, mapTasks.get( 4 ).intValue( ) );
+        assertEquals( IndexerAction.TASK_MODIFY, mapTasks.get( 5 ).intValue( ) );
+    }
+
+    /**
+     * Create an indexer action
+     * 
+     * @param nIdAnnounce
+     *            The id of the announce
+     * @param nIdTask
+     *            The task
+     * @return The indexer action
+     */
+    private static IndexerAction getAction( int nIdAnnounce, int nIdTask )
+    {
+        IndexerAction action = new IndexerAction( );
+        action.setIdAnnounce( nIdAnnounce );
+        action.setIdTask( nIdTask );
+
+        return action;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.announce.service.announcesearch;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Checks the text extracted by the {@link TagStripperTextExtractor}
+ */
+public class TagStripperTextExtractorTest extends LuteceTestCase
+{
+    private final IAnnounceTextExtractor _extractor = new TagStripperTextExtractor( );
+
+    /**
+     * Tags are removed, block tags separating words
+     */
+    public void testTags( )
+    {
+        assertEquals( "Studio meublé proche du métro", _extractor.getText( "<p>Studio <b>meublé</b></p><p>proche du métro</p>" ).trim( ) );
+        assertEquals( "prix < 100", _extractor.getText( "prix < 100" ) );
+    }
+
+    /**
+     * Scripts, styles and comments are removed with their content
+     */
+    public void testIgnoredContent( )
+    {
+        assertEquals( "Vélo de ville", _extractor.getText( "Vélo<script>alert( '<p>' );</script>de<!-- <b>x</b> --> ville<style>p { }</style>" ).trim( ) );
+    }
+
+    /**
+     * Named and numeric entities are decoded, unknown entities are kept
+     */
+    public void testEntities( )
+    {
+        assertEquals( "Cave & parking é € &unknown;", _extractor.getText( "Cave &amp; parking &eacute; &#x20AC; &unknown;" ) );
+    }
+}
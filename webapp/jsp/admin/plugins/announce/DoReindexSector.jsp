@@ -0,0 +1,8 @@
+<%@ page errorPage="../../ErrorPage.jsp" %>
+
+<jsp:useBean id="announceSector" scope="session" class="fr.paris.lutece.plugins.announce.web.SectorJspBean" />
+
+<%
+	announceSector.init( request,announceSector.RIGHT_MANAGE_ANNOUNCE );
+	response.sendRedirect( announceSector.doReindexSector( request ) );
+%>
\ No newline at end of file